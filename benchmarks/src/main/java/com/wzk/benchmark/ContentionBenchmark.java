@@ -0,0 +1,86 @@
+package com.wzk.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wzk.entity.Dictionary;
+import com.wzk.service.AnagramCache;
+import com.wzk.service.AnagramFinder;
+
+/**
+ * Finds anagrams on six threads while one thread adds words and another removes them, all against the same
+ * dictionary and cache, to show how lookups hold up under mutation traffic.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Group)
+public class ContentionBenchmark {
+    private static final int WORD_COUNT = 1 << 14;
+
+    @Param({"100000", "1000000"})
+    int dictionarySize;
+
+    private Dictionary dictionary;
+    private AnagramFinder anagramFinder;
+    private String[] words;
+
+    @Setup
+    public void createFinder() throws IOException {
+        List<String> dictionaryWords = WordLists.generate(dictionarySize, 42);
+        dictionary = WordLists.dictionaryOf(dictionaryWords);
+        anagramFinder = new AnagramFinder(dictionary, true, ForkJoinPool.commonPool(),
+            new AnagramCache(dictionary, 100_000));
+        words = new String[WORD_COUNT];
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words[i] = dictionaryWords.get(i % dictionaryWords.size());
+        }
+    }
+
+    /**
+     * Each thread walks the shared words from its own position.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public List<String> find(Cursor cursor) {
+        return anagramFinder.findAnagrams(words[cursor.next++ & (WORD_COUNT - 1)]);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean add(Cursor cursor) {
+        return dictionary.addWord(words[cursor.next++ & (WORD_COUNT - 1)]);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean remove(Cursor cursor) {
+        return dictionary.removeWord(words[cursor.next++ & (WORD_COUNT - 1)]);
+    }
+}
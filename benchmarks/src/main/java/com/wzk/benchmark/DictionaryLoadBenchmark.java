@@ -0,0 +1,65 @@
+package com.wzk.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wzk.entity.Dictionary;
+import com.wzk.entity.DictionarySnapshot;
+
+/**
+ * Times building a dictionary from a word list, streamed the way the embedded words.txt is and read straight from a
+ * file, and opening the same words from a snapshot.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class DictionaryLoadBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int dictionarySize;
+
+    private Path wordFile;
+    private Path snapshotFile;
+
+    @Setup
+    public void writeWordList() throws IOException {
+        wordFile = WordLists.writeTempFile(WordLists.generate(dictionarySize, 42));
+        snapshotFile = Files.createTempFile("benchmark-words", ".snapshot");
+        snapshotFile.toFile().deleteOnExit();
+        DictionarySnapshot.write(Dictionary.fromWordFile(wordFile, true), snapshotFile);
+    }
+
+    @Benchmark
+    public Dictionary loadFromStream() throws IOException {
+        try (InputStream fileStream = Files.newInputStream(wordFile)) {
+            return new Dictionary(fileStream, true);
+        }
+    }
+
+    @Benchmark
+    public Dictionary loadFromFile() throws IOException {
+        return Dictionary.fromWordFile(wordFile, true);
+    }
+
+    @Benchmark
+    public Dictionary openSnapshot() throws IOException {
+        return new Dictionary(snapshotFile);
+    }
+}
@@ -0,0 +1,88 @@
+package com.wzk.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wzk.entity.Dictionary;
+import com.wzk.service.AnagramCache;
+import com.wzk.service.AnagramFinder;
+
+/**
+ * Times {@link AnagramFinder#findAnagrams(String)} over a rotating set of query words of one length. A hit is a word
+ * that is in the dictionary, a miss is a random word of the same length that almost certainly is not. The finder
+ * either uses the signature index, scans the words of the same length or uses the index behind a cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Benchmark)
+public class FindAnagramsBenchmark {
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"10000", "100000", "1000000"})
+    int dictionarySize;
+
+    @Param({"4", "7", "10"})
+    int wordLength;
+
+    @Param({"100", "50", "0"})
+    int hitPercent;
+
+    @Param({"index", "scan", "cached"})
+    String lookup;
+
+    private AnagramFinder anagramFinder;
+    private String[] queries;
+    private int nextQuery;
+
+    @Setup
+    public void createFinder() throws IOException {
+        List<String> words = WordLists.generate(dictionarySize, 42);
+        Dictionary dictionary = WordLists.dictionaryOf(words);
+        AnagramCache cache = "cached".equals(lookup) ? new AnagramCache(dictionary, 100_000) : null;
+        anagramFinder = new AnagramFinder(dictionary, !"scan".equals(lookup), ForkJoinPool.commonPool(), cache);
+
+        Random random = new Random(7);
+        List<String> wordsOfLength = new ArrayList<>();
+        for (String word : words) {
+            if (word.length() == wordLength) {
+                wordsOfLength.add(word);
+            }
+        }
+        queries = new String[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            boolean hit = random.nextInt(100) < hitPercent;
+            queries[i] = hit
+                ? wordsOfLength.get(random.nextInt(wordsOfLength.size()))
+                : WordLists.randomWord(wordLength, random);
+        }
+    }
+
+    @Benchmark
+    public List<String> findAnagrams() {
+        return anagramFinder.findAnagrams(queries[nextQuery++ & (QUERY_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public String convertToSortedString() {
+        return anagramFinder.convertToSortedString(queries[nextQuery++ & (QUERY_COUNT - 1)]);
+    }
+}
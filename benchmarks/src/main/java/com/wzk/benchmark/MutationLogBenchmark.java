@@ -0,0 +1,83 @@
+package com.wzk.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wzk.entity.Dictionary;
+import com.wzk.entity.MutationLog;
+
+/**
+ * Adds words on sixteen threads to a dictionary logging its changes to a mutation log in a temporary file, once for
+ * each {@link MutationLog.Durability}. Every call is one logged change, a word added by an earlier pass over the
+ * words is removed instead. The rates depend on how long the disk takes to force a write, so compare the durabilities
+ * against each other on the same disk rather than reading much into the absolute numbers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@Threads(16)
+@State(Scope.Benchmark)
+public class MutationLogBenchmark {
+    private static final int WORD_COUNT = 1 << 16;
+    private static final long FLUSH_INTERVAL_MILLIS = 10;
+
+    @Param({"ASYNC", "GROUP", "SYNC"})
+    MutationLog.Durability durability;
+
+    private Dictionary dictionary;
+    private MutationLog mutationLog;
+    private Path logFile;
+    private String[] words;
+
+    @Setup
+    public void openLog() throws IOException {
+        dictionary = WordLists.dictionaryOf(WordLists.generate(100_000, 42));
+        logFile = Files.createTempFile("benchmark-mutations", ".wal");
+        mutationLog = MutationLog.open(logFile, durability, FLUSH_INTERVAL_MILLIS);
+        dictionary.setMutationLog(mutationLog);
+        Random random = new Random(7);
+        words = new String[WORD_COUNT];
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words[i] = WordLists.randomWord(14 + random.nextInt(4), random);
+        }
+    }
+
+    @TearDown
+    public void closeLog() throws IOException {
+        mutationLog.close();
+        Files.deleteIfExists(logFile);
+    }
+
+    /**
+     * Each thread walks the shared words from its own position.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = (int) Thread.currentThread().getId() * 4099;
+    }
+
+    @Benchmark
+    public boolean add(Cursor cursor) {
+        String word = words[cursor.next++ & (WORD_COUNT - 1)];
+        return dictionary.addWord(word) || dictionary.removeWord(word);
+    }
+}
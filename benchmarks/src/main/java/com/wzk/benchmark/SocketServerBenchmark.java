@@ -0,0 +1,139 @@
+package com.wzk.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wzk.entity.Dictionary;
+import com.wzk.network.BinarySocketClient;
+import com.wzk.network.ConnectionExecutors;
+import com.wzk.network.SocketServer;
+import com.wzk.service.AnagramFinder;
+
+/**
+ * Times a find anagrams round trip over loopback against a {@link SocketServer}, with four clients each on its own
+ * connection, once through the text menu and once through the binary protocol.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@Threads(4)
+@State(Scope.Benchmark)
+public class SocketServerBenchmark {
+    private static final String MSG_SENTINEL = "^";
+    private static final int WORD_COUNT = 1 << 10;
+
+    @Param({"10000", "1000000"})
+    int dictionarySize;
+
+    private SocketServer server;
+    private String[] words;
+
+    @Setup
+    public void startServer() throws IOException {
+        List<String> dictionaryWords = WordLists.generate(dictionarySize, 42);
+        Dictionary dictionary = WordLists.dictionaryOf(dictionaryWords);
+        server = new SocketServer(new AnagramFinder(dictionary, true, ForkJoinPool.commonPool()), dictionary, 0,
+            ConnectionExecutors.bounded(16, 16));
+        server.startServer();
+        words = new String[WORD_COUNT];
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words[i] = dictionaryWords.get(i % dictionaryWords.size());
+        }
+    }
+
+    @TearDown
+    public void stopServer() {
+        server.stopServer();
+    }
+
+    /**
+     * A client connected through the text menu and waiting in the find anagrams option.
+     */
+    @State(Scope.Thread)
+    public static class TextClient {
+        Socket socket;
+        PrintWriter output;
+        BufferedReader input;
+        int next;
+
+        @Setup(Level.Trial)
+        public void connect(SocketServerBenchmark benchmark) throws IOException {
+            socket = new Socket("localhost", benchmark.server.getLocalPort());
+            socket.setTcpNoDelay(true);
+            output = new PrintWriter(socket.getOutputStream(), true);
+            input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            readResponse();
+            output.println("p");
+            readResponse();
+        }
+
+        int readResponse() throws IOException {
+            int lines = 0;
+            String line;
+            while ((line = input.readLine()) != null && !MSG_SENTINEL.equals(line)) {
+                lines++;
+            }
+            return lines;
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /**
+     * A client connected through the binary protocol.
+     */
+    @State(Scope.Thread)
+    public static class BinaryClient {
+        BinarySocketClient client;
+        int next;
+
+        @Setup(Level.Trial)
+        public void connect(SocketServerBenchmark benchmark) throws IOException {
+            client = new BinarySocketClient("localhost", benchmark.server.getLocalPort());
+            client.connect();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    public int textRoundTrip(TextClient client) throws IOException {
+        client.output.println(words[client.next++ & (WORD_COUNT - 1)]);
+        return client.readResponse();
+    }
+
+    @Benchmark
+    public List<String> binaryRoundTrip(BinaryClient client) throws InterruptedException, ExecutionException {
+        return client.client.findAnagrams(words[client.next++ & (WORD_COUNT - 1)]).get();
+    }
+}
@@ -0,0 +1,70 @@
+package com.wzk.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.wzk.entity.Dictionary;
+
+/**
+ * Generates repeatable word lists for the benchmarks, there is no real word list in the repository. Letters follow
+ * English letter frequencies and about one word in five is a shuffle of an earlier word, so the lists have anagram
+ * groups of a realistic shape.
+ */
+final class WordLists {
+    private static final String LETTERS_BY_FREQUENCY =
+        "eeeeeeeeeeeettttttttaaaaaaaaoooooooiiiiiiinnnnnnnsssssshhhhhhrrrrrrddddlllluuucccmmmwwffggyyppbbvkjxqz";
+    private static final int MIN_LENGTH = 3;
+    private static final int MAX_LENGTH = 12;
+
+    private WordLists() {
+    }
+
+    static List<String> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (!words.isEmpty() && random.nextInt(5) == 0) {
+                words.add(shuffle(words.get(random.nextInt(words.size())), random));
+            } else {
+                words.add(randomWord(MIN_LENGTH + random.nextInt(MAX_LENGTH - MIN_LENGTH + 1), random));
+            }
+        }
+        return words;
+    }
+
+    static String randomWord(int length, Random random) {
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = LETTERS_BY_FREQUENCY.charAt(random.nextInt(LETTERS_BY_FREQUENCY.length()));
+        }
+        return new String(word);
+    }
+
+    static String shuffle(String word, Random random) {
+        List<Character> letters = new ArrayList<>();
+        for (char letter : word.toCharArray()) {
+            letters.add(letter);
+        }
+        Collections.shuffle(letters, random);
+        StringBuilder shuffled = new StringBuilder(word.length());
+        letters.forEach(shuffled::append);
+        return shuffled.toString();
+    }
+
+    static Path writeTempFile(List<String> words) throws IOException {
+        Path file = Files.createTempFile("benchmark-words", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, words, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    static Dictionary dictionaryOf(List<String> words) throws IOException {
+        return Dictionary.fromWordFile(writeTempFile(words), true);
+    }
+}
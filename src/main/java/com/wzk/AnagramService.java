@@ -1,39 +1,119 @@
 package com.wzk;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.net.HostAndPort;
 import com.wzk.entity.Dictionary;
+import com.wzk.entity.DictionarySnapshot;
+import com.wzk.entity.MutationLog;
+import com.wzk.network.AccessLog;
+import com.wzk.network.BinarySocketClient;
+import com.wzk.network.ConnectionExecutors;
+import com.wzk.network.NioSocketServer;
+import com.wzk.network.ReplicaFollower;
+import com.wzk.network.ReplicationPublisher;
+import com.wzk.network.ShardRouter;
 import com.wzk.network.SocketClient;
 import com.wzk.network.SocketServer;
+import com.wzk.service.AnagramCache;
 import com.wzk.service.AnagramFinder;
+import com.wzk.service.DictionaryRegistry;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class AnagramService {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         String opMode = "local";
         if (args.length > 0) {
             opMode = args[0];
         }
         log.info("Starting in mode: {}", opMode);
+        // -Danagram.scan=true switches anagram lookups back to scanning the dictionary instead of using its index
+        boolean useSignatureIndex = !Boolean.getBoolean("anagram.scan");
 
         InputStream fileStream = AnagramService.class.getClassLoader().getResourceAsStream("words.txt");
 
-        if ("server".equalsIgnoreCase(opMode)) {
-            Dictionary dictionary = new Dictionary(fileStream, true);
-            AnagramFinder anagramFinder = new AnagramFinder(dictionary);
-            SocketServer server = new SocketServer(anagramFinder, dictionary, 5555);
+        if ("build-snapshot".equalsIgnoreCase(opMode)) {
+            // build-snapshot [output file] [word list], the word list defaults to the embedded words.txt
+            Path snapshotFile = Paths.get(args.length > 1 ? args[1] : "words.snapshot");
+            Dictionary dictionary = args.length > 2
+                ? Dictionary.fromWordFile(Paths.get(args[2]), true)
+                : new Dictionary(fileStream, true);
+            DictionarySnapshot.write(dictionary, snapshotFile);
+        } else if ("server".equalsIgnoreCase(opMode)) {
+            Dictionary dictionary = openDictionary(fileStream);
+            AnagramFinder anagramFinder = createFinder(dictionary, useSignatureIndex);
+            publishChanges(dictionary);
+            SocketServer server = new SocketServer(openRegistry(dictionary, anagramFinder, useSignatureIndex), 5555,
+                createConnectionExecutor(), openAccessLog());
             server.startServer();
+        } else if ("nio-server".equalsIgnoreCase(opMode)) {
+            Dictionary dictionary = openDictionary(fileStream);
+            AnagramFinder anagramFinder = createFinder(dictionary, useSignatureIndex);
+            publishChanges(dictionary);
+            int eventLoops = Integer.getInteger("anagram.eventLoops", Runtime.getRuntime().availableProcessors());
+            NioSocketServer server = new NioSocketServer(openRegistry(dictionary, anagramFinder, useSignatureIndex),
+                5555, eventLoops, Integer.getInteger("anagram.nioWorkers", NioSocketServer.DEFAULT_WORKER_COUNT),
+                openAccessLog());
+            server.startServer();
+        } else if ("shard-server".equalsIgnoreCase(opMode)) {
+            // shard-server <shard index> <shard count> [port], serves the shard's part of the embedded words.txt
+            int shard = Integer.parseInt(args[1]);
+            int shardCount = Integer.parseInt(args[2]);
+            Dictionary dictionary = new Dictionary(shardOf(fileStream, shard, shardCount), true);
+            AnagramFinder anagramFinder = createFinder(dictionary, useSignatureIndex);
+            SocketServer server = new SocketServer(DictionaryRegistry.of(dictionary, anagramFinder),
+                args.length > 3 ? Integer.parseInt(args[3]) : 5555, createConnectionExecutor(), openAccessLog());
+            server.startServer();
+        } else if ("replica".equalsIgnoreCase(opMode)) {
+            // replica <primary host:replication port> [port], serves a copy of the primary's dictionary
+            HostAndPort primary = HostAndPort.fromString(args[1]);
+            Dictionary dictionary = new Dictionary(null, true);
+            new ReplicaFollower(dictionary, primary.getHost(), primary.getPort()).start();
+            AnagramFinder anagramFinder = createFinder(dictionary, useSignatureIndex);
+            // the replica only serves reads, changes its clients made would be lost on the next copy
+            DictionaryRegistry registry = DictionaryRegistry.of(dictionary, anagramFinder);
+            registry.setReadOnly(true);
+            SocketServer server = new SocketServer(registry, args.length > 2 ? Integer.parseInt(args[2]) : 5556,
+                createConnectionExecutor(), openAccessLog());
+            server.startServer();
+        } else if ("router".equalsIgnoreCase(opMode)) {
+            // router <port> <host:port of shard 0>,<host:port of shard 1>,...
+            List<BinarySocketClient> shards = new ArrayList<>();
+            for (String shard : Splitter.on(',').trimResults().omitEmptyStrings().split(args[2])) {
+                HostAndPort address = HostAndPort.fromString(shard);
+                shards.add(new BinarySocketClient(address.getHost(), address.getPort()));
+            }
+            ShardRouter router = new ShardRouter(shards, Integer.parseInt(args[1]), createConnectionExecutor(),
+                Long.getLong("anagram.shardTimeoutMillis", ShardRouter.DEFAULT_TIMEOUT_MILLIS));
+            router.startServer();
         } else if ("client".equalsIgnoreCase(opMode)) {
             SocketClient client = new SocketClient("localhost", 5555);
             client.startClient();
         } else {
-            Dictionary dictionary = new Dictionary(fileStream, true);
-            AnagramFinder anagramFinder = new AnagramFinder(dictionary);
+            Dictionary dictionary = openDictionary(fileStream);
+            AnagramFinder anagramFinder = createFinder(dictionary, useSignatureIndex);
             log.info("Ready to accept words, Enter a word:");
             Scanner inputReader = new Scanner(System.in);
             while(inputReader.hasNextLine()) {
@@ -43,4 +123,131 @@ public class AnagramService {
             }
         }
     }
+
+    /**
+     * Opens the dictionary. With -Danagram.wal=<file> changes are logged to that file and replayed on the next start,
+     * and every -Danagram.checkpointMinutes the log is compacted into the snapshot, -Danagram.snapshot or the log's
+     * name with .snapshot appended. The snapshot is opened instead of the embedded word list whenever it exists.
+     * -Danagram.storage chooses where the word list is kept, heap, copy_on_write, off_heap or dawg, see
+     * {@link Dictionary.Storage}, -Danagram.snapshotIsolation=true is the same as copy_on_write.
+     */
+    private static Dictionary openDictionary(InputStream fileStream) {
+        String walFile = System.getProperty("anagram.wal");
+        String snapshotFile = System.getProperty("anagram.snapshot", walFile == null ? null : walFile + ".snapshot");
+        try {
+            Dictionary dictionary;
+            if (snapshotFile != null && (walFile == null || Files.exists(Paths.get(snapshotFile)))) {
+                dictionary = new Dictionary(Paths.get(snapshotFile));
+            } else {
+                Dictionary.Storage storage = Dictionary.Storage.valueOf(System.getProperty("anagram.storage",
+                    Boolean.getBoolean("anagram.snapshotIsolation") ? "copy_on_write" : "heap")
+                    .toUpperCase(Locale.ROOT));
+                dictionary = new Dictionary(fileStream, true, storage);
+            }
+            if (walFile != null) {
+                MutationLog.replay(Paths.get(walFile), dictionary);
+                MutationLog.Durability durability = MutationLog.Durability.valueOf(
+                    System.getProperty("anagram.durability", "group").toUpperCase(Locale.ROOT));
+                dictionary.setMutationLog(MutationLog.open(Paths.get(walFile), durability,
+                    Long.getLong("anagram.flushMillis", 100)));
+                scheduleCheckpoints(dictionary, Paths.get(snapshotFile),
+                    Long.getLong("anagram.checkpointMinutes", 10));
+            }
+            return dictionary;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open dictionary", ex);
+        }
+    }
+
+    /**
+     * Publishes every change to the dictionary to read replicas connecting on -Danagram.replicationPort, if set,
+     * disconnecting a replica that falls more than -Danagram.replicationBacklog changes behind.
+     */
+    private static void publishChanges(Dictionary dictionary) throws IOException {
+        Integer replicationPort = Integer.getInteger("anagram.replicationPort");
+        if (replicationPort != null) {
+            new ReplicationPublisher(dictionary, replicationPort,
+                Integer.getInteger("anagram.replicationBacklog", ReplicationPublisher.DEFAULT_BACKLOG)).startServer();
+        }
+    }
+
+    /**
+     * Keeps only the words owned by one shard of a cluster, see {@link ShardRouter#shardOf(String, int)}.
+     */
+    private static InputStream shardOf(InputStream fileStream, int shard, int shardCount) throws IOException {
+        StringBuilder shardWords = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(fileStream, Charset.defaultCharset()))) {
+            String word;
+            while ((word = reader.readLine()) != null) {
+                if (!word.isEmpty() && ShardRouter.shardOf(word, shardCount) == shard) {
+                    shardWords.append(word).append('\n');
+                }
+            }
+        }
+        return new ByteArrayInputStream(shardWords.toString().getBytes(Charset.defaultCharset()));
+    }
+
+    /**
+     * Creates the executor serving client connections, -Danagram.connections chooses the kind, see
+     * {@link ConnectionExecutors#forMode(String, int, int)}.
+     */
+    private static ExecutorService createConnectionExecutor() {
+        return ConnectionExecutors.forMode(System.getProperty("anagram.connections", "bounded"),
+            Integer.getInteger("anagram.maxConnections", ConnectionExecutors.DEFAULT_MAX_CONNECTIONS),
+            Integer.getInteger("anagram.connectionQueue", ConnectionExecutors.DEFAULT_QUEUE_CAPACITY));
+    }
+
+    /**
+     * Creates a finder with a cache of up to -Danagram.cacheWords words (default 100000) in front of its lookups,
+     * 0 turns the cache off.
+     */
+    private static AnagramFinder createFinder(Dictionary dictionary, boolean useSignatureIndex) {
+        long cacheWords = Long.getLong("anagram.cacheWords", 100_000);
+        AnagramCache cache = cacheWords > 0 ? new AnagramCache(dictionary, cacheWords) : null;
+        return new AnagramFinder(dictionary, useSignatureIndex, ForkJoinPool.commonPool(), cache);
+    }
+
+    /**
+     * Registers the extra dictionaries listed in -Danagram.dictionaries as name=file pairs separated by commas, they
+     * are loaded when a client first chooses them and share a budget of -Danagram.dictionaryBudgetMb megabytes.
+     */
+    private static DictionaryRegistry openRegistry(Dictionary dictionary, AnagramFinder anagramFinder,
+                                                   boolean useSignatureIndex) {
+        long budgetBytes = Long.getLong("anagram.dictionaryBudgetMb", 512) * 1024 * 1024;
+        DictionaryRegistry registry = new DictionaryRegistry(dictionary, anagramFinder,
+            extra -> createFinder(extra, useSignatureIndex), budgetBytes);
+        Splitter.on(',').trimResults().omitEmptyStrings().withKeyValueSeparator('=')
+            .split(System.getProperty("anagram.dictionaries", ""))
+            .forEach((name, file) -> registry.register(name, Paths.get(file)));
+        log.info("Serving dictionaries {}", registry.getNames());
+        return registry;
+    }
+
+    /**
+     * Opens the access log named by -Danagram.accessLog, holding up to -Danagram.accessLogQueue entries waiting to be
+     * written, or returns null if there is none.
+     */
+    private static AccessLog openAccessLog() throws IOException {
+        String accessLogFile = System.getProperty("anagram.accessLog");
+        if (accessLogFile == null) {
+            return null;
+        }
+        return AccessLog.open(Paths.get(accessLogFile),
+            Integer.getInteger("anagram.accessLogQueue", AccessLog.DEFAULT_CAPACITY));
+    }
+
+    private static void scheduleCheckpoints(Dictionary dictionary, Path snapshotFile, long intervalMinutes) {
+        ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dictionary-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(() -> {
+            try {
+                dictionary.checkpoint(snapshotFile);
+            } catch (IOException | RuntimeException ex) {
+                log.error("Failed to checkpoint dictionary to {}", snapshotFile, ex);
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
 }
@@ -0,0 +1,71 @@
+package com.wzk.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
+
+/**
+ * The words of a {@link Dictionary} sharing one {@link LetterSignature}, i.e. a set of words that are all anagrams of
+ * each other.
+ */
+public class AnagramGroup {
+    private final LetterSignature signature;
+    private final LetterCounts letterCounts;
+    private final Set<String> words = Sets.newConcurrentHashSet();
+
+    AnagramGroup(LetterSignature signature, String firstWord) {
+        this.signature = signature;
+        this.letterCounts = LetterCounts.of(firstWord);
+    }
+
+    public LetterSignature getSignature() {
+        return signature;
+    }
+
+    /**
+     * @return the letter counts shared by every word of the group, computed once when the group is created
+     */
+    public LetterCounts getLetterCounts() {
+        return letterCounts;
+    }
+
+    /**
+     * @return a copy of the words currently in the group
+     */
+    public List<String> getWords() {
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * @return any one word of the group, all words in a group contain the same characters, or null if the group
+     * has since been emptied
+     */
+    public String getRepresentative() {
+        for (String word : words) {
+            return word;
+        }
+        return null;
+    }
+
+    public int size() {
+        return words.size();
+    }
+
+    boolean contains(String word) {
+        return words.contains(word);
+    }
+
+    boolean add(String word) {
+        return words.add(word);
+    }
+
+    boolean remove(String word) {
+        return words.remove(word);
+    }
+
+    boolean isEmpty() {
+        return words.isEmpty();
+    }
+}
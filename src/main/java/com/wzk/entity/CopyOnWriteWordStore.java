@@ -0,0 +1,260 @@
+package com.wzk.entity;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Serves every read from an immutable version of the index, so a reader sees the store exactly as it was at one
+ * point in time however many words are changed meanwhile. A version is a two level trie of small shards keyed by
+ * letter signature, a change copies only the shard it lands in and the two arrays on the path to it and shares
+ * everything else with the previous version. Writers queue their changes, whichever writer takes the lock applies
+ * every queued change and publishes them as one new version with a single volatile write, so concurrent writers
+ * share the cost of the copies.
+ */
+class CopyOnWriteWordStore implements WordStore {
+    private static final int BITS = 6;
+    private static final int FANOUT = 1 << BITS;
+    private static final int MASK = FANOUT - 1;
+    /** A group and its entry in its shard, the group's word set is counted per word. */
+    private static final long BYTES_PER_GROUP = 240;
+    /** A word's entry in its group's set, the String itself is counted by its length. */
+    private static final long BYTES_PER_WORD = 48 + 40;
+    /** The root and branch arrays of a version. */
+    private static final long BYTES_PER_TRIE = (FANOUT + 1L) * FANOUT * 8;
+
+    private final Queue<Mutation> pendingMutations = new ConcurrentLinkedQueue<>();
+    private final Object writeLock = new Object();
+    private volatile Version current = Version.EMPTY;
+
+    /**
+     * An immutable version of the index, shards are never changed once the version is published.
+     */
+    private static final class Version {
+        private static final Version EMPTY = empty();
+
+        private final Map<LetterSignature, AnagramGroup>[][] shards;
+        private final int size;
+        private final int groupCount;
+
+        private Version(Map<LetterSignature, AnagramGroup>[][] shards, int size, int groupCount) {
+            this.shards = shards;
+            this.size = size;
+            this.groupCount = groupCount;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Version empty() {
+            Map<LetterSignature, AnagramGroup>[] emptyBranch = new Map[FANOUT];
+            Arrays.fill(emptyBranch, Collections.emptyMap());
+            Map<LetterSignature, AnagramGroup>[][] shards = new Map[FANOUT][];
+            Arrays.fill(shards, emptyBranch);
+            return new Version(shards, 0, 0);
+        }
+
+        private AnagramGroup find(LetterSignature signature) {
+            int hash = spread(signature.hashCode());
+            return shards[(hash >>> BITS) & MASK][hash & MASK].get(signature);
+        }
+
+        private Iterator<AnagramGroup> groups() {
+            return Arrays.stream(shards).flatMap(Arrays::stream).flatMap(shard -> shard.values().stream())
+                .iterator();
+        }
+    }
+
+    /**
+     * A change waiting to be published, its result is set by whichever writer applies it.
+     */
+    private static final class Mutation {
+        private final String word;
+        private final boolean add;
+        private boolean applied;
+        private boolean changed;
+
+        private Mutation(String word, boolean add) {
+            this.word = word;
+            this.add = add;
+        }
+    }
+
+    @Override
+    public boolean add(String word) {
+        return mutate(new Mutation(word, true));
+    }
+
+    @Override
+    public boolean remove(String word) {
+        return mutate(new Mutation(word, false));
+    }
+
+    /**
+     * Publishes every word as part of one version rather than a version per word.
+     */
+    @Override
+    public void addAll(Collection<String> words) {
+        for (String word : words) {
+            pendingMutations.add(new Mutation(word, true));
+        }
+        synchronized (writeLock) {
+            publishPendingMutations();
+        }
+    }
+
+    @Override
+    public boolean contains(String word) {
+        AnagramGroup group = current.find(LetterSignature.of(word));
+        return group != null && group.contains(word);
+    }
+
+    @Override
+    public int size() {
+        return current.size;
+    }
+
+    /**
+     * There are no length buckets, the groups of one version are scanned for those of the length.
+     */
+    @Override
+    public List<String> wordsOfLength(int length) {
+        List<String> words = new ArrayList<>();
+        Iterator<AnagramGroup> groups = current.groups();
+        while (groups.hasNext()) {
+            AnagramGroup group = groups.next();
+            if (group.getLetterCounts().getLength() == length) {
+                words.addAll(group.getWords());
+            }
+        }
+        return words;
+    }
+
+    @Override
+    public List<String> anagramsOf(LetterSignature signature) {
+        AnagramGroup group = current.find(signature);
+        return group == null ? new ArrayList<>() : group.getWords();
+    }
+
+    /**
+     * @return the groups of the version current when this is called, changes made while iterating are never seen
+     */
+    @Override
+    public Collection<AnagramGroup> anagramGroups() {
+        Version version = current;
+        return new AbstractCollection<AnagramGroup>() {
+            @Override
+            public Iterator<AnagramGroup> iterator() {
+                return version.groups();
+            }
+
+            @Override
+            public int size() {
+                return version.groupCount;
+            }
+        };
+    }
+
+    @Override
+    public int groupCount() {
+        return current.groupCount;
+    }
+
+    @Override
+    public long estimatedHeapBytes() {
+        Version version = current;
+        long bytes = BYTES_PER_TRIE + version.groupCount * BYTES_PER_GROUP;
+        Iterator<AnagramGroup> groups = version.groups();
+        while (groups.hasNext()) {
+            AnagramGroup group = groups.next();
+            bytes += group.size() * (BYTES_PER_WORD + 2L * group.getLetterCounts().getLength());
+        }
+        return bytes;
+    }
+
+    /**
+     * Queues a change and waits until it is published, publishing it along with every other queued change if no
+     * other writer has got to it first.
+     */
+    private boolean mutate(Mutation mutation) {
+        pendingMutations.add(mutation);
+        synchronized (writeLock) {
+            if (!mutation.applied) {
+                publishPendingMutations();
+            }
+            return mutation.changed;
+        }
+    }
+
+    private void publishPendingMutations() {
+        Version base = current;
+        Map<LetterSignature, AnagramGroup>[][] shards = base.shards.clone();
+        boolean[] copiedBranches = new boolean[FANOUT];
+        long[] copiedShards = new long[FANOUT];
+        int size = base.size;
+        int groupCount = base.groupCount;
+        Mutation mutation;
+        while ((mutation = pendingMutations.poll()) != null) {
+            LetterSignature signature = LetterSignature.of(mutation.word);
+            int hash = spread(signature.hashCode());
+            int branch = (hash >>> BITS) & MASK;
+            int slot = hash & MASK;
+            if (!copiedBranches[branch]) {
+                shards[branch] = shards[branch].clone();
+                copiedBranches[branch] = true;
+            }
+            if ((copiedShards[branch] & (1L << slot)) == 0) {
+                shards[branch][slot] = new HashMap<>(shards[branch][slot]);
+                copiedShards[branch] |= 1L << slot;
+            }
+            Map<LetterSignature, AnagramGroup> shard = shards[branch][slot];
+            AnagramGroup group = shard.get(signature);
+            boolean present = group != null && group.contains(mutation.word);
+            if (mutation.add && !present) {
+                shard.put(signature, copyOf(group, signature, mutation.word, null));
+                size++;
+                groupCount += group == null ? 1 : 0;
+                mutation.changed = true;
+            } else if (!mutation.add && present) {
+                if (group.size() == 1) {
+                    shard.remove(signature);
+                    groupCount--;
+                } else {
+                    shard.put(signature, copyOf(group, signature, null, mutation.word));
+                }
+                size--;
+                mutation.changed = true;
+            }
+            mutation.applied = true;
+        }
+        current = new Version(shards, size, groupCount);
+    }
+
+    /**
+     * Groups are shared between versions, so a changed group is a new group rather than the old one changed.
+     */
+    private static AnagramGroup copyOf(AnagramGroup group, LetterSignature signature, String added, String removed) {
+        AnagramGroup copy = new AnagramGroup(signature, added != null ? added : group.getRepresentative());
+        if (group != null) {
+            for (String word : group.getWords()) {
+                if (!word.equals(removed)) {
+                    copy.add(word);
+                }
+            }
+        }
+        if (added != null) {
+            copy.add(added);
+        }
+        return copy;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,375 @@
+package com.wzk.entity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable minimal directed acyclic word graph, a trie whose identical suffixes are shared so that a word list
+ * with many common prefixes and endings takes a fraction of the memory of the words themselves. The graph is built
+ * once from the whole word list and flattened into arrays: the edges of node n are edgeStart[n] to edgeStart[n + 1],
+ * sorted by label, so walking the graph visits words in alphabetical order. Besides lookups the graph answers
+ * prefix and pattern queries and finds the words spelled from a set of letters by only following edges whose letter
+ * is still available.
+ */
+final class Dawg {
+    private static final int ROOT = 0;
+
+    private final int[] edgeStart;
+    private final char[] labels;
+    private final int[] targets;
+    private final BitSet finalNodes;
+    private final int wordCount;
+
+    private Dawg(int[] edgeStart, char[] labels, int[] targets, BitSet finalNodes, int wordCount) {
+        this.edgeStart = edgeStart;
+        this.labels = labels;
+        this.targets = targets;
+        this.finalNodes = finalNodes;
+        this.wordCount = wordCount;
+    }
+
+    /**
+     * Builds the graph in one pass over the sorted words, minimizing each branch as soon as no later word can
+     * extend it, so the unminimized trie is never held in full.
+     * @param sortedWords distinct words in {@link String#compareTo(String)} order
+     * @return the graph
+     */
+    static Dawg build(List<String> sortedWords) {
+        Builder builder = new Builder();
+        for (String word : sortedWords) {
+            builder.add(word);
+        }
+        return builder.finish(sortedWords.size());
+    }
+
+    int getWordCount() {
+        return wordCount;
+    }
+
+    int getNodeCount() {
+        return edgeStart.length - 1;
+    }
+
+    int getEdgeCount() {
+        return labels.length;
+    }
+
+    /**
+     * @return the bytes of the arrays holding the graph
+     */
+    long estimatedBytes() {
+        return (long) edgeStart.length * Integer.BYTES + (long) labels.length * (Character.BYTES + Integer.BYTES)
+            + finalNodes.size() / Byte.SIZE;
+    }
+
+    boolean contains(String word) {
+        int node = walk(word);
+        return node >= 0 && finalNodes.get(node);
+    }
+
+    /**
+     * @param limit the most words to return
+     * @return the words starting with the prefix in alphabetical order
+     */
+    List<String> wordsWithPrefix(String prefix, int limit) {
+        List<String> words = new ArrayList<>();
+        int node = walk(prefix);
+        if (node >= 0) {
+            collect(node, new StringBuilder(prefix), -1, words, limit);
+        }
+        return words;
+    }
+
+    /**
+     * @return the words as long as the pattern with the pattern's character at every position other than those
+     * holding the wildcard
+     */
+    List<String> wordsMatching(String pattern, char wildcard) {
+        List<String> words = new ArrayList<>();
+        matchFrom(ROOT, pattern, wildcard, new StringBuilder(), words);
+        return words;
+    }
+
+    List<String> wordsOfLength(int length) {
+        List<String> words = new ArrayList<>();
+        collect(ROOT, new StringBuilder(), length, words, Integer.MAX_VALUE);
+        return words;
+    }
+
+    List<String> allWords() {
+        List<String> words = new ArrayList<>(wordCount);
+        collect(ROOT, new StringBuilder(), -1, words, Integer.MAX_VALUE);
+        return words;
+    }
+
+    /**
+     * Finds the words spelled from the letters, each letter used at most as often as it is given. Only edges whose
+     * letter is left, or a blank while any are left, are followed, so branches that can not be spelled are never
+     * entered.
+     * @param letters the letters available
+     * @param blanks how many further characters of any kind may be used
+     * @param length the exact length of the words wanted, or -1 for words of any length
+     * @return the words in alphabetical order
+     */
+    List<String> wordsSpelledFrom(String letters, int blanks, int length) {
+        return wordsSpelledFrom(letters, blanks, length, "", Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds one page of {@link #wordsSpelledFrom(String, int, int)}. Branches holding only words up to the given
+     * word are skipped and the walk stops once the page is full, so a page costs about as much as its words.
+     * @param after the last word of the previous page, or an empty string for the first page
+     * @param limit the most words to return
+     * @return the alphabetically first words after the given word, in order
+     */
+    List<String> wordsSpelledFrom(String letters, int blanks, int length, String after, int limit) {
+        char[] sorted = letters.toCharArray();
+        Arrays.sort(sorted);
+        char[] distinct = new char[sorted.length];
+        int[] counts = new int[sorted.length];
+        int distinctCount = 0;
+        for (char letter : sorted) {
+            if (distinctCount == 0 || distinct[distinctCount - 1] != letter) {
+                distinct[distinctCount++] = letter;
+            }
+            counts[distinctCount - 1]++;
+        }
+        List<String> words = new ArrayList<>();
+        spellFrom(ROOT, Arrays.copyOf(distinct, distinctCount), counts, blanks, length, after, after.isEmpty(), limit,
+            new StringBuilder(), words);
+        return words;
+    }
+
+    /**
+     * @return the node reached by following the characters from the root, or -1 if there is no such path
+     */
+    private int walk(CharSequence characters) {
+        int node = ROOT;
+        for (int i = 0; i < characters.length() && node >= 0; i++) {
+            node = child(node, characters.charAt(i));
+        }
+        return node;
+    }
+
+    private int child(int node, char label) {
+        int edge = Arrays.binarySearch(labels, edgeStart[node], edgeStart[node + 1], label);
+        return edge >= 0 ? targets[edge] : -1;
+    }
+
+    private void collect(int node, StringBuilder prefix, int length, List<String> words, int limit) {
+        if (finalNodes.get(node) && (length < 0 || prefix.length() == length)) {
+            words.add(prefix.toString());
+        }
+        if (length >= 0 && prefix.length() >= length) {
+            return;
+        }
+        for (int edge = edgeStart[node]; edge < edgeStart[node + 1] && words.size() < limit; edge++) {
+            prefix.append(labels[edge]);
+            collect(targets[edge], prefix, length, words, limit);
+            prefix.setLength(prefix.length() - 1);
+        }
+    }
+
+    private void matchFrom(int node, String pattern, char wildcard, StringBuilder prefix, List<String> words) {
+        int depth = prefix.length();
+        if (depth == pattern.length()) {
+            if (finalNodes.get(node)) {
+                words.add(prefix.toString());
+            }
+            return;
+        }
+        char expected = pattern.charAt(depth);
+        if (expected != wildcard) {
+            int next = child(node, expected);
+            if (next >= 0) {
+                prefix.append(expected);
+                matchFrom(next, pattern, wildcard, prefix, words);
+                prefix.setLength(depth);
+            }
+            return;
+        }
+        for (int edge = edgeStart[node]; edge < edgeStart[node + 1]; edge++) {
+            prefix.append(labels[edge]);
+            matchFrom(targets[edge], pattern, wildcard, prefix, words);
+            prefix.setLength(depth);
+        }
+    }
+
+    /**
+     * @param pastAfter whether the prefix already sorts after the given word, otherwise the prefix starts it
+     */
+    private void spellFrom(int node, char[] letters, int[] counts, int blanks, int length, String after,
+                           boolean pastAfter, int limit, StringBuilder prefix, List<String> words) {
+        int depth = prefix.length();
+        if (pastAfter && depth > 0 && finalNodes.get(node) && (length < 0 || depth == length)) {
+            words.add(prefix.toString());
+        }
+        if (length >= 0 && depth >= length) {
+            return;
+        }
+        for (int edge = edgeStart[node]; edge < edgeStart[node + 1] && words.size() < limit; edge++) {
+            boolean edgePastAfter = pastAfter || depth >= after.length() || labels[edge] > after.charAt(depth);
+            if (!edgePastAfter && labels[edge] < after.charAt(depth)) {
+                continue;
+            }
+            int letter = Arrays.binarySearch(letters, labels[edge]);
+            if (letter >= 0 && counts[letter] > 0) {
+                // a letter is never worse to spend than a blank, a blank can stand in for any later letter
+                counts[letter]--;
+                prefix.append(labels[edge]);
+                spellFrom(targets[edge], letters, counts, blanks, length, after, edgePastAfter, limit, prefix, words);
+                prefix.setLength(depth);
+                counts[letter]++;
+            } else if (blanks > 0) {
+                prefix.append(labels[edge]);
+                spellFrom(targets[edge], letters, counts, blanks - 1, length, after, edgePastAfter, limit, prefix,
+                    words);
+                prefix.setLength(depth);
+            }
+        }
+    }
+
+    /**
+     * A node of the graph while it is being built. Two nodes are equivalent when both or neither end a word and
+     * their edges have the same labels leading to the same, already minimized, nodes.
+     */
+    private static final class Node {
+        private char[] labels = new char[0];
+        private Node[] targets = new Node[0];
+        private boolean isFinal;
+        private int hash;
+
+        private void addEdge(char label, Node target) {
+            labels = Arrays.copyOf(labels, labels.length + 1);
+            targets = Arrays.copyOf(targets, targets.length + 1);
+            labels[labels.length - 1] = label;
+            targets[targets.length - 1] = target;
+        }
+
+        private Node lastChild() {
+            return targets.length == 0 ? null : targets[targets.length - 1];
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Node)) {
+                return false;
+            }
+            Node that = (Node) other;
+            if (isFinal != that.isFinal || !Arrays.equals(labels, that.labels)) {
+                return false;
+            }
+            for (int i = 0; i < targets.length; i++) {
+                if (targets[i] != that.targets[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            if (hash == 0) {
+                int result = Boolean.hashCode(isFinal) * 31 + Arrays.hashCode(labels);
+                for (Node target : targets) {
+                    result = result * 31 + System.identityHashCode(target);
+                }
+                hash = result == 0 ? 1 : result;
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * The incremental construction of Daciuk et al. for sorted input. The path of the previous word beyond the
+     * prefix it shares with the next word can no longer change, so it is minimized by replacing each of its nodes
+     * with an equivalent registered node, or registering it if there is none.
+     */
+    private static final class Builder {
+        private final Node root = new Node();
+        private final Map<Node, Node> register = new HashMap<>();
+        private final List<Node> path = new ArrayList<>();
+        private String previousWord = "";
+
+        private void add(String word) {
+            int common = 0;
+            while (common < word.length() && common < previousWord.length()
+                && word.charAt(common) == previousWord.charAt(common)) {
+                common++;
+            }
+            minimize(common);
+            Node node = path.isEmpty() ? root : path.get(path.size() - 1);
+            for (int i = common; i < word.length(); i++) {
+                Node child = new Node();
+                node.addEdge(word.charAt(i), child);
+                path.add(child);
+                node = child;
+            }
+            node.isFinal = true;
+            previousWord = word;
+        }
+
+        /**
+         * Minimizes the path below the given depth, deepest node first so every child is already canonical when
+         * its parent is compared.
+         */
+        private void minimize(int depth) {
+            for (int i = path.size() - 1; i >= depth; i--) {
+                Node parent = i == 0 ? root : path.get(i - 1);
+                Node child = path.remove(i);
+                Node existing = register.putIfAbsent(child, child);
+                if (existing != null) {
+                    parent.targets[parent.targets.length - 1] = existing;
+                }
+            }
+        }
+
+        /**
+         * Numbers the nodes breadth first from the root and flattens them into arrays.
+         */
+        private Dawg finish(int wordCount) {
+            minimize(0);
+            Map<Node, Integer> ids = new IdentityHashMap<>();
+            List<Node> nodes = new ArrayList<>();
+            Deque<Node> queue = new ArrayDeque<>();
+            ids.put(root, 0);
+            nodes.add(root);
+            queue.add(root);
+            int edgeCount = 0;
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                edgeCount += node.targets.length;
+                for (Node target : node.targets) {
+                    if (!ids.containsKey(target)) {
+                        ids.put(target, nodes.size());
+                        nodes.add(target);
+                        queue.add(target);
+                    }
+                }
+            }
+            int[] edgeStart = new int[nodes.size() + 1];
+            char[] labels = new char[edgeCount];
+            int[] targets = new int[edgeCount];
+            BitSet finalNodes = new BitSet(nodes.size());
+            int edge = 0;
+            for (int id = 0; id < nodes.size(); id++) {
+                Node node = nodes.get(id);
+                edgeStart[id] = edge;
+                finalNodes.set(id, node.isFinal);
+                for (int i = 0; i < node.targets.length; i++, edge++) {
+                    labels[edge] = node.labels[i];
+                    targets[edge] = ids.get(node.targets[i]);
+                }
+            }
+            edgeStart[nodes.size()] = edge;
+            return new Dawg(edgeStart, labels, targets, finalNodes, wordCount);
+        }
+    }
+}
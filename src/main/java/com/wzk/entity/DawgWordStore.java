@@ -0,0 +1,204 @@
+package com.wzk.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves words from a minimal {@link Dawg} built from the whole word list once it has loaded. The graph can not
+ * change, so like {@link SnapshotWordStore} words added afterwards go into a {@link HeapWordStore} overlay and graph
+ * words that are removed are remembered as tombstones. There is no signature index, anagrams are found by walking
+ * the graph with the letters of the signature. Changes are serialized, lookups never block.
+ */
+@Slf4j
+class DawgWordStore implements WordStore {
+    private final Queue<List<String>> loadingBatches = new ConcurrentLinkedQueue<>();
+    private final HeapWordStore overlay = new HeapWordStore();
+    private final Set<String> tombstones = Sets.newConcurrentHashSet();
+    private volatile Dawg dawg = Dawg.build(Collections.emptyList());
+    private volatile boolean loaded;
+    /** The signatures with a word in the graph or the overlay, kept up to date by every change. */
+    private volatile int groupCount;
+
+    /**
+     * Words added while loading are only collected, the graph is built from all of them in {@link #loadFinished()}.
+     */
+    @Override
+    public void addAll(Collection<String> words) {
+        if (loaded) {
+            words.forEach(this::add);
+        } else {
+            loadingBatches.add(new ArrayList<>(words));
+        }
+    }
+
+    /**
+     * Sorts the loaded words and builds the graph, logging how long it took and how large it is.
+     */
+    @Override
+    public synchronized void loadFinished() {
+        long startTime = System.nanoTime();
+        Set<String> distinctWords = new HashSet<>();
+        List<String> batch;
+        while ((batch = loadingBatches.poll()) != null) {
+            distinctWords.addAll(batch);
+        }
+        List<String> sortedWords = new ArrayList<>(distinctWords);
+        Collections.sort(sortedWords);
+        Set<LetterSignature> signatures = new HashSet<>();
+        sortedWords.forEach(word -> signatures.add(LetterSignature.of(word)));
+        groupCount = signatures.size() + overlay.groupCount();
+        dawg = Dawg.build(sortedWords);
+        loaded = true;
+        log.info("Word graph of {} words built in {}ms, {} nodes and {} edges in about {}KB", dawg.getWordCount(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), dawg.getNodeCount(), dawg.getEdgeCount(),
+            dawg.estimatedBytes() / 1024);
+    }
+
+    /**
+     * A word whose signature has no other word left, in the graph or the overlay, starts a new group.
+     */
+    @Override
+    public synchronized boolean add(String word) {
+        LetterSignature signature = LetterSignature.of(word);
+        boolean newGroup = anagramsOf(signature).isEmpty();
+        boolean added = dawg.contains(word) ? tombstones.remove(word) : overlay.add(word);
+        if (added && newGroup) {
+            groupCount++;
+        }
+        return added;
+    }
+
+    /**
+     * Removing the last word of a signature, from the graph or the overlay, drops its group.
+     */
+    @Override
+    public synchronized boolean remove(String word) {
+        boolean removed = dawg.contains(word) ? tombstones.add(word) : overlay.remove(word);
+        if (removed && anagramsOf(LetterSignature.of(word)).isEmpty()) {
+            groupCount--;
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean contains(String word) {
+        if (dawg.contains(word)) {
+            return !tombstones.contains(word);
+        }
+        return overlay.contains(word);
+    }
+
+    @Override
+    public int size() {
+        return dawg.getWordCount() - tombstones.size() + overlay.size();
+    }
+
+    @Override
+    public List<String> wordsOfLength(int length) {
+        return withChanges(dawg.wordsOfLength(length), overlay.wordsOfLength(length));
+    }
+
+    @Override
+    public List<String> anagramsOf(LetterSignature signature) {
+        return withChanges(dawg.wordsSpelledFrom(signature.getSortedCharacters(), 0, signature.getLength()),
+            overlay.anagramsOf(signature));
+    }
+
+    /**
+     * The graph holds no groups, so every call walks the whole graph and groups its words by signature. Callers
+     * wanting to walk the groups repeatedly should keep them.
+     */
+    @Override
+    public Collection<AnagramGroup> anagramGroups() {
+        Map<LetterSignature, AnagramGroup> groups = new LinkedHashMap<>();
+        for (String word : withChanges(dawg.allWords(), new ArrayList<>())) {
+            groups.computeIfAbsent(LetterSignature.of(word), signature -> new AnagramGroup(signature, word))
+                .add(word);
+        }
+        for (AnagramGroup overlayGroup : overlay.anagramGroups()) {
+            for (String word : overlayGroup.getWords()) {
+                groups.computeIfAbsent(overlayGroup.getSignature(), signature -> new AnagramGroup(signature, word))
+                    .add(word);
+            }
+        }
+        return Collections.unmodifiableCollection(groups.values());
+    }
+
+    @Override
+    public int groupCount() {
+        return groupCount;
+    }
+
+    @Override
+    public List<String> wordsWithPrefix(String prefix, int limit) {
+        List<String> words = withChanges(dawg.wordsWithPrefix(prefix, limit + tombstones.size()),
+            overlay.wordsWithPrefix(prefix, limit));
+        return Ordering.natural().leastOf(words, limit);
+    }
+
+    @Override
+    public List<String> wordsMatching(String pattern, char wildcard) {
+        return withChanges(dawg.wordsMatching(pattern, wildcard), overlay.wordsMatching(pattern, wildcard));
+    }
+
+    @Override
+    public List<String> wordsSpelledFrom(String letters) {
+        return withChanges(dawg.wordsSpelledFrom(letters, 0, -1), overlay.wordsSpelledFrom(letters));
+    }
+
+    @Override
+    public List<String> anagramsWithBlanks(String letters, int blanks) {
+        return withChanges(dawg.wordsSpelledFrom(letters, blanks, letters.length() + blanks),
+            overlay.anagramsWithBlanks(letters, blanks));
+    }
+
+    /**
+     * The graph is walked in order from the given word, stopping once the page and as many words as there are
+     * tombstones are found, since tombstones may take that many words from the graph's page.
+     */
+    @Override
+    public List<String> anagramsWithBlanks(String letters, int blanks, String after, int limit) {
+        int graphLimit = (int) Math.min((long) limit + tombstones.size(), Integer.MAX_VALUE);
+        List<String> words = withChanges(
+            dawg.wordsSpelledFrom(letters, blanks, letters.length() + blanks, after, graphLimit),
+            overlay.anagramsWithBlanks(letters, blanks, after, limit));
+        return Ordering.natural().leastOf(words, limit);
+    }
+
+    /**
+     * Only the changes made since the graph was built are counted beyond the graph's own arrays.
+     */
+    @Override
+    public long estimatedHeapBytes() {
+        long bytes = dawg.estimatedBytes() + overlay.estimatedHeapBytes();
+        for (String word : tombstones) {
+            bytes += 88 + 2L * word.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops the removed words from the graph's words and adds the words added since.
+     */
+    private List<String> withChanges(List<String> graphWords, List<String> overlayWords) {
+        if (!tombstones.isEmpty()) {
+            graphWords.removeAll(tombstones);
+        }
+        graphWords.addAll(overlayWords);
+        return graphWords;
+    }
+}
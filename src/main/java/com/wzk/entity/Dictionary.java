@@ -1,28 +1,162 @@
 package com.wzk.entity;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
-import java.util.Scanner;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
-import com.google.common.collect.Sets;
+import com.wzk.metrics.LatencyTimer;
+import com.wzk.metrics.Metrics;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * A dictionary containing a list of words loaded from a file
+ * A dictionary containing a list of words loaded from a file or opened from a {@link DictionarySnapshot}. Alongside
+ * the words the dictionary keeps an index from each word's {@link LetterSignature} to the group of words sharing that
+ * signature, so the anagrams of a word can be found with a single lookup.
  */
 @Slf4j
 public class Dictionary {
-    private final Set<String> dictionarySet = Sets.newConcurrentHashSet();
+    /** Stands in for any one character in {@link #getWordsMatching(String)}. */
+    public static final char WILDCARD = '?';
+    private static final LatencyTimer LOAD_TIMER = Metrics.timer("load");
+    private static final LatencyTimer ADD_TIMER = Metrics.timer("add");
+    private static final LatencyTimer REMOVE_TIMER = Metrics.timer("remove");
+    private static final LatencyTimer CONTAINS_TIMER = Metrics.timer("contains");
+
+    private final WordStore wordStore;
+    private final Object mutationLock = new Object();
+    private volatile MutationLog mutationLog;
+    private final List<MutationListener> mutationListeners = new CopyOnWriteArrayList<>();
 
     private final boolean ignoreCase;
     public Dictionary(InputStream fileStream, boolean ignoreCase) {
-        log.info("Loading dictionary, should ignore cases? {}", ignoreCase);
+        this(fileStream, ignoreCase, Storage.HEAP);
+    }
+
+    /**
+     * Where a dictionary loaded from a word list keeps its words and index.
+     */
+    public enum Storage {
+        /** Concurrent sets and maps of Strings on the heap. */
+        HEAP,
+        /**
+         * Immutable versions of the index on the heap, readers are isolated from changes, see
+         * {@link Dictionary#Dictionary(InputStream, boolean, boolean)}.
+         */
+        COPY_ON_WRITE,
+        /** UTF-8 bytes in direct memory indexed by tables of offsets, so the words barely touch the heap. */
+        OFF_HEAP,
+        /**
+         * A minimal word graph sharing common prefixes and suffixes, searched by walking the graph rather than
+         * through an index.
+         */
+        DAWG
+    }
+
+    /**
+     * Loads a dictionary, optionally isolating readers from changes. In snapshot isolation every lookup reads one
+     * immutable version of the index, so a search overlapping a bulk import sees the dictionary either before or
+     * after each batch of changes and never half way through, at the cost of copying a small part of the index for
+     * every batch.
+     * @param fileStream a file of words, one per line, or null for an empty dictionary
+     * @param ignoreCase whether or not to ignore case
+     * @param snapshotIsolation whether or not readers should see immutable versions of the dictionary
+     */
+    public Dictionary(InputStream fileStream, boolean ignoreCase, boolean snapshotIsolation) {
+        this(fileStream, ignoreCase, snapshotIsolation ? Storage.COPY_ON_WRITE : Storage.HEAP);
+    }
+
+    /**
+     * Loads a dictionary into the chosen storage.
+     * @param fileStream a file of words, one per line, or null for an empty dictionary
+     * @param ignoreCase whether or not to ignore case
+     * @param storage where the words and index are kept
+     */
+    public Dictionary(InputStream fileStream, boolean ignoreCase, Storage storage) {
+        log.info("Loading dictionary, should ignore cases? {}, storage {}", ignoreCase, storage);
         this.ignoreCase = ignoreCase;
-        loadDictionary(fileStream, ignoreCase);
+        this.wordStore = createStore(storage);
+        loadDictionary(fileStream);
+    }
+
+    private Dictionary(byte[] contents, boolean ignoreCase, Storage storage) {
+        this.ignoreCase = ignoreCase;
+        this.wordStore = createStore(storage);
+        loadDictionary(contents);
+    }
+
+    /**
+     * Loads a dictionary from a word file on disk, read in one go rather than streamed.
+     * @param wordFile a file of words, one per line
+     * @param ignoreCase whether or not to ignore case
+     * @return the loaded dictionary
+     * @throws IOException if the file can not be read
+     */
+    public static Dictionary fromWordFile(Path wordFile, boolean ignoreCase) throws IOException {
+        return fromWordFile(wordFile, ignoreCase, Storage.HEAP);
+    }
+
+    /**
+     * Loads a dictionary from a word file on disk, see {@link #Dictionary(InputStream, boolean, boolean)}.
+     * @param wordFile a file of words, one per line
+     * @param ignoreCase whether or not to ignore case
+     * @param snapshotIsolation whether or not readers should see immutable versions of the dictionary
+     * @return the loaded dictionary
+     * @throws IOException if the file can not be read
+     */
+    public static Dictionary fromWordFile(Path wordFile, boolean ignoreCase, boolean snapshotIsolation)
+        throws IOException {
+        return fromWordFile(wordFile, ignoreCase, snapshotIsolation ? Storage.COPY_ON_WRITE : Storage.HEAP);
+    }
+
+    /**
+     * Loads a dictionary from a word file on disk into the chosen storage.
+     * @param wordFile a file of words, one per line
+     * @param ignoreCase whether or not to ignore case
+     * @param storage where the words and index are kept
+     * @return the loaded dictionary
+     * @throws IOException if the file can not be read
+     */
+    public static Dictionary fromWordFile(Path wordFile, boolean ignoreCase, Storage storage) throws IOException {
+        log.info("Loading dictionary {}, should ignore cases? {}, storage {}", wordFile, ignoreCase, storage);
+        return new Dictionary(DictionaryLoader.readAll(wordFile), ignoreCase, storage);
+    }
+
+    private static WordStore createStore(Storage storage) {
+        switch (storage) {
+            case COPY_ON_WRITE:
+                return new CopyOnWriteWordStore();
+            case OFF_HEAP:
+                return new OffHeapWordStore();
+            case DAWG:
+                return new DawgWordStore();
+            default:
+                return new HeapWordStore();
+        }
+    }
+
+    /**
+     * Opens a dictionary from a snapshot file. The snapshot is memory mapped rather than read, so the words stay off
+     * the heap and opening takes the same few milliseconds however large the snapshot is. Words added or removed
+     * afterwards are kept on the heap, the snapshot file itself is never changed.
+     * @param snapshotFile a file written by {@link DictionarySnapshot#write(Dictionary, Path)}
+     * @throws IOException if the snapshot can not be opened
+     */
+    public Dictionary(Path snapshotFile) throws IOException {
+        long startTime = LOAD_TIMER.start();
+        DictionarySnapshot snapshot = DictionarySnapshot.open(snapshotFile);
+        this.ignoreCase = snapshot.isIgnoreCase();
+        this.wordStore = new SnapshotWordStore(snapshot);
+        LOAD_TIMER.stop(startTime);
+        log.info("Dictionary snapshot {} with {} words opened, should ignore cases? {}", snapshotFile,
+            snapshot.getWordCount(), ignoreCase);
     }
 
     /**
@@ -31,48 +165,154 @@ public class Dictionary {
      * @return all words from the dictionary where each words character count is equal to length
      */
     public List<String> getWordsOfLength(int length) {
-        long startTime = System.currentTimeMillis();
-        List<String> words = dictionarySet.stream()
-            .filter( word -> word.length() == length)
-            .collect(Collectors.toList());
-        long elapsedTime = System.currentTimeMillis() - startTime;
-        log.info("Found {} words of length {} in {}ms",words.size(), length, elapsedTime);
-        return words;
+        return wordStore.wordsOfLength(length);
+    }
+
+    /**
+     * Returns every word in the dictionary sharing the letter signature of the given word, this includes the word
+     * itself if it is in the dictionary. The word is not normalized, callers are expected to pass a word in the same
+     * case as the dictionary entries.
+     * @param word the word whose anagram group should be returned
+     * @return all dictionary words made up of exactly the same characters as the word
+     */
+    public List<String> getAnagramGroup(String word) {
+        return getAnagramGroup(LetterSignature.of(word));
+    }
+
+    /**
+     * Returns every word in the dictionary with the given letter signature.
+     * @param signature the signature to look up
+     * @return all dictionary words with the signature
+     */
+    public List<String> getAnagramGroup(LetterSignature signature) {
+        return wordStore.anagramsOf(signature);
+    }
+
+    /**
+     * Returns a view of the anagram groups in the dictionary, groups added or removed while iterating may or may not
+     * be seen.
+     * @return the anagram groups of the dictionary
+     */
+    public Collection<AnagramGroup> getAnagramGroups() {
+        return wordStore.anagramGroups();
+    }
+
+    /**
+     * Returns the words starting with a prefix, e.g. to complete a partly typed word.
+     * @param prefix the start of the words, normalized if the dictionary ignores case
+     * @param limit the most words to return
+     * @return the alphabetically first words starting with the prefix, in order
+     */
+    public List<String> getWordsWithPrefix(String prefix, int limit) {
+        return wordStore.wordsWithPrefix(normalize(prefix), limit);
+    }
+
+    /**
+     * Returns the words matching a pattern, e.g. "c?t" finds cat and cot.
+     * @param pattern the word wanted with {@link #WILDCARD} in place of any one character, normalized if the
+     * dictionary ignores case
+     * @return every word matching the pattern
+     */
+    public List<String> getWordsMatching(String pattern) {
+        return wordStore.wordsMatching(normalize(pattern), WILDCARD);
+    }
+
+    /**
+     * Returns every word that can be spelled from some or all of the letters, each letter used at most as often as
+     * it is given.
+     * @param letters the letters available, normalized if the dictionary ignores case
+     * @return the words spelled from the letters
+     */
+    public List<String> getWordsSpelledFrom(String letters) {
+        return wordStore.wordsSpelledFrom(normalize(letters));
+    }
+
+    /**
+     * Returns every word made up of all the letters plus a number of blanks that may be any character.
+     * @param letters the letters every word must contain, normalized if the dictionary ignores case
+     * @param blanks how many further characters each word has
+     * @return the words of the letters and blanks
+     */
+    public List<String> getAnagramsWithBlanks(String letters, int blanks) {
+        return wordStore.anagramsWithBlanks(normalize(letters), blanks);
+    }
+
+    /**
+     * Returns one page of {@link #getAnagramsWithBlanks(String, int)}, the alphabetically first words after a given
+     * word, without finding every word first.
+     * @param letters the letters every word must contain, normalized if the dictionary ignores case
+     * @param blanks how many further characters each word has
+     * @param after the last word of the previous page, or an empty string for the first page
+     * @param limit the most words to return
+     * @return the page's words in alphabetical order
+     */
+    public List<String> getAnagramsWithBlanks(String letters, int blanks, String after, int limit) {
+        return wordStore.anagramsWithBlanks(normalize(letters), blanks, after, limit);
     }
 
     public int getSize() {
-        return dictionarySet.size();
+        return wordStore.size();
+    }
+
+    /**
+     * @return a rough estimate of the heap held by the dictionary's words and index
+     */
+    public long getEstimatedHeapBytes() {
+        return wordStore.estimatedHeapBytes();
+    }
+
+    /**
+     * @return the direct memory holding the dictionary's words, or 0 unless it uses {@link Storage#OFF_HEAP}
+     */
+    public long getOffHeapBytes() {
+        return wordStore.offHeapBytes();
     }
 
     /**
-     * Loads a file into the in memory dictionary. The dictionary is a set implementation so any duplicate
-     * words are removed. The program has the option of ignoring case when handling words, if switched on all
-     * dictionary entries are normalized to lowercase.
+     * @return the size of the snapshot the dictionary was opened from, or 0 if it was loaded from a word list
+     */
+    public long getMappedBytes() {
+        return wordStore.mappedBytes();
+    }
+
+    /**
+     * Loads a file into the in memory dictionary. Each length bucket is a set so any duplicate words are removed. The
+     * program has the option of ignoring case when handling words, if switched on all dictionary entries are
+     * normalized to lowercase.
      * @param fileStream file to load in to the dictionary.
-     * @param ignoreCase whether or not to ignore case.
      */
-    private void loadDictionary(InputStream fileStream, boolean ignoreCase) {
-        long startTime = System.currentTimeMillis();
-        int lineCounter = 0;
+    private void loadDictionary(InputStream fileStream) {
         if (fileStream != null) {
-            try (final Scanner fileScanner = new Scanner(fileStream)) {
-                while(fileScanner.hasNext()) {
-                    String line = fileScanner.nextLine();
-                    String word = ignoreCase ? line.toLowerCase(Locale.ROOT) : line;
-                    dictionarySet.add(word);
-                    lineCounter++;
-                }
+            try (InputStream input = fileStream) {
+                loadDictionary(DictionaryLoader.readAll(input));
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to read dictionary file", ex);
             }
-            int dictionarySize = dictionarySet.size();;
-            int diff = lineCounter - dictionarySize;
-            log.debug("There were {} lines loaded from the file", lineCounter);
-            log.trace("Dictionary contains {} entries", dictionarySize);
-            log.info("Difference between Dictionary entries and file {}", diff);
         } else {
             log.warn("No dictionary file supplied, starting with an empty dictionary");
+            wordStore.loadFinished();
         }
-        long elapsedTime = System.currentTimeMillis() - startTime;
-        log.info("Dictionary loaded in {}ms", elapsedTime);
+    }
+
+    /**
+     * Splits the contents of a word file into chunks of lines that are normalized and added in parallel, see
+     * {@link DictionaryLoader}.
+     * @param contents the whole word file
+     */
+    private void loadDictionary(byte[] contents) {
+        long startTime = LOAD_TIMER.start();
+        long lineCounter = new DictionaryLoader(wordStore, ignoreCase).load(contents);
+        wordStore.loadFinished();
+        long elapsedNanos = System.nanoTime() - startTime;
+        LOAD_TIMER.record(elapsedNanos);
+        long elapsedTime = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        int dictionarySize = wordStore.size();
+        long diff = lineCounter - dictionarySize;
+        log.debug("There were {} lines loaded from the file", lineCounter);
+        log.trace("Dictionary contains {} entries in {} anagram groups", dictionarySize, wordStore.groupCount());
+        log.info("Difference between Dictionary entries and file {}", diff);
+        log.info("Dictionary loaded in {}ms, {} lines per second", elapsedTime,
+            lineCounter * 1000 / Math.max(elapsedTime, 1));
     }
 
     /**
@@ -82,16 +322,21 @@ public class Dictionary {
      * @return whether or not the addition succeeded.
      */
     public boolean addWord(String word) {
-        String wordToAdd = word;
-        if (ignoreCase) {
-            wordToAdd = word.toLowerCase(Locale.ROOT);
-            log.debug("Word [{}] has been converted to lowercase [{}]", word, wordToAdd);
-        }
-        if (dictionarySet.contains(wordToAdd)) {
-            log.info("Word [{}] is already in the dictionary, skipping add", wordToAdd);
-            return false;
-        } else {
-            return dictionarySet.add(wordToAdd);
+        long startTime = ADD_TIMER.start();
+        try {
+            String wordToAdd = word;
+            if (ignoreCase) {
+                wordToAdd = word.toLowerCase(Locale.ROOT);
+                log.debug("Word [{}] has been converted to lowercase [{}]", word, wordToAdd);
+            }
+            if (wordStore.contains(wordToAdd)) {
+                log.debug("Word [{}] is already in the dictionary, skipping add", wordToAdd);
+                return false;
+            } else {
+                return applyMutation(MutationLog.ADD, wordToAdd);
+            }
+        } finally {
+            ADD_TIMER.stop(startTime);
         }
     }
 
@@ -102,16 +347,21 @@ public class Dictionary {
      * @return whether or not the removal succeeded.
      */
     public boolean removeWord(String word) {
-        String wordToRemove = word;
-        if (ignoreCase) {
-            wordToRemove = word.toLowerCase(Locale.ROOT);
-            log.debug("Word [{}] has been converted to lowercase [{}]", word, wordToRemove);
-        }
-        if (!dictionarySet.contains(wordToRemove)) {
-            log.info("Word [{}] is NOT in the dictionary, skipping remove", wordToRemove);
-            return false;
-        } else {
-            return dictionarySet.remove(wordToRemove);
+        long startTime = REMOVE_TIMER.start();
+        try {
+            String wordToRemove = word;
+            if (ignoreCase) {
+                wordToRemove = word.toLowerCase(Locale.ROOT);
+                log.debug("Word [{}] has been converted to lowercase [{}]", word, wordToRemove);
+            }
+            if (!wordStore.contains(wordToRemove)) {
+                log.debug("Word [{}] is NOT in the dictionary, skipping remove", wordToRemove);
+                return false;
+            } else {
+                return applyMutation(MutationLog.REMOVE, wordToRemove);
+            }
+        } finally {
+            REMOVE_TIMER.stop(startTime);
         }
     }
 
@@ -122,21 +372,117 @@ public class Dictionary {
      * @return whether or not the word exists in the dictionary.
      */
     public boolean containsWord(String word) {
-        String wordToFind = word;
-        if (ignoreCase) {
-            wordToFind = word.toLowerCase(Locale.ROOT);
-            log.debug("Word [{}] has been converted to lowercase [{}]", word, wordToFind);
-        }
-        if (dictionarySet.contains(wordToFind)) {
-            log.info("Word [{}] was found", wordToFind);
-            return true;
-        } else {
-            log.info("Word [{}] NOT found", wordToFind);
-            return false;
+        long startTime = CONTAINS_TIMER.start();
+        try {
+            String wordToFind = word;
+            if (ignoreCase) {
+                wordToFind = word.toLowerCase(Locale.ROOT);
+                log.debug("Word [{}] has been converted to lowercase [{}]", word, wordToFind);
+            }
+            if (wordStore.contains(wordToFind)) {
+                log.debug("Word [{}] was found", wordToFind);
+                return true;
+            } else {
+                log.debug("Word [{}] NOT found", wordToFind);
+                return false;
+            }
+        } finally {
+            CONTAINS_TIMER.stop(startTime);
         }
     }
 
     public boolean isIgnoreCase() {
         return ignoreCase;
     }
+
+    private String normalize(String word) {
+        return ignoreCase ? word.toLowerCase(Locale.ROOT) : word;
+    }
+
+    /**
+     * Starts recording every word added or removed in a log, from then on a change is only reported as made once it
+     * is as durable as the log promises. Any earlier records should already have been replayed with
+     * {@link MutationLog#replay(Path, Dictionary)}.
+     * @param mutationLog the log to append changes to
+     */
+    public void setMutationLog(MutationLog mutationLog) {
+        this.mutationLog = mutationLog;
+    }
+
+    /**
+     * @return whether changes are recorded in a mutation log, and so may wait for the disk before returning
+     */
+    public boolean hasMutationLog() {
+        return mutationLog != null;
+    }
+
+    /**
+     * Registers a listener to be told about every word added or removed from now on.
+     * @param listener the listener
+     */
+    public void addMutationListener(MutationListener listener) {
+        mutationListeners.add(listener);
+    }
+
+    /**
+     * Compacts the mutation log into a snapshot. The log is rotated first so changes made while the snapshot is
+     * written go to a fresh log, which still replays correctly on top of the snapshot whether or not the snapshot
+     * caught those changes. The rotated records are only deleted once the snapshot has been forced to the disk.
+     * @param snapshotFile the snapshot to write
+     * @throws IOException if the snapshot can not be written or the log rotated
+     */
+    public synchronized void checkpoint(Path snapshotFile) throws IOException {
+        MutationLog currentLog = mutationLog;
+        Path compactedRecords = null;
+        if (currentLog != null) {
+            synchronized (mutationLock) {
+                compactedRecords = currentLog.rotate();
+            }
+        }
+        DictionarySnapshot.write(this, snapshotFile);
+        if (compactedRecords != null) {
+            Files.deleteIfExists(compactedRecords);
+        }
+    }
+
+    /**
+     * Applies an already normalized change to the store. With a mutation log or listeners the change is appended,
+     * applied and announced under one lock, so listeners and the log see changes in the order they were made, and
+     * waiting for the disk happens outside it so concurrent changes can share a force. The change is appended before
+     * the store is touched, so a change the log refuses is never served or announced. Every change takes the lock,
+     * so whether the change does anything can be checked against the store first.
+     */
+    private boolean applyMutation(byte operation, String word) {
+        MutationLog currentLog = mutationLog;
+        if (currentLog == null && mutationListeners.isEmpty()) {
+            return changeStore(operation, word);
+        }
+        try {
+            long sequence = 0;
+            synchronized (mutationLock) {
+                if (currentLog != null) {
+                    if (wordStore.contains(word) == (operation == MutationLog.ADD)) {
+                        return false;
+                    }
+                    sequence = currentLog.append(operation, word);
+                }
+                if (!changeStore(operation, word)) {
+                    return false;
+                }
+                for (MutationListener listener : mutationListeners) {
+                    listener.wordChanged(word, operation == MutationLog.ADD);
+                }
+            }
+            if (currentLog != null) {
+                currentLog.awaitDurable(sequence);
+            }
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to log change to word [" + word + "]", ex);
+        }
+    }
+
+    private boolean changeStore(byte operation, String word) {
+        return operation == MutationLog.ADD ? wordStore.add(word) : wordStore.remove(word);
+    }
 }
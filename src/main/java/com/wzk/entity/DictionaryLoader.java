@@ -0,0 +1,118 @@
+package com.wzk.entity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Loads a word list into a {@link WordStore}. The whole file is read with bulk channel reads, split into line aligned
+ * chunks and the chunks are normalized and added to the store in parallel, the store being safe to add to
+ * concurrently. Files are read as UTF-8 with one word per line, lines may end in \n or \r\n and empty lines are
+ * skipped. Word lists must be smaller than 2GB.
+ */
+final class DictionaryLoader {
+    /** Chunks are never smaller than this, splitting a small file further costs more than it saves. */
+    private static final int MIN_CHUNK_BYTES = 256 * 1024;
+    /** Words are handed to the store this many at a time, see {@link WordStore#addAll(java.util.Collection)}. */
+    private static final int ADD_BATCH_SIZE = 32768;
+    private static final int READ_BUFFER_BYTES = 1 << 16;
+
+    private final WordStore wordStore;
+    private final boolean ignoreCase;
+
+    DictionaryLoader(WordStore wordStore, boolean ignoreCase) {
+        this.wordStore = wordStore;
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * Reads a stream to its end.
+     */
+    static byte[] readAll(InputStream fileStream) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(fileStream);
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        while (channel.read(buffer) >= 0) {
+            if (!buffer.hasRemaining()) {
+                buffer = ByteBuffer.wrap(Arrays.copyOf(buffer.array(), buffer.capacity() * 2), buffer.position(),
+                    buffer.capacity());
+            }
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Reads a file in one go, its size being known up front.
+     */
+    static byte[] readAll(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Word list " + file + " is larger than 2GB");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full
+            }
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+
+    /**
+     * Adds every line of a word list to the store.
+     * @param contents the whole word list
+     * @return the number of lines read, including duplicates
+     */
+    long load(byte[] contents) {
+        int chunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4,
+            contents.length / MIN_CHUNK_BYTES));
+        int[] boundaries = new int[chunks + 1];
+        boundaries[chunks] = contents.length;
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            int boundary = Math.max((int) ((long) contents.length * chunk / chunks), boundaries[chunk - 1]);
+            while (boundary < contents.length && contents[boundary - 1] != '\n') {
+                boundary++;
+            }
+            boundaries[chunk] = boundary;
+        }
+        LongAdder lines = new LongAdder();
+        IntStream.range(0, chunks).parallel()
+            .forEach(chunk -> lines.add(loadChunk(contents, boundaries[chunk], boundaries[chunk + 1])));
+        return lines.sum();
+    }
+
+    private long loadChunk(byte[] contents, int start, int end) {
+        List<String> batch = new ArrayList<>(ADD_BATCH_SIZE);
+        long lines = 0;
+        int lineStart = start;
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && contents[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int wordEnd = lineEnd > lineStart && contents[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (wordEnd > lineStart) {
+                String line = new String(contents, lineStart, wordEnd - lineStart, StandardCharsets.UTF_8);
+                batch.add(ignoreCase ? line.toLowerCase(Locale.ROOT) : line);
+                lines++;
+                if (batch.size() == ADD_BATCH_SIZE) {
+                    wordStore.addAll(batch);
+                    batch.clear();
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        wordStore.addAll(batch);
+        return lines;
+    }
+}
@@ -0,0 +1,375 @@
+package com.wzk.entity;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A precompiled, read only dictionary file that is memory mapped rather than parsed, so opening it takes
+ * milliseconds regardless of the number of words and the words stay in the page cache instead of on the heap.
+ * All numbers are big endian ints, the file is laid out as:
+ * <pre>
+ *   header          magic, version, flags, word count, group count, hash table size, length count, word byte count
+ *   word offsets    int[words + 1], word i is the UTF-8 bytes from offset i up to offset i + 1
+ *   by length       int[words], word ids ordered by length
+ *   length table    int[lengths * 2], each length and the position in the by length table its words start at
+ *   group starts    int[groups + 1], the position in the group members table each anagram group starts at
+ *   group members   int[words], word ids ordered by anagram group
+ *   group hashes    int[groups], the {@link LetterSignature#hashCode()} of each group
+ *   hash table      int[table size], open addressing table of group index + 1 keyed by signature hash, 0 is empty
+ *   word bytes      the UTF-8 bytes of every word, words sorted by their bytes so they can be binary searched
+ * </pre>
+ * Snapshots larger than 2GB are not supported.
+ */
+@Slf4j
+public final class DictionarySnapshot {
+    private static final int MAGIC = 0x414E4752;
+    private static final int VERSION = 1;
+    private static final int FLAG_IGNORE_CASE = 1;
+    private static final int HEADER_LENGTH = 8 * Integer.BYTES;
+    private static final Comparator<byte[]> UNSIGNED_BYTES = DictionarySnapshot::compareBytes;
+
+    private final ByteBuffer buffer;
+    private final boolean ignoreCase;
+    private final int wordCount;
+    private final int groupCount;
+    private final int tableSize;
+    private final int lengthCount;
+    private final int wordOffsetsPosition;
+    private final int byLengthPosition;
+    private final int lengthTablePosition;
+    private final int groupStartsPosition;
+    private final int groupMembersPosition;
+    private final int groupHashesPosition;
+    private final int hashTablePosition;
+    private final int wordBytesPosition;
+
+    private DictionarySnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a version " + VERSION + " dictionary snapshot");
+        }
+        this.ignoreCase = (buffer.getInt(8) & FLAG_IGNORE_CASE) != 0;
+        this.wordCount = buffer.getInt(12);
+        this.groupCount = buffer.getInt(16);
+        this.tableSize = buffer.getInt(20);
+        this.lengthCount = buffer.getInt(24);
+        this.wordOffsetsPosition = HEADER_LENGTH;
+        this.byLengthPosition = wordOffsetsPosition + (wordCount + 1) * Integer.BYTES;
+        this.lengthTablePosition = byLengthPosition + wordCount * Integer.BYTES;
+        this.groupStartsPosition = lengthTablePosition + lengthCount * 2 * Integer.BYTES;
+        this.groupMembersPosition = groupStartsPosition + (groupCount + 1) * Integer.BYTES;
+        this.groupHashesPosition = groupMembersPosition + wordCount * Integer.BYTES;
+        this.hashTablePosition = groupHashesPosition + groupCount * Integer.BYTES;
+        this.wordBytesPosition = hashTablePosition + tableSize * Integer.BYTES;
+        if ((long) wordBytesPosition + buffer.getInt(28) != buffer.capacity()) {
+            throw new IOException("Dictionary snapshot is truncated");
+        }
+    }
+
+    /**
+     * Memory maps a snapshot file.
+     * @param file the snapshot to open
+     * @return the opened snapshot
+     * @throws IOException if the file can not be read or is not a snapshot
+     */
+    public static DictionarySnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Dictionary snapshot " + file + " is larger than 2GB");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new DictionarySnapshot(mapped);
+        }
+    }
+
+    /**
+     * Writes every word of a dictionary to a snapshot file. The file is written alongside the target and moved into
+     * place once complete, so a reader never sees a partly written snapshot.
+     * @param dictionary the dictionary to write
+     * @param file the snapshot to create or replace
+     * @throws IOException if the file can not be written
+     */
+    public static void write(Dictionary dictionary, Path file) throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<AnagramGroup> groups = new ArrayList<>(dictionary.getAnagramGroups());
+        List<byte[]> words = new ArrayList<>();
+        for (AnagramGroup group : groups) {
+            for (String word : group.getWords()) {
+                words.add(word.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        words.sort(UNSIGNED_BYTES);
+        Map<String, Integer> wordIds = new HashMap<>();
+        int[] charLengths = new int[words.size()];
+        for (int id = 0; id < words.size(); id++) {
+            String word = new String(words.get(id), StandardCharsets.UTF_8);
+            wordIds.put(word, id);
+            charLengths[id] = word.length();
+        }
+
+        List<int[]> groupMembers = new ArrayList<>();
+        List<Integer> groupHashes = new ArrayList<>();
+        for (AnagramGroup group : groups) {
+            int[] members = group.getWords().stream().filter(wordIds::containsKey).mapToInt(wordIds::get).toArray();
+            if (members.length > 0) {
+                Arrays.sort(members);
+                groupMembers.add(members);
+                groupHashes.add(group.getSignature().hashCode());
+            }
+        }
+        int tableSize = Integer.highestOneBit(Math.max(groupMembers.size(), 1) * 2 - 1) << 1;
+        int[] hashTable = new int[tableSize];
+        for (int group = 0; group < groupMembers.size(); group++) {
+            int slot = spread(groupHashes.get(group)) & (tableSize - 1);
+            while (hashTable[slot] != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            hashTable[slot] = group + 1;
+        }
+        Integer[] byLength = new Integer[words.size()];
+        for (int id = 0; id < byLength.length; id++) {
+            byLength[id] = id;
+        }
+        Arrays.sort(byLength, Comparator.comparingInt((Integer id) -> charLengths[id]).thenComparingInt(id -> id));
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                1 << 16))) {
+            List<int[]> lengthTable = new ArrayList<>();
+            for (int position = 0; position < byLength.length; position++) {
+                int length = charLengths[byLength[position]];
+                if (lengthTable.isEmpty() || lengthTable.get(lengthTable.size() - 1)[0] != length) {
+                    lengthTable.add(new int[] {length, position});
+                }
+            }
+            int wordByteCount = words.stream().mapToInt(word -> word.length).sum();
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(dictionary.isIgnoreCase() ? FLAG_IGNORE_CASE : 0);
+            output.writeInt(words.size());
+            output.writeInt(groupMembers.size());
+            output.writeInt(tableSize);
+            output.writeInt(lengthTable.size());
+            output.writeInt(wordByteCount);
+            int offset = 0;
+            for (byte[] word : words) {
+                output.writeInt(offset);
+                offset += word.length;
+            }
+            output.writeInt(offset);
+            for (Integer id : byLength) {
+                output.writeInt(id);
+            }
+            for (int[] entry : lengthTable) {
+                output.writeInt(entry[0]);
+                output.writeInt(entry[1]);
+            }
+            int groupStart = 0;
+            for (int[] members : groupMembers) {
+                output.writeInt(groupStart);
+                groupStart += members.length;
+            }
+            output.writeInt(groupStart);
+            for (int[] members : groupMembers) {
+                for (int member : members) {
+                    output.writeInt(member);
+                }
+            }
+            for (Integer hash : groupHashes) {
+                output.writeInt(hash);
+            }
+            for (int slot : hashTable) {
+                output.writeInt(slot);
+            }
+            for (byte[] word : words) {
+                output.write(word);
+            }
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(file.toAbsolutePath().getParent());
+        long elapsedTime = System.currentTimeMillis() - startTime;
+        log.info("Wrote snapshot {} with {} words in {} anagram groups in {}ms", file, words.size(),
+            groupMembers.size(), elapsedTime);
+    }
+
+    /**
+     * Forces a directory so a file just moved into it survives a crash, on platforms where a directory can be
+     * opened at all.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException ex) {
+            log.debug("Directory {} can not be forced on this platform", directory);
+        }
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * @return the size of the mapped file in bytes
+     */
+    public long getMappedBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Binary searches the sorted word bytes.
+     * @param word the word to find
+     * @return whether or not the word is in the snapshot
+     */
+    boolean contains(String word) {
+        byte[] target = word.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = wordCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareWord(middle, target);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    List<String> wordsOfLength(int length) {
+        List<String> words = new ArrayList<>();
+        for (int entry = 0; entry < lengthCount; entry++) {
+            int entryPosition = lengthTablePosition + entry * 2 * Integer.BYTES;
+            if (buffer.getInt(entryPosition) == length) {
+                int start = buffer.getInt(entryPosition + Integer.BYTES);
+                int end = entry + 1 < lengthCount
+                    ? buffer.getInt(entryPosition + 3 * Integer.BYTES)
+                    : wordCount;
+                for (int position = start; position < end; position++) {
+                    words.add(word(buffer.getInt(byLengthPosition + position * Integer.BYTES)));
+                }
+                break;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Looks a signature up in the hash table, comparing candidate groups by their stored hash before decoding any
+     * word.
+     * @param signature the signature to find
+     * @return the index of the group with the signature, or -1 if there is none
+     */
+    int findGroup(LetterSignature signature) {
+        int hash = signature.hashCode();
+        int mask = tableSize - 1;
+        int slot = spread(hash) & mask;
+        int entry;
+        while ((entry = buffer.getInt(hashTablePosition + slot * Integer.BYTES)) != 0) {
+            int group = entry - 1;
+            if (buffer.getInt(groupHashesPosition + group * Integer.BYTES) == hash
+                && signature.matches(word(groupMember(group, 0)))) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    List<String> groupWords(int group) {
+        int start = buffer.getInt(groupStartsPosition + group * Integer.BYTES);
+        int end = buffer.getInt(groupStartsPosition + (group + 1) * Integer.BYTES);
+        List<String> words = new ArrayList<>(end - start);
+        for (int member = start; member < end; member++) {
+            words.add(word(buffer.getInt(groupMembersPosition + member * Integer.BYTES)));
+        }
+        return words;
+    }
+
+    /**
+     * @return every word of the snapshot in byte order
+     */
+    List<String> allWords() {
+        List<String> words = new ArrayList<>(wordCount);
+        for (int id = 0; id < wordCount; id++) {
+            words.add(word(id));
+        }
+        return words;
+    }
+
+    private int groupMember(int group, int member) {
+        int start = buffer.getInt(groupStartsPosition + group * Integer.BYTES);
+        return buffer.getInt(groupMembersPosition + (start + member) * Integer.BYTES);
+    }
+
+    private String word(int id) {
+        int start = buffer.getInt(wordOffsetsPosition + id * Integer.BYTES);
+        int end = buffer.getInt(wordOffsetsPosition + (id + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = buffer.duplicate();
+        view.position(wordBytesPosition + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int compareWord(int id, byte[] target) {
+        int start = wordBytesPosition + buffer.getInt(wordOffsetsPosition + id * Integer.BYTES);
+        int length = wordBytesPosition + buffer.getInt(wordOffsetsPosition + (id + 1) * Integer.BYTES) - start;
+        int common = Math.min(length, target.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (buffer.get(start + i) & 0xFF) - (target[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - target.length;
+    }
+
+    private static int compareBytes(byte[] first, byte[] second) {
+        int common = Math.min(first.length, second.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (first[i] & 0xFF) - (second[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return first.length - second.length;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,122 @@
+package com.wzk.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Keeps words on the heap in concurrent buckets keyed by their length, alongside an index from each word's
+ * {@link LetterSignature} to the group of words sharing that signature.
+ */
+class HeapWordStore implements WordStore {
+    /** A word's entries in its length bucket and its group's set, the String itself is counted by its length. */
+    private static final long BYTES_PER_WORD = 2 * 48 + 40;
+    /** The group, its letter counts, its signature and its entry in the index. */
+    private static final long BYTES_PER_GROUP = 240;
+
+    private final Map<Integer, Set<String>> wordsByLength = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Map<LetterSignature, AnagramGroup> signatureIndex = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a word to its length bucket and to its anagram group. Both updates happen while holding the index entry
+     * for the word's signature so a concurrent removal of the same word can not leave the buckets and the index out
+     * of step. Empty length buckets are kept, there are only ever a few dozen of them.
+     */
+    @Override
+    public boolean add(String word) {
+        boolean[] added = new boolean[1];
+        signatureIndex.compute(LetterSignature.of(word), (signature, group) -> {
+            added[0] = wordsByLength.computeIfAbsent(word.length(), length -> Sets.newConcurrentHashSet()).add(word);
+            if (added[0]) {
+                size.incrementAndGet();
+                if (group == null) {
+                    group = new AnagramGroup(signature, word);
+                }
+                group.add(word);
+            }
+            return group;
+        });
+        return added[0];
+    }
+
+    /**
+     * Removes a word from its length bucket and from its anagram group, dropping the group once it is empty.
+     */
+    @Override
+    public boolean remove(String word) {
+        boolean[] removed = new boolean[1];
+        signatureIndex.compute(LetterSignature.of(word), (signature, group) -> {
+            Set<String> bucket = wordsByLength.get(word.length());
+            removed[0] = bucket != null && bucket.remove(word);
+            if (removed[0]) {
+                size.decrementAndGet();
+            }
+            if (group != null) {
+                group.remove(word);
+                if (group.isEmpty()) {
+                    return null;
+                }
+            }
+            return group;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public boolean contains(String word) {
+        Set<String> bucket = wordsByLength.get(word.length());
+        return bucket != null && bucket.contains(word);
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public List<String> wordsOfLength(int length) {
+        Set<String> bucket = wordsByLength.get(length);
+        if (bucket == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(bucket);
+    }
+
+    @Override
+    public List<String> anagramsOf(LetterSignature signature) {
+        AnagramGroup group = signatureIndex.get(signature);
+        if (group == null) {
+            return new ArrayList<>();
+        }
+        return group.getWords();
+    }
+
+    @Override
+    public Collection<AnagramGroup> anagramGroups() {
+        return Collections.unmodifiableCollection(signatureIndex.values());
+    }
+
+    @Override
+    public int groupCount() {
+        return signatureIndex.size();
+    }
+
+    @Override
+    public long estimatedHeapBytes() {
+        long bytes = signatureIndex.size() * BYTES_PER_GROUP;
+        for (Set<String> bucket : wordsByLength.values()) {
+            for (String word : bucket) {
+                bytes += BYTES_PER_WORD + 2L * word.length();
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,104 @@
+package com.wzk.entity;
+
+import java.util.Arrays;
+
+/**
+ * The letters of a word as a presence bitmask and a count vector, used to check whether one word can be spelled from
+ * the letters of another. Bits 0-25 of the mask mark the letters a-z, every other character sets one of the
+ * remaining bits by its code, so a word whose mask has a bit the available letters lack is rejected with a single AND
+ * before any counts are compared. Counts for a-z are kept in a byte per letter, other characters and any copies of a
+ * letter beyond the 127 a byte holds are kept as a sorted string.
+ */
+public final class LetterCounts {
+    private static final int LETTERS = 26;
+    private static final int OTHER_BITS = Long.SIZE - LETTERS;
+    private static final String NO_OTHER_CHARACTERS = "";
+
+    private final long mask;
+    private final byte[] counts;
+    private final String otherCharacters;
+    private final int length;
+
+    private LetterCounts(long mask, byte[] counts, String otherCharacters, int length) {
+        this.mask = mask;
+        this.counts = counts;
+        this.otherCharacters = otherCharacters;
+        this.length = length;
+    }
+
+    /**
+     * Counts the letters of a word.
+     * @param word the word to count
+     * @return the letter counts of the word
+     */
+    public static LetterCounts of(CharSequence word) {
+        long mask = 0L;
+        byte[] counts = new byte[LETTERS];
+        StringBuilder others = null;
+        for (int i = 0; i < word.length(); i++) {
+            char character = word.charAt(i);
+            int letter = character - 'a';
+            if (letter >= 0 && letter < LETTERS && counts[letter] < Byte.MAX_VALUE) {
+                counts[letter]++;
+                mask |= 1L << letter;
+                continue;
+            }
+            mask |= letter >= 0 && letter < LETTERS ? 1L << letter : 1L << (LETTERS + character % OTHER_BITS);
+            if (others == null) {
+                others = new StringBuilder();
+            }
+            others.append(character);
+        }
+        String otherCharacters = NO_OTHER_CHARACTERS;
+        if (others != null) {
+            char[] sorted = others.toString().toCharArray();
+            Arrays.sort(sorted);
+            otherCharacters = String.valueOf(sorted);
+        }
+        return new LetterCounts(mask, counts, otherCharacters, word.length());
+    }
+
+    /**
+     * Checks whether every letter of the word, including repeats, is available in these letters.
+     * @param word the letter counts of the word to spell
+     * @return whether or not the word can be spelled from these letters
+     */
+    public boolean canSpell(LetterCounts word) {
+        if ((word.mask & ~mask) != 0L || word.length > length) {
+            return false;
+        }
+        byte[] wordCounts = word.counts;
+        for (int i = 0; i < LETTERS; i++) {
+            if (wordCounts[i] > counts[i]) {
+                return false;
+            }
+        }
+        return word.otherCharacters.isEmpty() || containsAll(otherCharacters, word.otherCharacters);
+    }
+
+    public long getMask() {
+        return mask;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Walks two sorted strings to check the characters of the second, including repeats, all appear in the first.
+     */
+    private static boolean containsAll(String available, String required) {
+        int availableIndex = 0;
+        for (int i = 0; i < required.length(); i++) {
+            char character = required.charAt(i);
+            while (availableIndex < available.length() && available.charAt(availableIndex) < character) {
+                availableIndex++;
+            }
+            if (availableIndex == available.length() || available.charAt(availableIndex) != character) {
+                return false;
+            }
+            availableIndex++;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,140 @@
+package com.wzk.entity;
+
+import java.util.Arrays;
+
+/**
+ * The letter signature of a word, two words share a signature exactly when they are made up of the same characters.
+ * Words consisting only of the lowercase letters a-z are encoded as the product of one prime per letter, which is
+ * unique to the multiset of letters, so hashing and comparing is done on a single long. Words containing any other
+ * character, or long enough for the product to overflow, fall back to their characters sorted alphabetically.
+ */
+public final class LetterSignature {
+    private static final long[] LETTER_PRIMES = {
+        2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61, 67, 71, 73, 79, 83, 89, 97, 101
+    };
+    /** Returned by {@link #primeProduct(CharSequence)} when a word can not be encoded as a prime product. */
+    public static final long NOT_ENCODABLE = 0L;
+
+    private final long primeProduct;
+    private final String sortedCharacters;
+    private final int length;
+
+    private LetterSignature(long primeProduct, String sortedCharacters, int length) {
+        this.primeProduct = primeProduct;
+        this.sortedCharacters = sortedCharacters;
+        this.length = length;
+    }
+
+    /**
+     * Derives the signature of a word. Only words that can not be encoded as a prime product allocate anything
+     * beyond the signature itself.
+     * @param word the word to derive the signature of
+     * @return the signature of the word
+     */
+    public static LetterSignature of(CharSequence word) {
+        long product = primeProduct(word);
+        if (product != NOT_ENCODABLE) {
+            return new LetterSignature(product, null, word.length());
+        }
+        return new LetterSignature(NOT_ENCODABLE, sortCharacters(word), word.length());
+    }
+
+    /**
+     * Multiplies together the prime assigned to each letter of the word.
+     * @param word the word to encode
+     * @return the product of the word's letter primes, or {@link #NOT_ENCODABLE} if the word contains a character
+     * outside a-z or the product would overflow a long
+     */
+    public static long primeProduct(CharSequence word) {
+        long product = 1L;
+        for (int i = 0; i < word.length(); i++) {
+            int letter = word.charAt(i) - 'a';
+            if (letter < 0 || letter >= LETTER_PRIMES.length) {
+                return NOT_ENCODABLE;
+            }
+            long prime = LETTER_PRIMES[letter];
+            if (product > Long.MAX_VALUE / prime) {
+                return NOT_ENCODABLE;
+            }
+            product *= prime;
+        }
+        return product;
+    }
+
+    /**
+     * Checks whether a word is made up of exactly the characters of this signature without creating a signature
+     * for it, words encodable as a prime product are compared without allocating.
+     * @param word the word to check
+     * @return whether or not the word has this signature
+     */
+    public boolean matches(CharSequence word) {
+        if (word.length() != length) {
+            return false;
+        }
+        long product = primeProduct(word);
+        if (primeProduct != NOT_ENCODABLE || product != NOT_ENCODABLE) {
+            return product == primeProduct;
+        }
+        return sortedCharacters.equals(sortCharacters(word));
+    }
+
+    /**
+     * @return the number of characters in words with this signature
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return the characters of words with this signature in alphabetical order, a prime product is factored back
+     * into its letters
+     */
+    public String getSortedCharacters() {
+        if (primeProduct == NOT_ENCODABLE) {
+            return sortedCharacters;
+        }
+        StringBuilder letters = new StringBuilder(length);
+        long remaining = primeProduct;
+        for (int letter = 0; letter < LETTER_PRIMES.length && remaining > 1; letter++) {
+            while (remaining % LETTER_PRIMES[letter] == 0) {
+                letters.append((char) ('a' + letter));
+                remaining /= LETTER_PRIMES[letter];
+            }
+        }
+        return letters.toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof LetterSignature)) {
+            return false;
+        }
+        LetterSignature that = (LetterSignature) other;
+        if (primeProduct != NOT_ENCODABLE || that.primeProduct != NOT_ENCODABLE) {
+            return primeProduct == that.primeProduct;
+        }
+        return sortedCharacters.equals(that.sortedCharacters);
+    }
+
+    @Override
+    public int hashCode() {
+        if (primeProduct != NOT_ENCODABLE) {
+            return Long.hashCode(primeProduct * 0x9E3779B97F4A7C15L);
+        }
+        return sortedCharacters.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return primeProduct != NOT_ENCODABLE ? Long.toString(primeProduct) : "[" + sortedCharacters + "]";
+    }
+
+    private static String sortCharacters(CharSequence word) {
+        char[] charArray = word.toString().toCharArray();
+        Arrays.sort(charArray);
+        return String.valueOf(charArray);
+    }
+}
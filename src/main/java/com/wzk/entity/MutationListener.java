@@ -0,0 +1,16 @@
+package com.wzk.entity;
+
+/**
+ * Told about every word added to or removed from a {@link Dictionary} after it has been loaded. Listeners are called
+ * one change at a time in the order the changes were made, while the change is still being made, so they should be
+ * quick and must not change the dictionary themselves.
+ */
+@FunctionalInterface
+public interface MutationListener {
+
+    /**
+     * @param word the normalized word that changed
+     * @param added true if the word was added, false if it was removed
+     */
+    void wordChanged(String word, boolean added);
+}
@@ -0,0 +1,310 @@
+package com.wzk.entity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An append only log of the words added to and removed from a {@link Dictionary}, so changes made while running
+ * survive a restart. Each record is:
+ * <pre>
+ *   int    length of the word in bytes
+ *   byte   {@link #ADD} or {@link #REMOVE}
+ *   byte[] the word in UTF-8
+ *   int    CRC32 of the operation and the word
+ * </pre>
+ * A record torn by a crash fails its checksum, replay stops there and the log is truncated back to the last whole
+ * record. How long a change waits to reach the disk is set by its {@link Durability}.
+ */
+@Slf4j
+public class MutationLog implements Closeable {
+    static final byte ADD = 1;
+    static final byte REMOVE = 2;
+    /** The length, operation and checksum around each word. */
+    private static final int RECORD_OVERHEAD = Integer.BYTES + 1 + Integer.BYTES;
+    private static final int MAX_WORD_BYTES = 1 << 16;
+
+    /**
+     * When a logged change is forced to the disk, relative to the call that made it returning.
+     */
+    public enum Durability {
+        /** Changes are forced by a background thread every flush interval, callers never wait. */
+        ASYNC,
+        /** Callers wait for a background thread to force the log, every change waiting shares the one force. */
+        GROUP,
+        /** Every caller forces the log itself before returning. */
+        SYNC
+    }
+
+    private final Path file;
+    private final Path compactingFile;
+    private final Durability durability;
+    private final long flushIntervalMillis;
+    private final Object forceLock = new Object();
+    private final Thread flusher;
+    private FileChannel channel;
+    private long appendedSequence;
+    private long durableSequence;
+    private volatile boolean closed;
+
+    private MutationLog(Path file, Durability durability, long flushIntervalMillis) throws IOException {
+        this.file = file;
+        this.compactingFile = compactingFileOf(file);
+        this.durability = durability;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        if (durability == Durability.SYNC) {
+            flusher = null;
+        } else {
+            flusher = new Thread(this::flushLoop, "mutation-log-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    /**
+     * Opens a log for appending, creating it if needed. Any existing records should be replayed first.
+     * @param file the log file
+     * @param durability when changes are forced to the disk
+     * @param flushIntervalMillis how often the {@link Durability#ASYNC} flusher forces the log
+     * @return the opened log
+     * @throws IOException if the log can not be opened
+     */
+    public static MutationLog open(Path file, Durability durability, long flushIntervalMillis) throws IOException {
+        log.info("Opening mutation log {} with {} durability", file, durability);
+        return new MutationLog(file, durability, flushIntervalMillis);
+    }
+
+    /**
+     * Applies the records of a log, and of a compaction the log was part of that did not finish, to a dictionary.
+     * Adding and removing words are idempotent, so replaying records the dictionary already reflects changes nothing.
+     * Torn records at the end of either file are cut off.
+     * @param file the log file
+     * @param dictionary the dictionary to apply the records to, which must not have a log set yet
+     * @return the number of records replayed
+     * @throws IOException if a log can not be read
+     */
+    public static int replay(Path file, Dictionary dictionary) throws IOException {
+        long startTime = System.currentTimeMillis();
+        int records = replayFile(compactingFileOf(file), dictionary) + replayFile(file, dictionary);
+        long elapsedTime = System.currentTimeMillis() - startTime;
+        log.info("Replayed {} records of mutation log {} in {}ms", records, file, elapsedTime);
+        return records;
+    }
+
+    private static int replayFile(Path file, Dictionary dictionary) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        int records = 0;
+        try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + 1);
+            ByteBuffer checksum = ByteBuffer.allocate(Integer.BYTES);
+            long validLength = 0;
+            while (readFully(input, header)) {
+                int length = header.getInt(0);
+                byte operation = header.get(Integer.BYTES);
+                if (length < 0 || length > MAX_WORD_BYTES) {
+                    break;
+                }
+                ByteBuffer word = ByteBuffer.allocate(length);
+                if (!readFully(input, word) || !readFully(input, checksum)
+                    || checksum.getInt(0) != checksum(operation, word.array())) {
+                    break;
+                }
+                String text = new String(word.array(), StandardCharsets.UTF_8);
+                if (operation == ADD) {
+                    dictionary.addWord(text);
+                } else if (operation == REMOVE) {
+                    dictionary.removeWord(text);
+                } else {
+                    break;
+                }
+                records++;
+                validLength = input.position();
+            }
+            if (validLength < input.size()) {
+                log.warn("Truncating {} bytes of torn records from the end of {}", input.size() - validLength, file);
+                input.truncate(validLength);
+            }
+        }
+        return records;
+    }
+
+    private static boolean readFully(FileChannel input, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (input.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int checksum(byte operation, byte[] word) {
+        CRC32 crc = new CRC32();
+        crc.update(operation);
+        crc.update(word);
+        return (int) crc.getValue();
+    }
+
+    static Path compactingFileOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".compacting");
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Writes a record to the log without waiting for it to reach the disk.
+     * @param operation {@link #ADD} or {@link #REMOVE}
+     * @param word the normalized word
+     * @return the sequence number of the record, to pass to {@link #awaitDurable(long)}
+     * @throws IOException if the record can not be written
+     */
+    synchronized long append(byte operation, String word) throws IOException {
+        if (closed) {
+            throw new IOException("Mutation log " + file + " is closed");
+        }
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + bytes.length);
+        record.putInt(bytes.length).put(operation).put(bytes).putInt(checksum(operation, bytes));
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        appendedSequence++;
+        if (durability == Durability.GROUP) {
+            notifyAll();
+        }
+        return appendedSequence;
+    }
+
+    /**
+     * Blocks until a record is as durable as the log's {@link Durability} promises.
+     * @param sequence the sequence number returned when the record was appended
+     * @throws IOException if the log can not be forced
+     */
+    void awaitDurable(long sequence) throws IOException {
+        if (durability == Durability.SYNC) {
+            force();
+        } else if (durability == Durability.GROUP) {
+            synchronized (this) {
+                while (durableSequence < sequence && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted waiting for the mutation log to be forced", ex);
+                    }
+                }
+                if (durableSequence < sequence) {
+                    throw new IOException("Mutation log " + file + " closed before the change was forced");
+                }
+            }
+        }
+    }
+
+    /**
+     * Forces every record appended so far to the disk and wakes anyone waiting for them.
+     */
+    private void force() throws IOException {
+        synchronized (forceLock) {
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                if (appendedSequence == durableSequence) {
+                    return;
+                }
+                target = appendedSequence;
+                current = channel;
+            }
+            current.force(false);
+            synchronized (this) {
+                durableSequence = Math.max(durableSequence, target);
+                notifyAll();
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            try {
+                synchronized (this) {
+                    if (durability == Durability.ASYNC) {
+                        wait(flushIntervalMillis);
+                    } else {
+                        while (appendedSequence == durableSequence && !closed) {
+                            wait();
+                        }
+                    }
+                }
+                force();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException ex) {
+                log.error("Failed to force mutation log {}", file, ex);
+            }
+        }
+    }
+
+    /**
+     * Starts a new log for the changes that follow, moving the records so far aside to be compacted. If a previous
+     * compaction did not finish its records are kept, the new ones are appended after them.
+     * @return the file holding every record not yet part of a snapshot, to delete once a snapshot has been written
+     * @throws IOException if the log can not be rotated
+     */
+    Path rotate() throws IOException {
+        synchronized (forceLock) {
+            synchronized (this) {
+                channel.force(false);
+                durableSequence = appendedSequence;
+                notifyAll();
+                if (Files.exists(compactingFile)) {
+                    try (FileChannel records = FileChannel.open(file, StandardOpenOption.READ);
+                        FileChannel compacting = FileChannel.open(compactingFile, StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND)) {
+                        long copied = 0;
+                        while (copied < records.size()) {
+                            copied += records.transferTo(copied, records.size() - copied, compacting);
+                        }
+                        compacting.force(false);
+                    }
+                    channel.truncate(0);
+                    channel.position(0);
+                    channel.force(false);
+                } else {
+                    channel.close();
+                    Files.move(file, compactingFile, StandardCopyOption.ATOMIC_MOVE);
+                    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                }
+                return compactingFile;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            channel.close();
+        }
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package com.wzk.entity;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps words as UTF-8 bytes in direct memory rather than as Strings on the heap. Each word is appended to an arena
+ * of 1MB direct buffers as a record:
+ * <pre>
+ *   int    offset of the next word in the same anagram group, or -1
+ *   short  length of the word in characters
+ *   short  length of the word in bytes
+ *   byte[] the word in UTF-8
+ * </pre>
+ * Two open addressing tables of record offsets index the arena, one keyed by the word and one by letter signature
+ * holding the first record of each anagram group, each slot alongside its key's hash in a second int array. The only
+ * heap the store holds is those four int arrays, about 16 to 40 bytes per word against the 150 or so of
+ * {@link HeapWordStore}. Lookups share a read lock and changes take the write lock. A removed word's record is
+ * unlinked but its bytes are not reused, they are counted in {@link #deadBytes()}.
+ */
+class OffHeapWordStore implements WordStore {
+    private static final int CHUNK_BITS = 20;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1 << (Integer.SIZE - 1 - CHUNK_BITS);
+    private static final int HEADER_BYTES = Integer.BYTES + 2 * Short.BYTES;
+    private static final int MAX_WORD_BYTES = 0xFFFF;
+    private static final int EMPTY = -1;
+    private static final int DELETED = -2;
+    private static final int MIN_CAPACITY = 1024;
+    /** Tables are grown once live and deleted slots fill more than this share of them. */
+    private static final double MAX_LOAD = 0.6;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int arenaEnd;
+    private long deadBytes;
+
+    private int[] wordSlots = emptySlots(MIN_CAPACITY);
+    private int[] wordHashes = new int[MIN_CAPACITY];
+    private int wordSlotsUsed;
+    private volatile int size;
+
+    private int[] groupSlots = emptySlots(MIN_CAPACITY);
+    private int[] groupHashes = new int[MIN_CAPACITY];
+    private int groupSlotsUsed;
+    private volatile int groupCount;
+
+    /**
+     * A word to add, encoded before the write lock is taken.
+     */
+    private static final class EncodedWord {
+        private final String word;
+        private final byte[] bytes;
+        private final int hash;
+        private final LetterSignature signature;
+
+        private EncodedWord(String word) {
+            this.word = word;
+            this.bytes = word.getBytes(StandardCharsets.UTF_8);
+            this.hash = spread(word.hashCode());
+            this.signature = LetterSignature.of(word);
+            if (bytes.length > MAX_WORD_BYTES) {
+                throw new IllegalArgumentException("Word of " + bytes.length + " bytes is too long to store");
+            }
+        }
+    }
+
+    @Override
+    public boolean add(String word) {
+        EncodedWord encoded = new EncodedWord(word);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return addLocked(encoded);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Encodes the words first and then adds them all under one hold of the write lock.
+     */
+    @Override
+    public void addAll(Collection<String> words) {
+        List<EncodedWord> encodedWords = new ArrayList<>(words.size());
+        for (String word : words) {
+            encodedWords.add(new EncodedWord(word));
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (EncodedWord encoded : encodedWords) {
+                addLocked(encoded);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a word from the word table and unlinks its record from its anagram group, dropping the group once it
+     * is empty.
+     */
+    @Override
+    public boolean remove(String word) {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        int hash = spread(word.hashCode());
+        LetterSignature signature = LetterSignature.of(word);
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            int wordSlot = findWordSlot(bytes, hash);
+            if (wordSlot < 0) {
+                return false;
+            }
+            int offset = wordSlots[wordSlot];
+            wordSlots[wordSlot] = DELETED;
+            size--;
+            int groupSlot = findGroupSlot(signature);
+            int head = groupSlots[groupSlot];
+            if (head == offset) {
+                int next = nextInGroup(offset);
+                groupSlots[groupSlot] = next == EMPTY ? DELETED : next;
+                groupCount -= next == EMPTY ? 1 : 0;
+            } else {
+                int previous = head;
+                while (nextInGroup(previous) != offset) {
+                    previous = nextInGroup(previous);
+                }
+                setNextInGroup(previous, nextInGroup(offset));
+            }
+            deadBytes += HEADER_BYTES + bytes.length;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(String word) {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        int hash = spread(word.hashCode());
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return findWordSlot(bytes, hash) >= 0;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * There are no length buckets, every record's character length is checked and only matching words decoded.
+     */
+    @Override
+    public List<String> wordsOfLength(int length) {
+        List<String> words = new ArrayList<>();
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            for (int offset : wordSlots) {
+                if (offset >= 0 && charLength(offset) == length) {
+                    words.add(wordAt(offset));
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        return words;
+    }
+
+    @Override
+    public List<String> anagramsOf(LetterSignature signature) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            int groupSlot = findGroupSlot(signature);
+            return groupSlot < 0 ? new ArrayList<>() : wordsOfGroup(groupSlots[groupSlot]);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return a view building each group from the arena as it is reached, groups are not kept on the heap
+     */
+    @Override
+    public Collection<AnagramGroup> anagramGroups() {
+        return new AbstractCollection<AnagramGroup>() {
+            @Override
+            public Iterator<AnagramGroup> iterator() {
+                return new GroupIterator();
+            }
+
+            @Override
+            public int size() {
+                return groupCount;
+            }
+        };
+    }
+
+    @Override
+    public int groupCount() {
+        return groupCount;
+    }
+
+    @Override
+    public long estimatedHeapBytes() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return (long) (wordSlots.length + groupSlots.length) * 2 * Integer.BYTES + chunks.size() * 64L;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public long offHeapBytes() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return (long) chunks.size() * CHUNK_SIZE;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return the bytes of the arena held by removed words
+     */
+    long deadBytes() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return deadBytes;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private boolean addLocked(EncodedWord encoded) {
+        if (findWordSlot(encoded.bytes, encoded.hash) >= 0) {
+            return false;
+        }
+        int offset = append(encoded);
+        if ((wordSlotsUsed + 1) > wordSlots.length * MAX_LOAD) {
+            resizeWordTable();
+        }
+        int wordSlot = freeSlot(wordSlots, encoded.hash);
+        wordSlotsUsed += wordSlots[wordSlot] == EMPTY ? 1 : 0;
+        wordSlots[wordSlot] = offset;
+        wordHashes[wordSlot] = encoded.hash;
+        size++;
+
+        int groupSlot = findGroupSlot(encoded.signature);
+        if (groupSlot >= 0) {
+            setNextInGroup(offset, groupSlots[groupSlot]);
+            groupSlots[groupSlot] = offset;
+        } else {
+            if ((groupSlotsUsed + 1) > groupSlots.length * MAX_LOAD) {
+                resizeGroupTable();
+            }
+            int hash = spread(encoded.signature.hashCode());
+            groupSlot = freeSlot(groupSlots, hash);
+            groupSlotsUsed += groupSlots[groupSlot] == EMPTY ? 1 : 0;
+            groupSlots[groupSlot] = offset;
+            groupHashes[groupSlot] = hash;
+            groupCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Writes a word's record to the end of the arena, starting a new chunk if it does not fit in the current one.
+     */
+    private int append(EncodedWord encoded) {
+        int recordBytes = HEADER_BYTES + encoded.bytes.length;
+        int position = arenaEnd & (CHUNK_SIZE - 1);
+        if (chunks.isEmpty() || position + recordBytes > CHUNK_SIZE) {
+            if (chunks.size() == MAX_CHUNKS) {
+                throw new IllegalStateException("Off heap word store is full");
+            }
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_SIZE));
+            arenaEnd = (chunks.size() - 1) << CHUNK_BITS;
+            position = 0;
+        }
+        int offset = arenaEnd;
+        ByteBuffer chunk = chunks.get(offset >>> CHUNK_BITS);
+        chunk.putInt(position, EMPTY);
+        chunk.putShort(position + Integer.BYTES, (short) encoded.word.length());
+        chunk.putShort(position + Integer.BYTES + Short.BYTES, (short) encoded.bytes.length);
+        for (int i = 0; i < encoded.bytes.length; i++) {
+            chunk.put(position + HEADER_BYTES + i, encoded.bytes[i]);
+        }
+        arenaEnd += recordBytes;
+        return offset;
+    }
+
+    private int findWordSlot(byte[] bytes, int hash) {
+        int mask = wordSlots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int offset = wordSlots[slot];
+            if (offset == EMPTY) {
+                return -1;
+            }
+            if (offset != DELETED && wordHashes[slot] == hash && bytesEqual(offset, bytes)) {
+                return slot;
+            }
+        }
+    }
+
+    private int findGroupSlot(LetterSignature signature) {
+        int hash = spread(signature.hashCode());
+        int mask = groupSlots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int head = groupSlots[slot];
+            if (head == EMPTY) {
+                return -1;
+            }
+            if (head != DELETED && groupHashes[slot] == hash && signature.matches(wordAt(head))) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * @return the first empty or deleted slot for the hash, the key must not already be in the table
+     */
+    private static int freeSlot(int[] slots, int hash) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resizeWordTable() {
+        int[] oldSlots = wordSlots;
+        int[] oldHashes = wordHashes;
+        wordSlots = emptySlots(capacityFor(size + 1));
+        wordHashes = new int[wordSlots.length];
+        wordSlotsUsed = rehash(oldSlots, oldHashes, wordSlots, wordHashes);
+    }
+
+    private void resizeGroupTable() {
+        int[] oldSlots = groupSlots;
+        int[] oldHashes = groupHashes;
+        groupSlots = emptySlots(capacityFor(groupCount + 1));
+        groupHashes = new int[groupSlots.length];
+        groupSlotsUsed = rehash(oldSlots, oldHashes, groupSlots, groupHashes);
+    }
+
+    /**
+     * Copies the live slots of one table into another, leaving the deleted ones behind.
+     * @return the number of slots used in the new table
+     */
+    private static int rehash(int[] oldSlots, int[] oldHashes, int[] newSlots, int[] newHashes) {
+        int used = 0;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] >= 0) {
+                int slot = freeSlot(newSlots, oldHashes[i]);
+                newSlots[slot] = oldSlots[i];
+                newHashes[slot] = oldHashes[i];
+                used++;
+            }
+        }
+        return used;
+    }
+
+    /**
+     * @return a power of two capacity holding the entries at half the maximum load, so a table is not grown again
+     * straight away
+     */
+    private static int capacityFor(int entries) {
+        int capacity = MIN_CAPACITY;
+        while (entries > capacity * MAX_LOAD / 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int[] emptySlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        return slots;
+    }
+
+    private List<String> wordsOfGroup(int head) {
+        List<String> words = new ArrayList<>();
+        for (int offset = head; offset != EMPTY; offset = nextInGroup(offset)) {
+            words.add(wordAt(offset));
+        }
+        return words;
+    }
+
+    private int nextInGroup(int offset) {
+        return chunks.get(offset >>> CHUNK_BITS).getInt(offset & (CHUNK_SIZE - 1));
+    }
+
+    private void setNextInGroup(int offset, int next) {
+        chunks.get(offset >>> CHUNK_BITS).putInt(offset & (CHUNK_SIZE - 1), next);
+    }
+
+    private int charLength(int offset) {
+        return chunks.get(offset >>> CHUNK_BITS).getShort((offset & (CHUNK_SIZE - 1)) + Integer.BYTES) & 0xFFFF;
+    }
+
+    private String wordAt(int offset) {
+        ByteBuffer chunk = chunks.get(offset >>> CHUNK_BITS);
+        int position = offset & (CHUNK_SIZE - 1);
+        byte[] bytes = new byte[chunk.getShort(position + Integer.BYTES + Short.BYTES) & 0xFFFF];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = chunk.get(position + HEADER_BYTES + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean bytesEqual(int offset, byte[] bytes) {
+        ByteBuffer chunk = chunks.get(offset >>> CHUNK_BITS);
+        int position = offset & (CHUNK_SIZE - 1);
+        if ((chunk.getShort(position + Integer.BYTES + Short.BYTES) & 0xFFFF) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (chunk.get(position + HEADER_BYTES + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Walks the group table as it was when the iteration started, building each group under the read lock one step
+     * ahead of the caller. Records are never overwritten, so a group reached after the table has been grown is
+     * still read correctly, though changes made to it since may or may not be seen.
+     */
+    private final class GroupIterator implements Iterator<AnagramGroup> {
+        private int[] slots;
+        private int slot = -1;
+        private AnagramGroup nextGroup;
+
+        private GroupIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextGroup != null;
+        }
+
+        @Override
+        public AnagramGroup next() {
+            if (nextGroup == null) {
+                throw new NoSuchElementException();
+            }
+            AnagramGroup group = nextGroup;
+            advance();
+            return group;
+        }
+
+        private void advance() {
+            nextGroup = null;
+            Lock readLock = lock.readLock();
+            readLock.lock();
+            try {
+                if (slots == null) {
+                    slots = groupSlots;
+                }
+                while (nextGroup == null && ++slot < slots.length) {
+                    if (slots[slot] >= 0) {
+                        List<String> words = wordsOfGroup(slots[slot]);
+                        nextGroup = new AnagramGroup(LetterSignature.of(words.get(0)), words.get(0));
+                        words.forEach(nextGroup::add);
+                    }
+                }
+            } finally {
+                readLock.unlock();
+            }
+        }
+    }
+}
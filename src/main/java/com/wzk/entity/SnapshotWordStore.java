@@ -0,0 +1,150 @@
+package com.wzk.entity;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Sets;
+
+/**
+ * Serves words from a memory mapped {@link DictionarySnapshot}. The snapshot can not change, so words added after it
+ * was opened go into a {@link HeapWordStore} overlay and snapshot words that are removed are remembered as
+ * tombstones. Changes are serialized, lookups never block.
+ */
+class SnapshotWordStore implements WordStore {
+    private final DictionarySnapshot snapshot;
+    private final HeapWordStore overlay = new HeapWordStore();
+    private final Set<String> tombstones = Sets.newConcurrentHashSet();
+
+    SnapshotWordStore(DictionarySnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public synchronized boolean add(String word) {
+        if (snapshot.contains(word)) {
+            return tombstones.remove(word);
+        }
+        return overlay.add(word);
+    }
+
+    @Override
+    public synchronized boolean remove(String word) {
+        if (snapshot.contains(word)) {
+            return tombstones.add(word);
+        }
+        return overlay.remove(word);
+    }
+
+    @Override
+    public boolean contains(String word) {
+        if (snapshot.contains(word)) {
+            return !tombstones.contains(word);
+        }
+        return overlay.contains(word);
+    }
+
+    @Override
+    public int size() {
+        return snapshot.getWordCount() - tombstones.size() + overlay.size();
+    }
+
+    @Override
+    public List<String> wordsOfLength(int length) {
+        List<String> words = snapshot.wordsOfLength(length);
+        words.removeAll(tombstones);
+        words.addAll(overlay.wordsOfLength(length));
+        return words;
+    }
+
+    @Override
+    public List<String> anagramsOf(LetterSignature signature) {
+        List<String> words = overlay.anagramsOf(signature);
+        int group = snapshot.findGroup(signature);
+        if (group >= 0) {
+            for (String word : snapshot.groupWords(group)) {
+                if (!tombstones.contains(word)) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * The snapshot holds no group objects, so the groups are built one at a time as they are iterated. Every
+     * iteration decodes the whole snapshot, callers wanting to walk the groups repeatedly should keep them.
+     */
+    @Override
+    public Collection<AnagramGroup> anagramGroups() {
+        return new AbstractCollection<AnagramGroup>() {
+            @Override
+            public Iterator<AnagramGroup> iterator() {
+                return groupIterator();
+            }
+
+            @Override
+            public int size() {
+                return groupCount();
+            }
+        };
+    }
+
+    /**
+     * @return the number of groups in the snapshot and the overlay, groups emptied by tombstones or shared by both
+     * are counted as they were when the snapshot was written
+     */
+    @Override
+    public int groupCount() {
+        return snapshot.getGroupCount() + overlay.groupCount();
+    }
+
+    /**
+     * The snapshot itself is mapped rather than on the heap, only the changes made since it was opened are counted.
+     */
+    @Override
+    public long estimatedHeapBytes() {
+        long bytes = overlay.estimatedHeapBytes();
+        for (String word : tombstones) {
+            bytes += 88 + 2L * word.length();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long mappedBytes() {
+        return snapshot.getMappedBytes();
+    }
+
+    private Iterator<AnagramGroup> groupIterator() {
+        Iterator<AnagramGroup> overlayGroups = overlay.anagramGroups().iterator();
+        return new AbstractIterator<AnagramGroup>() {
+            private int nextGroup;
+
+            @Override
+            protected AnagramGroup computeNext() {
+                while (nextGroup < snapshot.getGroupCount()) {
+                    List<String> words = snapshot.groupWords(nextGroup++);
+                    LetterSignature signature = LetterSignature.of(words.get(0));
+                    words.removeAll(tombstones);
+                    words.addAll(overlay.anagramsOf(signature));
+                    if (!words.isEmpty()) {
+                        AnagramGroup group = new AnagramGroup(signature, words.get(0));
+                        words.forEach(group::add);
+                        return group;
+                    }
+                }
+                while (overlayGroups.hasNext()) {
+                    AnagramGroup group = overlayGroups.next();
+                    if (snapshot.findGroup(group.getSignature()) < 0) {
+                        return group;
+                    }
+                }
+                return endOfData();
+            }
+        };
+    }
+}
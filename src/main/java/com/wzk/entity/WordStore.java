@@ -0,0 +1,185 @@
+package com.wzk.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Ordering;
+
+/**
+ * The storage behind a {@link Dictionary}. Words handed to a store have already been normalized by the dictionary,
+ * every store keeps both the words and the index from letter signature to anagram group.
+ */
+interface WordStore {
+
+    /**
+     * @param word the word to add
+     * @return whether or not the word was added, false if it was already stored
+     */
+    boolean add(String word);
+
+    /**
+     * @param word the word to remove
+     * @return whether or not the word was removed, false if it was not stored
+     */
+    boolean remove(String word);
+
+    /**
+     * Adds many words at once, stores that can apply a batch of changes more cheaply than one change at a time
+     * override this.
+     * @param words the words to add, already stored words are skipped
+     */
+    default void addAll(Collection<String> words) {
+        for (String word : words) {
+            add(word);
+        }
+    }
+
+    /**
+     * Called once the word list has been added with {@link #addAll(Collection)}, before any other change. Stores
+     * building their index from the whole list at once override this.
+     */
+    default void loadFinished() {
+    }
+
+    boolean contains(String word);
+
+    int size();
+
+    /**
+     * @param length the number of characters
+     * @return a new list of the stored words with that many characters
+     */
+    List<String> wordsOfLength(int length);
+
+    /**
+     * @param signature the letter signature to look up
+     * @return a new list of the stored words with the signature
+     */
+    List<String> anagramsOf(LetterSignature signature);
+
+    /**
+     * @param prefix the start of the words wanted
+     * @param limit the most words to return
+     * @return a new list of the alphabetically first stored words starting with the prefix, in order
+     */
+    default List<String> wordsWithPrefix(String prefix, int limit) {
+        Iterable<String> words = Iterables.concat(Iterables.transform(anagramGroups(), AnagramGroup::getWords));
+        return Ordering.natural().leastOf(Iterables.filter(words, word -> word.startsWith(prefix)), limit);
+    }
+
+    /**
+     * @param pattern the word wanted, with the wildcard standing in for any one character
+     * @param wildcard the wildcard character
+     * @return a new list of the stored words matching the pattern
+     */
+    default List<String> wordsMatching(String pattern, char wildcard) {
+        List<String> words = new ArrayList<>();
+        for (String word : wordsOfLength(pattern.length())) {
+            boolean matches = true;
+            for (int i = 0; i < pattern.length() && matches; i++) {
+                matches = pattern.charAt(i) == wildcard || pattern.charAt(i) == word.charAt(i);
+            }
+            if (matches) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Finds the stored words that can be spelled from some or all of the letters, each letter used at most as
+     * often as it is given. Each group's letter mask is compared with the letters' first, so most groups are
+     * rejected before any counts are looked at.
+     * @param letters the letters available
+     * @return a new list of the words spelled from the letters
+     */
+    default List<String> wordsSpelledFrom(String letters) {
+        LetterCounts available = LetterCounts.of(letters);
+        long availableMask = available.getMask();
+        List<String> words = new ArrayList<>();
+        for (AnagramGroup group : anagramGroups()) {
+            LetterCounts wordCounts = group.getLetterCounts();
+            if ((wordCounts.getMask() & ~availableMask) == 0L && wordCounts.getLength() > 0
+                && available.canSpell(wordCounts)) {
+                words.addAll(group.getWords());
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Finds the stored words made up of all the letters plus blanks that may be any character. Rather than trying
+     * every substitution each group of the right length is checked to contain the letters, the blanks then make up
+     * whatever letters are left over.
+     * @param letters the letters every word must contain
+     * @param blanks how many further characters each word has
+     * @return a new list of the words of the letters and blanks
+     */
+    default List<String> anagramsWithBlanks(String letters, int blanks) {
+        int length = letters.length() + blanks;
+        LetterCounts fixedLetters = LetterCounts.of(letters);
+        long fixedMask = fixedLetters.getMask();
+        List<String> words = new ArrayList<>();
+        for (AnagramGroup group : anagramGroups()) {
+            LetterCounts groupLetters = group.getLetterCounts();
+            if (groupLetters.getLength() == length && (fixedMask & ~groupLetters.getMask()) == 0L
+                && groupLetters.canSpell(fixedLetters)) {
+                words.addAll(group.getWords());
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Finds one page of {@link #anagramsWithBlanks(String, int)}, the alphabetically first words after a given word.
+     * Only the page is held while the groups are checked, rather than every word found.
+     * @param letters the letters every word must contain
+     * @param blanks how many further characters each word has
+     * @param after the last word of the previous page, or an empty string for the first page
+     * @param limit the most words to return
+     * @return a new list of the page's words, in order
+     */
+    default List<String> anagramsWithBlanks(String letters, int blanks, String after, int limit) {
+        int length = letters.length() + blanks;
+        LetterCounts fixedLetters = LetterCounts.of(letters);
+        long fixedMask = fixedLetters.getMask();
+        Iterable<AnagramGroup> groups = Iterables.filter(anagramGroups(), group -> {
+            LetterCounts groupLetters = group.getLetterCounts();
+            return groupLetters.getLength() == length && (fixedMask & ~groupLetters.getMask()) == 0L
+                && groupLetters.canSpell(fixedLetters);
+        });
+        Iterable<String> words = Iterables.concat(Iterables.transform(groups, AnagramGroup::getWords));
+        return Ordering.natural().leastOf(Iterables.filter(words, word -> word.compareTo(after) > 0), limit);
+    }
+
+    /**
+     * @return the anagram groups of the store, groups changed while iterating may or may not be seen
+     */
+    Collection<AnagramGroup> anagramGroups();
+
+    /**
+     * @return the number of anagram groups in the store
+     */
+    int groupCount();
+
+    /**
+     * @return a rough estimate of the heap the store holds, for budgeting rather than exact accounting
+     */
+    long estimatedHeapBytes();
+
+    /**
+     * @return the number of bytes of direct memory the store has allocated
+     */
+    default long offHeapBytes() {
+        return 0;
+    }
+
+    /**
+     * @return the number of bytes of files the store has memory mapped
+     */
+    default long mappedBytes() {
+        return 0;
+    }
+}
@@ -0,0 +1,19 @@
+package com.wzk.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events, incrementing is cheap under contention.
+ */
+public class Counter implements CounterMBean {
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+}
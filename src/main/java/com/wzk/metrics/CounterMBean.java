@@ -0,0 +1,9 @@
+package com.wzk.metrics;
+
+/**
+ * The JMX view of a {@link Counter}.
+ */
+public interface CounterMBean {
+
+    long getCount();
+}
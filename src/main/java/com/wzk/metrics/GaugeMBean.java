@@ -0,0 +1,9 @@
+package com.wzk.metrics;
+
+/**
+ * The JMX view of a gauge, a value read whenever it is asked for.
+ */
+public interface GaugeMBean {
+
+    long getValue();
+}
@@ -0,0 +1,86 @@
+package com.wzk.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Records the latency of one operation into an HDR histogram. Recording is wait free so it can sit on any hot path,
+ * readers take what has been recorded since the last read and add it to the running total.
+ */
+public class LatencyTimer implements LatencyTimerMBean {
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double NANOS_PER_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+
+    private final String name;
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+    private Histogram interval;
+
+    LatencyTimer(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the current time, to pass to {@link #stop(long)} once the operation is done
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time since an operation started.
+     * @param startNanos the time returned by {@link #start()}
+     */
+    public void stop(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long elapsedNanos) {
+        recorder.recordValue(Math.max(elapsedNanos, 0));
+    }
+
+    /**
+     * @return a copy of every latency recorded so far, in nanoseconds
+     */
+    public synchronized Histogram snapshot() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return total.copy();
+    }
+
+    @Override
+    public long getCount() {
+        return snapshot().getTotalCount();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return snapshot().getMean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return snapshot().getValueAtPercentile(50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return snapshot().getValueAtPercentile(99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return snapshot().getValueAtPercentile(99.9) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return snapshot().getMaxValue() / NANOS_PER_MICRO;
+    }
+}
@@ -0,0 +1,19 @@
+package com.wzk.metrics;
+
+/**
+ * The JMX view of a {@link LatencyTimer}, all latencies are in microseconds.
+ */
+public interface LatencyTimerMBean {
+
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
@@ -0,0 +1,110 @@
+package com.wzk.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.HdrHistogram.Histogram;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The process wide set of named latency timers, counters and gauges. Each is registered with the platform MBean
+ * server under the com.wzk.anagram domain when it is created, and {@link #report()} renders all of them as plain text
+ * for the server's stats command.
+ */
+@Slf4j
+public final class Metrics {
+    private static final String DOMAIN = "com.wzk.anagram";
+    private static final Map<String, LatencyTimer> TIMERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * @param name the operation being timed, e.g. find
+     * @return the timer with the name, created the first time it is asked for
+     */
+    public static LatencyTimer timer(String name) {
+        return TIMERS.computeIfAbsent(name, timerName -> {
+            LatencyTimer timer = new LatencyTimer(timerName);
+            register("Latency", timerName, timer, LatencyTimerMBean.class);
+            return timer;
+        });
+    }
+
+    /**
+     * @param name what is being counted, e.g. requests
+     * @return the counter with the name, created the first time it is asked for
+     */
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, counterName -> {
+            Counter counter = new Counter();
+            register("Counter", counterName, counter, CounterMBean.class);
+            return counter;
+        });
+    }
+
+    /**
+     * Publishes a value that is read whenever it is reported, replacing any earlier gauge with the same name.
+     * @param name what the value is, e.g. dictionary.default.words
+     * @param value reads the current value
+     */
+    public static void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+        GaugeMBean gauge = () -> GAUGES.getOrDefault(name, () -> 0).getAsLong();
+        register("Gauge", name, gauge, GaugeMBean.class);
+    }
+
+    /**
+     * Renders every metric, one per line, latencies in microseconds.
+     * @return the report
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        TIMERS.forEach((name, timer) -> {
+            Histogram histogram = timer.snapshot();
+            report.append(String.format(Locale.ROOT,
+                "%s count=%d mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus\n", name,
+                histogram.getTotalCount(), micros(histogram.getMean()), micros(histogram.getValueAtPercentile(50)),
+                micros(histogram.getValueAtPercentile(99)), micros(histogram.getValueAtPercentile(99.9)),
+                micros(histogram.getMaxValue())));
+        });
+        COUNTERS.forEach((name, counter) -> report.append(name).append(' ').append(counter.getCount())
+            .append('\n'));
+        GAUGES.forEach((name, gauge) -> report.append(name).append(' ').append(gauge.getAsLong())
+            .append('\n'));
+        return report.toString();
+    }
+
+    private static double micros(double nanos) {
+        return nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    /**
+     * Registers a metric with JMX, replacing an earlier registration of the same name. A metric that can not be
+     * registered is still recorded and reported, it is only missing from JMX.
+     */
+    private static <T> void register(String type, String name, T metric, Class<T> mbeanInterface) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(new StandardMBean(metric, mbeanInterface, false), objectName);
+        } catch (JMException ex) {
+            log.warn("Failed to register {} {} with JMX", type, name, ex);
+        }
+    }
+}
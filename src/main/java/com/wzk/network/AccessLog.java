@@ -0,0 +1,118 @@
+package com.wzk.network;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.wzk.metrics.Counter;
+import com.wzk.metrics.Metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes a line per client request to a file without ever making the request wait for the disk. Request threads only
+ * offer the entry to a bounded queue, when the queue is full the entry is dropped and counted as accesslog.dropped,
+ * and a single background thread drains the queue in batches into a buffered writer, flushing whenever it runs dry.
+ */
+@Slf4j
+public class AccessLog implements Closeable {
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final int DRAIN_BATCH = 256;
+    private static final Counter DROPPED = Metrics.counter("accesslog.dropped");
+
+    private final BlockingQueue<String> entries;
+    private final Writer writer;
+    private final Thread drainer;
+    private volatile boolean closed;
+
+    private AccessLog(Writer writer, int capacity) {
+        this.entries = new ArrayBlockingQueue<>(capacity);
+        this.writer = writer;
+        this.drainer = new Thread(this::drain, "access-log");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * Opens an access log appending to a file.
+     * @param file the file to append to, created if it does not exist
+     * @param capacity the most entries waiting to be written before further entries are dropped
+     * @return the access log
+     * @throws IOException if the file can not be opened
+     */
+    public static AccessLog open(Path file, int capacity) throws IOException {
+        return new AccessLog(Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND), capacity);
+    }
+
+    static AccessLog to(Writer writer, int capacity) {
+        return new AccessLog(writer, capacity);
+    }
+
+    /**
+     * Queues an entry for a handled request, never blocking.
+     * @param clientId the client that sent the request
+     * @param request the text line or binary opcode of the request
+     * @param elapsedNanos how long the request took to handle
+     */
+    void record(String clientId, String request, long elapsedNanos) {
+        String entry = Instant.now() + " " + clientId + " " + TimeUnit.NANOSECONDS.toMicros(elapsedNanos) + "us "
+            + request;
+        if (closed || !entries.offer(entry)) {
+            DROPPED.increment();
+        }
+    }
+
+    private void drain() {
+        List<String> batch = new ArrayList<>(DRAIN_BATCH);
+        while (!closed || !entries.isEmpty()) {
+            try {
+                String first = entries.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                entries.drainTo(batch, DRAIN_BATCH - 1);
+                for (String entry : batch) {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+                batch.clear();
+                if (entries.isEmpty()) {
+                    writer.flush();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException ex) {
+                log.warn("Failed to write {} access log entries", batch.size(), ex);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Stops taking entries, writes the ones already queued and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            drainer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+    }
+}
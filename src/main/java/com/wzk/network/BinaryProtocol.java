@@ -0,0 +1,266 @@
+package com.wzk.network;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary protocol for programmatic clients, served on the same port as the text menu of
+ * {@link QueryProtocol}. A client switches its connection over by sending {@link #UPGRADE_REQUEST} from the top menu
+ * and waiting for the sentinel terminated acknowledgement, from then on both sides exchange length prefixed frames:
+ * <pre>
+ *   int    frame length, the number of bytes that follow
+ *   byte   opcode in a request, status in a response
+ *   int    request id, echoed back in the response
+ *   byte[] payload
+ * </pre>
+ * Requests are answered in the order they arrive, but clients may send as many as they like before reading any
+ * response and should match responses to requests by id. A single word payload is the word in UTF-8, a list of words
+ * is an int count followed by each word as an int length and its UTF-8 bytes.
+ */
+final class BinaryProtocol {
+    static final String UPGRADE_REQUEST = "#binary";
+    static final String UPGRADE_ACCEPTED = "Switched to binary protocol";
+    /** Frames longer than this are treated as a broken connection rather than allocated. */
+    static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+    /** The opcode or status byte and the request id. */
+    static final int HEADER_LENGTH = 5;
+
+    /** Payload is a word, responds with a boolean. */
+    static final byte ADD = 1;
+    /** Payload is a word, responds with a boolean. */
+    static final byte REMOVE = 2;
+    /** Payload is a word, responds with the list of its anagrams. */
+    static final byte FIND = 3;
+    /** Payload is a word, responds with a boolean. */
+    static final byte CONTAINS = 4;
+    /** Payload is a list of words, responds with one list of anagrams per word in the same order. */
+    static final byte BATCH = 5;
+    /** Payload is the name of a dictionary to use for the requests that follow, responds with whether it exists. */
+    static final byte USE = 6;
+    /** Payload is empty, responds with the server's metrics as a word, see {@link com.wzk.metrics.Metrics#report()}. */
+    static final byte STATS = 7;
+    /**
+     * Payload is a page request, responds with up to its limit of the word's anagrams that sort after its cursor, in
+     * order. A page shorter than the limit is the last, otherwise its last word is the cursor of the next page.
+     */
+    static final byte FIND_PAGE = 8;
+
+    static final byte STATUS_OK = 0;
+    /** The payload of an error response is a UTF-8 message. */
+    static final byte STATUS_ERROR = 1;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * A {@link #FIND_PAGE} request, the cursor is the last word of the previous page or empty for the first page.
+     */
+    static final class PageRequest {
+        final String word;
+        final String after;
+        final int limit;
+
+        PageRequest(String word, String after, int limit) {
+            this.word = word;
+            this.after = after;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * A decoded frame, the code is the opcode of a request or the status of a response.
+     */
+    static final class Frame {
+        final byte code;
+        final int requestId;
+        final byte[] payload;
+
+        Frame(byte code, int requestId, byte[] payload) {
+            this.code = code;
+            this.requestId = requestId;
+            this.payload = payload;
+        }
+    }
+
+    static void writeFrame(DataOutputStream output, Frame frame) throws IOException {
+        output.writeInt(HEADER_LENGTH + frame.payload.length);
+        output.writeByte(frame.code);
+        output.writeInt(frame.requestId);
+        output.write(frame.payload);
+    }
+
+    /**
+     * Reads the next frame from the stream.
+     * @param input the stream to read from
+     * @return the frame, or null if the stream ended cleanly between frames
+     * @throws IOException if the stream ends part way through a frame or the frame length is invalid
+     */
+    static Frame readFrame(DataInputStream input) throws IOException {
+        int frameLength;
+        try {
+            frameLength = input.readInt();
+        } catch (EOFException ex) {
+            return null;
+        }
+        checkFrameLength(frameLength);
+        byte code = input.readByte();
+        int requestId = input.readInt();
+        byte[] payload = new byte[frameLength - HEADER_LENGTH];
+        input.readFully(payload);
+        return new Frame(code, requestId, payload);
+    }
+
+    static ByteBuffer encodeFrame(Frame frame) {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + HEADER_LENGTH + frame.payload.length);
+        buffer.putInt(HEADER_LENGTH + frame.payload.length);
+        buffer.put(frame.code);
+        buffer.putInt(frame.requestId);
+        buffer.put(frame.payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes a frame whose length prefix has already been read.
+     * @param body the opcode or status, request id and payload of the frame
+     * @return the frame
+     */
+    static Frame decodeFrame(byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        byte code = buffer.get();
+        int requestId = buffer.getInt();
+        byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+        return new Frame(code, requestId, payload);
+    }
+
+    static void checkFrameLength(int frameLength) throws IOException {
+        if (frameLength < HEADER_LENGTH || frameLength > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length " + frameLength);
+        }
+    }
+
+    static byte[] encodeWord(String word) {
+        return word.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String decodeWord(byte[] payload) {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    static byte[] encodeBoolean(boolean value) {
+        return new byte[] {(byte) (value ? 1 : 0)};
+    }
+
+    static boolean decodeBoolean(byte[] payload) {
+        return payload.length > 0 && payload[0] != 0;
+    }
+
+    static byte[] encodeWords(Collection<String> words) {
+        List<byte[]> encoded = new ArrayList<>(words.size());
+        int length = Integer.BYTES;
+        for (String word : words) {
+            byte[] bytes = encodeWord(word);
+            encoded.add(bytes);
+            length += Integer.BYTES + bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        putWords(buffer, encoded);
+        return buffer.array();
+    }
+
+    static List<String> decodeWords(byte[] payload) {
+        return getWords(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Encodes a page request as the int limit followed by the list of the word and the cursor.
+     */
+    static byte[] encodePageRequest(PageRequest request) {
+        byte[] words = encodeWords(Arrays.asList(request.word, request.after));
+        return ByteBuffer.allocate(Integer.BYTES + words.length).putInt(request.limit).put(words).array();
+    }
+
+    static PageRequest decodePageRequest(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        int limit = buffer.getInt();
+        List<String> words = getWords(buffer);
+        if (limit <= 0 || words.size() != 2) {
+            throw new IllegalArgumentException("Malformed page request");
+        }
+        return new PageRequest(words.get(0), words.get(1), limit);
+    }
+
+    /**
+     * Encodes the anagrams of each word of a batch, in the order the words were requested.
+     */
+    static byte[] encodeBatch(List<List<String>> anagramsPerWord) {
+        List<byte[]> lists = new ArrayList<>(anagramsPerWord.size());
+        int length = Integer.BYTES;
+        for (List<String> anagrams : anagramsPerWord) {
+            byte[] list = encodeWords(anagrams);
+            lists.add(list);
+            length += list.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(lists.size());
+        lists.forEach(buffer::put);
+        return buffer.array();
+    }
+
+    /**
+     * Pairs the lists of a batch response back up with the words of the request.
+     */
+    static Map<String, List<String>> decodeBatch(List<String> words, byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        int count = buffer.getInt();
+        if (count != words.size()) {
+            throw new IOException("Batch response has " + count + " results for " + words.size() + " words");
+        }
+        Map<String, List<String>> anagramsByWord = new LinkedHashMap<>();
+        for (String word : words) {
+            anagramsByWord.put(word, getWords(buffer));
+        }
+        return anagramsByWord;
+    }
+
+    private static void putWords(ByteBuffer buffer, List<byte[]> words) {
+        buffer.putInt(words.size());
+        for (byte[] word : words) {
+            buffer.putInt(word.length);
+            buffer.put(word);
+        }
+    }
+
+    /**
+     * Reads a list of words, checking every count and length against the bytes left so a malformed payload is
+     * rejected before anything is allocated for it.
+     */
+    private static List<String> getWords(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+            throw new IllegalArgumentException("Malformed word count " + count);
+        }
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Malformed word length " + length);
+            }
+            byte[] word = new byte[length];
+            buffer.get(word);
+            words.add(decodeWord(word));
+        }
+        return words;
+    }
+}
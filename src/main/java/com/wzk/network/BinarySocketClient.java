@@ -0,0 +1,243 @@
+package com.wzk.network;
+
+import static com.wzk.network.QueryProtocol.MSG_SENTINEL;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.wzk.network.BinaryProtocol.Frame;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A programmatic client for {@link SocketServer} and {@link NioSocketServer} speaking the {@link BinaryProtocol}.
+ * Every request returns straight away with a future, so callers can pipeline as many requests as they like over the
+ * one connection; a reader thread completes each future when the response carrying its request id arrives.
+ */
+@Slf4j
+public class BinarySocketClient implements AutoCloseable {
+    private final String server;
+    private final int serverPort;
+    private final Map<Integer, CompletableFuture<byte[]>> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private Socket socket;
+    private volatile DataOutputStream output;
+    /** Why the connection ended, set once the reader stops so later requests fail rather than wait forever. */
+    private volatile IOException failure;
+    private Thread responseReader;
+
+    public BinarySocketClient(String server, int serverPort) {
+        this.server = server;
+        this.serverPort = serverPort;
+    }
+
+    /**
+     * Connects to the server, switches the connection to the binary protocol and starts reading responses.
+     * @throws IOException if the server can not be reached or does not accept the switch
+     */
+    public void connect() throws IOException {
+        socket = new Socket(server, serverPort);
+        socket.setTcpNoDelay(true);
+        InputStream rawInput = socket.getInputStream();
+        OutputStream rawOutput = socket.getOutputStream();
+        readTextResponse(rawInput);
+        rawOutput.write((BinaryProtocol.UPGRADE_REQUEST + System.lineSeparator()).getBytes(Charset.defaultCharset()));
+        rawOutput.flush();
+        List<String> acknowledgement = readTextResponse(rawInput);
+        if (!acknowledgement.contains(BinaryProtocol.UPGRADE_ACCEPTED)) {
+            socket.close();
+            throw new IOException("Server did not switch to the binary protocol: " + acknowledgement);
+        }
+        output = new DataOutputStream(new BufferedOutputStream(rawOutput));
+        DataInputStream input = new DataInputStream(new BufferedInputStream(rawInput));
+        responseReader = new Thread(() -> readResponses(input), "binary-client-" + server + ":" + serverPort);
+        responseReader.setDaemon(true);
+        responseReader.start();
+        log.info("Connected to {}:{} using the binary protocol", server, serverPort);
+    }
+
+    /**
+     * @return whether the client has connected and its connection has not since closed or failed
+     */
+    public boolean isConnected() {
+        return output != null && failure == null;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public int getServerPort() {
+        return serverPort;
+    }
+
+    public CompletableFuture<Boolean> addWord(String word) {
+        return send(BinaryProtocol.ADD, BinaryProtocol.encodeWord(word)).thenApply(BinaryProtocol::decodeBoolean);
+    }
+
+    public CompletableFuture<Boolean> removeWord(String word) {
+        return send(BinaryProtocol.REMOVE, BinaryProtocol.encodeWord(word)).thenApply(BinaryProtocol::decodeBoolean);
+    }
+
+    public CompletableFuture<Boolean> containsWord(String word) {
+        return send(BinaryProtocol.CONTAINS, BinaryProtocol.encodeWord(word))
+            .thenApply(BinaryProtocol::decodeBoolean);
+    }
+
+    public CompletableFuture<List<String>> findAnagrams(String word) {
+        return send(BinaryProtocol.FIND, BinaryProtocol.encodeWord(word)).thenApply(BinaryProtocol::decodeWords);
+    }
+
+    /**
+     * Switches the connection to another of the server's dictionaries for the requests that follow.
+     * @param name the name of the dictionary
+     * @return a future of whether the server has a dictionary with the name
+     */
+    public CompletableFuture<Boolean> useDictionary(String name) {
+        return send(BinaryProtocol.USE, BinaryProtocol.encodeWord(name)).thenApply(BinaryProtocol::decodeBoolean);
+    }
+
+    /**
+     * Fetches one page of a word's anagrams in order, so a word with many anagrams can be read a page at a time
+     * rather than in one response.
+     * @param word the word to find anagrams of
+     * @param after the last anagram of the previous page, or an empty string for the first page
+     * @param limit the most anagrams to return
+     * @return a future of the page, a page shorter than the limit is the last
+     */
+    public CompletableFuture<List<String>> findAnagramsPage(String word, String after, int limit) {
+        return send(BinaryProtocol.FIND_PAGE,
+            BinaryProtocol.encodePageRequest(new BinaryProtocol.PageRequest(word, after, limit)))
+            .thenApply(BinaryProtocol::decodeWords);
+    }
+
+    /**
+     * @return a future of the server's metrics, one per line
+     */
+    public CompletableFuture<String> stats() {
+        return send(BinaryProtocol.STATS, new byte[0]).thenApply(BinaryProtocol::decodeWord);
+    }
+
+    /**
+     * Finds the anagrams of many words in one request.
+     * @param words the words to find anagrams of
+     * @return a future of the anagrams of each word, in the order the words were given
+     */
+    public CompletableFuture<Map<String, List<String>>> findAnagramsBatch(List<String> words) {
+        List<String> requestedWords = new ArrayList<>(words);
+        return send(BinaryProtocol.BATCH, BinaryProtocol.encodeWords(requestedWords)).thenApply(payload -> {
+            try {
+                return BinaryProtocol.decodeBatch(requestedWords, payload);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+    }
+
+    /**
+     * Writes a request frame without waiting for its response. A future completed by the caller first, for example
+     * when it gives up waiting, stops being tracked and its response is dropped if it ever arrives.
+     * @return a future of the response payload, failed with the server's message if it responds with an error, or
+     * with an {@link IOException} if the client is not connected or the connection ends before the response
+     */
+    CompletableFuture<byte[]> send(byte opcode, byte[] payload) {
+        CompletableFuture<byte[]> response = new CompletableFuture<>();
+        DataOutputStream out = output;
+        if (out == null) {
+            response.completeExceptionally(new IOException("Not connected to " + server + ":" + serverPort));
+            return response;
+        }
+        int requestId = nextRequestId.incrementAndGet();
+        pendingRequests.put(requestId, response);
+        // checked after the put, either this sees the reader's failure or the reader fails the future on its way out
+        IOException closed = failure;
+        if (closed != null) {
+            pendingRequests.remove(requestId);
+            response.completeExceptionally(closed);
+            return response;
+        }
+        response.whenComplete((result, ex) -> pendingRequests.remove(requestId, response));
+        try {
+            synchronized (this) {
+                BinaryProtocol.writeFrame(out, new Frame(opcode, requestId, payload));
+                out.flush();
+            }
+        } catch (IOException ex) {
+            pendingRequests.remove(requestId);
+            response.completeExceptionally(ex);
+        }
+        return response;
+    }
+
+    private void readResponses(DataInputStream input) {
+        IOException closed = new IOException("Connection to " + server + ":" + serverPort + " closed");
+        try {
+            Frame response;
+            while ((response = BinaryProtocol.readFrame(input)) != null) {
+                CompletableFuture<byte[]> pending = pendingRequests.remove(response.requestId);
+                if (pending == null) {
+                    log.warn("Received a response for unknown request {}", response.requestId);
+                } else if (response.code == BinaryProtocol.STATUS_OK) {
+                    pending.complete(response.payload);
+                } else {
+                    pending.completeExceptionally(new IOException(BinaryProtocol.decodeWord(response.payload)));
+                }
+            }
+        } catch (IOException ex) {
+            if (!socket.isClosed()) {
+                log.error("Failed to read from server {}:{}", server, serverPort, ex);
+            }
+            closed = ex;
+        }
+        failure = closed;
+        for (Integer requestId : pendingRequests.keySet()) {
+            CompletableFuture<byte[]> pending = pendingRequests.remove(requestId);
+            if (pending != null) {
+                pending.completeExceptionally(closed);
+            }
+        }
+    }
+
+    /**
+     * Reads one sentinel terminated text response byte by byte, so nothing after it is buffered away from the
+     * binary stream.
+     */
+    private static List<String> readTextResponse(InputStream input) throws IOException {
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        int value;
+        while ((value = input.read()) >= 0) {
+            if (value == '\n') {
+                String text = line.toString();
+                if (MSG_SENTINEL.equals(text)) {
+                    return lines;
+                }
+                lines.add(text);
+                line.setLength(0);
+            } else if (value != '\r') {
+                line.append((char) value);
+            }
+        }
+        throw new IOException("Connection closed before the end of the response");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (socket != null) {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.wzk.network;
+
+import static com.wzk.network.QueryProtocol.MSG_SENTINEL;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.wzk.network.BinaryProtocol.Frame;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves one client of {@link SocketServer} on whichever thread its connection executor runs it. The connection
+ * establishes input and output with the client and keeps listening, when an input is received it uses the
+ * {@link RequestHandler} to derive the response. A client may switch the connection over to the
+ * {@link BinaryProtocol} from the top menu.
+ */
+@Slf4j
+class ClientConnection implements Runnable, ConnectionExecutors.Rejectable {
+    static final String SERVER_BUSY = "Server busy, try again later.";
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    private final Socket socket;
+    private final String clientIpPort;
+    private final RequestHandler requestHandler;
+    private final AtomicInteger activeConnections;
+    /** Whether the last line read ended with a carriage return, whose line feed may still be to come. */
+    private boolean previousWasCarriageReturn;
+
+    ClientConnection(Socket socket, RequestHandler requestHandler, AtomicInteger activeConnections) {
+        this.socket = socket;
+        this.clientIpPort = socket.getInetAddress().getHostAddress()+":"+socket.getPort();
+        this.requestHandler = requestHandler;
+        this.activeConnections = activeConnections;
+    }
+
+    @Override
+    public String getClientIpPort() {
+        return clientIpPort;
+    }
+
+    @Override
+    public void run() {
+        activeConnections.incrementAndGet();
+        try (Socket client = socket) {
+            // menu lines and binary frames are read from the one buffer, so frames a client pipelines straight
+            // after the upgrade request are not lost in a reader's buffer
+            DataInputStream input = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+            // responses are written through the buffer as they are produced, a client that stops reading blocks the
+            // write rather than the server holding its whole response in memory
+            BufferedWriter output = new BufferedWriter(new OutputStreamWriter(client.getOutputStream()));
+            QueryProtocol qp = new QueryProtocol(clientIpPort);
+            String initialMsg = qp.deriveMenuResponse(null);
+            output.write(initialMsg);
+            endResponse(output);
+            String clientInput;
+            while ((clientInput = readLine(input)) != null) {
+                log.debug("client {} says {}", clientIpPort, clientInput);
+                if (requestHandler.isBinaryUpgrade(qp, clientInput)) {
+                    output.write(qp.deriveBinaryUpgradeResponse());
+                    endResponse(output);
+                    skipLineFeedAfterCarriageReturn(input);
+                    serveBinaryFrames(qp, input);
+                    break;
+                }
+                requestHandler.handle(qp, clientInput, output);
+                endResponse(output);
+            }
+            input.close();
+            output.close();
+        } catch (IOException ex) {
+            log.error("Connection with client failed, {}", clientIpPort, ex);
+        } finally {
+            activeConnections.decrementAndGet();
+        }
+    }
+
+    private static void endResponse(BufferedWriter output) throws IOException {
+        output.newLine();
+        output.flush();
+    }
+
+    /**
+     * Reads a line the way {@link NioSocketServer} splits them, ended by '\n', '\r', "\r\n" or the end of the
+     * stream. A line feed straight after a carriage return is skipped when the next line is read rather than waited
+     * for, a client ending its lines with '\r' alone is answered straight away.
+     * @return the line, or null if the stream has ended
+     * @throws IOException if the line is longer than {@link NioSocketServer#MAX_LINE_LENGTH} bytes
+     */
+    private String readLine(InputStream input) throws IOException {
+        byte[] line = new byte[128];
+        int length = 0;
+        int value = input.read();
+        if (value == '\n' && previousWasCarriageReturn) {
+            value = input.read();
+        }
+        while (value >= 0 && value != '\n' && value != '\r') {
+            if (length == line.length) {
+                if (line.length >= NioSocketServer.MAX_LINE_LENGTH) {
+                    throw new IOException("Line longer than " + NioSocketServer.MAX_LINE_LENGTH + " bytes");
+                }
+                line = Arrays.copyOf(line, Math.min(line.length * 2, NioSocketServer.MAX_LINE_LENGTH));
+            }
+            line[length++] = (byte) value;
+            value = input.read();
+        }
+        previousWasCarriageReturn = value == '\r';
+        if (value < 0 && length == 0) {
+            return null;
+        }
+        return new String(line, 0, length, CHARSET);
+    }
+
+    /**
+     * Drops the line feed of an upgrade request ended by "\r\n", the bytes after the request are binary frames.
+     */
+    private void skipLineFeedAfterCarriageReturn(InputStream input) throws IOException {
+        if (previousWasCarriageReturn) {
+            input.mark(1);
+            if (input.read() != '\n') {
+                input.reset();
+            }
+            previousWasCarriageReturn = false;
+        }
+    }
+
+    /**
+     * Serves {@link BinaryProtocol} frames until the client disconnects. Requests are handled in the order they
+     * arrive, responses are buffered and only flushed once no further request is waiting to be read, so a client
+     * pipelining many requests gets its responses back in a few large writes.
+     */
+    private void serveBinaryFrames(QueryProtocol qp, DataInputStream input) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        Frame request;
+        while ((request = BinaryProtocol.readFrame(input)) != null) {
+            BinaryProtocol.writeFrame(output, requestHandler.handle(qp, request));
+            if (input.available() == 0) {
+                output.flush();
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Tells the client the server has no capacity left for it and closes the connection, used when the connection
+     * executor rejects the connection.
+     */
+    @Override
+    public void rejectAsBusy() {
+        try {
+            PrintWriter output = new PrintWriter(socket.getOutputStream(), true);
+            output.println(SERVER_BUSY+"\n"+MSG_SENTINEL);
+            socket.close();
+        } catch (IOException ex) {
+            log.error("Failed to turn away client {}", clientIpPort, ex);
+        }
+    }
+}
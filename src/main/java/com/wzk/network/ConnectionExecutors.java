@@ -0,0 +1,126 @@
+package com.wzk.network;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Factories for the executors {@link SocketServer} runs its client connections on. Each connection occupies its
+ * thread for as long as the client stays connected, so the executor decides how many clients can be served at once.
+ */
+@Slf4j
+public final class ConnectionExecutors {
+    public static final int DEFAULT_MAX_CONNECTIONS = 256;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private ConnectionExecutors() {
+    }
+
+    /**
+     * A fixed pool of connection threads with a bounded queue of clients waiting for one. Once both are full, new
+     * clients are told the server is busy and disconnected.
+     * @param maxConnections the most clients served at once
+     * @param queueCapacity the most clients waiting for a free thread
+     * @return the executor, a {@link ThreadPoolExecutor} whose rejections can be read from
+     * {@link #getRejectedCount(ExecutorService)}
+     */
+    public static ExecutorService bounded(int maxConnections, int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConnections, maxConnections, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            new ThreadFactoryBuilder().setNameFormat("client-connection-%d").build(),
+            new BusyRejectionHandler());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * One virtual thread per connection, so idle clients cost a little heap rather than a platform thread. Virtual
+     * threads need Java 21, on older runtimes this falls back to {@link #bounded(int, int)} with the default limits.
+     * @return the executor
+     */
+    public static ExecutorService virtualThreadPerConnection() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            log.warn("Virtual threads are not available on Java {}, using a bounded pool of {} connections",
+                System.getProperty("java.version"), DEFAULT_MAX_CONNECTIONS);
+            return bounded(DEFAULT_MAX_CONNECTIONS, DEFAULT_QUEUE_CAPACITY);
+        }
+    }
+
+    /**
+     * Chooses an executor by name, "virtual" for {@link #virtualThreadPerConnection()}, anything else for
+     * {@link #bounded(int, int)}.
+     * @param mode the name of the executor
+     * @param maxConnections the most clients served at once by a bounded executor
+     * @param queueCapacity the most clients waiting for a bounded executor
+     * @return the executor
+     */
+    public static ExecutorService forMode(String mode, int maxConnections, int queueCapacity) {
+        if ("virtual".equalsIgnoreCase(mode)) {
+            return virtualThreadPerConnection();
+        }
+        return bounded(maxConnections, queueCapacity);
+    }
+
+    /**
+     * @param executor an executor created by this class
+     * @return the number of clients turned away as busy, always 0 for executors that never reject
+     */
+    public static long getRejectedCount(ExecutorService executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            RejectedExecutionHandler handler = ((ThreadPoolExecutor) executor).getRejectedExecutionHandler();
+            if (handler instanceof BusyRejectionHandler) {
+                return ((BusyRejectionHandler) handler).rejected.get();
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * @param executor an executor created by this class
+     * @return the number of clients waiting for a connection thread, always 0 for executors that never queue
+     */
+    public static int getQueuedCount(ExecutorService executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getQueue().size();
+        }
+        return 0;
+    }
+
+    /**
+     * A connection that can tell its client the server is busy when the executor has no room for it.
+     */
+    interface Rejectable {
+        String getClientIpPort();
+
+        void rejectAsBusy();
+    }
+
+    /**
+     * Replies "server busy" to a rejected client and closes its socket, instead of throwing on the accepting thread.
+     */
+    private static class BusyRejectionHandler implements RejectedExecutionHandler {
+        private final AtomicLong rejected = new AtomicLong();
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            rejected.incrementAndGet();
+            if (task instanceof Rejectable) {
+                Rejectable connection = (Rejectable) task;
+                log.warn("Connection limit reached, turning away client {}", connection.getClientIpPort());
+                connection.rejectAsBusy();
+            }
+        }
+    }
+}
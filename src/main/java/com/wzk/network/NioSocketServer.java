@@ -0,0 +1,521 @@
+package com.wzk.network;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.wzk.entity.Dictionary;
+import com.wzk.metrics.Counter;
+import com.wzk.metrics.Metrics;
+import com.wzk.network.BinaryProtocol.Frame;
+import com.wzk.service.AnagramFinder;
+import com.wzk.service.DictionaryRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Exposes the {@link AnagramFinder} and {@link Dictionary} over a socket using non-blocking IO. It speaks exactly the
+ * same protocol as {@link SocketServer} so {@link SocketClient} works against either. Instead of a thread per client,
+ * accepted connections are spread over a small fixed set of event loops, each multiplexing its connections on a
+ * {@link Selector}. Every connection has its own read buffer and queue of pending writes, input is split into lines
+ * the way {@link java.io.BufferedReader#readLine()} would, or into frames once a client switches to the
+ * {@link BinaryProtocol}. Responses are encoded into the write queue as they are produced, and a connection whose
+ * client is not reading them is not read from either until the queue drains below {@link #WRITE_HIGH_WATER_MARK}.
+ * <p>
+ * Requests that may block, changes waiting for a mutation log to reach the disk or requests to a dictionary that is
+ * not loaded yet, are handed to a small pool of workers instead of being handled on the event loop. The connection is
+ * not read from until the worker's response is back in its write queue, so its requests are still answered in order.
+ */
+@Slf4j
+public class NioSocketServer extends Thread {
+    /** Clients sending a longer line than this without a line break are disconnected. */
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 4096;
+    /** A connection with this many response bytes waiting for the client is not read from until they drain. */
+    static final int WRITE_HIGH_WATER_MARK = 256 * 1024;
+    /** Matches the platform charset used by the readers and writers of {@link SocketServer}. */
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final Counter ACCEPTED_CONNECTIONS = Metrics.counter("connections.accepted");
+    public static final int DEFAULT_WORKER_COUNT = 8;
+
+    private final RequestHandler requestHandler;
+    private final int serverPort;
+    private final EventLoop[] eventLoops;
+    private final ExecutorService workers;
+    private ServerSocketChannel serverChannel;
+    private Selector acceptSelector;
+    private int nextEventLoop;
+
+    public NioSocketServer(AnagramFinder anagramFinder, Dictionary dictionary, int serverPort, int eventLoopCount) {
+        this(DictionaryRegistry.of(dictionary, anagramFinder), serverPort, eventLoopCount);
+    }
+
+    public NioSocketServer(DictionaryRegistry dictionaries, int serverPort, int eventLoopCount) {
+        this(dictionaries, serverPort, eventLoopCount, null);
+    }
+
+    /**
+     * @param accessLog records every client request, or null to record nothing
+     */
+    public NioSocketServer(DictionaryRegistry dictionaries, int serverPort, int eventLoopCount, AccessLog accessLog) {
+        this(dictionaries, serverPort, eventLoopCount, DEFAULT_WORKER_COUNT, accessLog);
+    }
+
+    /**
+     * @param workerCount the number of threads handling the requests that may block
+     * @param accessLog records every client request, or null to record nothing
+     */
+    public NioSocketServer(DictionaryRegistry dictionaries, int serverPort, int eventLoopCount, int workerCount,
+                           AccessLog accessLog) {
+        super("nio-acceptor");
+        this.requestHandler = new RequestHandler(dictionaries, accessLog);
+        this.serverPort = serverPort;
+        this.eventLoops = new EventLoop[eventLoopCount];
+        this.workers = Executors.newFixedThreadPool(workerCount,
+            new ThreadFactoryBuilder().setNameFormat("nio-worker-%d").setDaemon(true).build());
+    }
+
+    public void startServer() {
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(serverPort));
+            serverChannel.configureBlocking(false);
+            acceptSelector = Selector.open();
+            serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+            for (int i = 0; i < eventLoops.length; i++) {
+                eventLoops[i] = new EventLoop(i);
+                eventLoops[i].start();
+            }
+            start();
+            log.info("NIO server listening on port {} with {} event loops", serverPort, eventLoops.length);
+        } catch (IOException ex) {
+            log.error("Could not create server socket on port {}", serverPort, ex);
+        }
+    }
+
+    /**
+     * @return the port the server is listening on, useful when it was started on port 0
+     */
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Accepts clients and hands each one to the next event loop in turn.
+     */
+    @Override
+    public void run() {
+        while (serverChannel.isOpen()) {
+            try {
+                acceptSelector.select();
+                Iterator<SelectionKey> keys = acceptSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                    SocketChannel channel;
+                    while ((channel = serverChannel.accept()) != null) {
+                        ACCEPTED_CONNECTIONS.increment();
+                        channel.configureBlocking(false);
+                        EventLoop eventLoop = eventLoops[nextEventLoop];
+                        nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+                        eventLoop.register(channel);
+                    }
+                }
+            } catch (IOException ex) {
+                log.error("Unable to establish connection with client", ex);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting clients and closes every open connection.
+     */
+    public void stopServer() {
+        try {
+            serverChannel.close();
+            acceptSelector.wakeup();
+        } catch (IOException ex) {
+            log.error("Failed to close server socket", ex);
+        }
+        for (EventLoop eventLoop : eventLoops) {
+            if (eventLoop != null) {
+                eventLoop.shutdown();
+            }
+        }
+        workers.shutdownNow();
+    }
+
+    /**
+     * A thread owning one selector and every connection registered with it. Channels are handed over through a queue
+     * since a selector can only be registered with safely from its own thread.
+     */
+    private class EventLoop extends Thread {
+        private final Selector selector;
+        private final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+        private final Queue<Connection> answeredConnections = new ConcurrentLinkedQueue<>();
+        private volatile boolean running = true;
+
+        private EventLoop(int index) throws IOException {
+            super("nio-event-loop-" + index);
+            setDaemon(true);
+            this.selector = Selector.open();
+        }
+
+        private void register(SocketChannel channel) {
+            newChannels.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Hands a connection whose request a worker has answered back to the loop, which queues the response and
+         * carries on reading the connection.
+         */
+        private void answered(Connection connection) {
+            answeredConnections.add(connection);
+            selector.wakeup();
+        }
+
+        private void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    registerNewChannels();
+                    resumeAnsweredConnections();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        } catch (IOException | RuntimeException ex) {
+                            // only this client is dropped, the loop carries on serving the others
+                            log.error("Connection with client failed, {}", connection.clientId, ex);
+                            connection.close();
+                        }
+                    }
+                } catch (IOException ex) {
+                    log.error("Event loop {} failed to select", getName(), ex);
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                ((Connection) key.attachment()).close();
+            }
+            try {
+                selector.close();
+            } catch (IOException ex) {
+                log.error("Failed to close selector", ex);
+            }
+        }
+
+        private void resumeAnsweredConnections() {
+            Connection connection;
+            while ((connection = answeredConnections.poll()) != null) {
+                try {
+                    connection.resume();
+                } catch (IOException | RuntimeException ex) {
+                    log.error("Connection with client failed, {}", connection.clientId, ex);
+                    connection.close();
+                }
+            }
+        }
+
+        private void registerNewChannels() {
+            SocketChannel channel;
+            while ((channel = newChannels.poll()) != null) {
+                String clientId = clientIdOf(channel);
+                try {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    Connection connection = new Connection(this, clientId, channel, key);
+                    key.attach(connection);
+                    log.info("Client connected, IP and port: {}", clientId);
+                    connection.send(connection.protocol.deriveMenuResponse(null));
+                    connection.flush();
+                } catch (IOException ex) {
+                    log.error("Failed to register client {}", clientId, ex);
+                    closeQuietly(channel);
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of one client: its protocol state, the bytes of the line or binary frame being read and the responses
+     * waiting to be written.
+     */
+    private class Connection {
+        private final EventLoop eventLoop;
+        private final String clientId;
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final QueryProtocol protocol;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final Queue<ByteBuffer> pendingWrites = new ArrayDeque<>();
+        private final Writer responseWriter = new BufferedWriter(new OutputStreamWriter(new OutputStream() {
+            @Override
+            public void write(int value) {
+                write(new byte[] {(byte) value}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                pendingWrites.add(ByteBuffer.wrap(Arrays.copyOfRange(bytes, offset, offset + length)));
+                pendingBytes += length;
+            }
+        }, CHARSET));
+        private long pendingBytes;
+        private byte[] line = new byte[128];
+        private int lineLength;
+        private boolean previousWasCarriageReturn;
+        private boolean binary;
+        private int frameLength;
+        private int frameLengthBytes;
+        private byte[] frameBody;
+        private int frameBodyRead;
+        /** Whether a worker is handling a request, nothing more is read or handled until it answers. */
+        private boolean busy;
+        /** The worker's encoded response, or null if it failed, published to the loop by its queue. */
+        private ByteBuffer workerResponse;
+
+        private Connection(EventLoop eventLoop, String clientId, SocketChannel channel, SelectionKey key) {
+            this.eventLoop = eventLoop;
+            this.clientId = clientId;
+            this.channel = channel;
+            this.key = key;
+            this.protocol = new QueryProtocol(clientId);
+        }
+
+        private void read() throws IOException {
+            int bytesRead = 0;
+            while (!busy && pendingBytes < WRITE_HIGH_WATER_MARK && (bytesRead = channel.read(readBuffer)) > 0) {
+                consumeReadBuffer();
+            }
+            flush();
+            if (bytesRead < 0) {
+                log.info("Client {} disconnected", clientId);
+                close();
+            }
+        }
+
+        /**
+         * Handles the bytes read so far, stopping at a request handed to a worker and keeping the bytes after it for
+         * when the worker has answered.
+         */
+        private void consumeReadBuffer() throws IOException {
+            readBuffer.flip();
+            while (!busy && readBuffer.hasRemaining()) {
+                if (binary) {
+                    consumeFrame(readBuffer);
+                } else {
+                    consume(readBuffer.get());
+                }
+            }
+            readBuffer.compact();
+        }
+
+        /**
+         * Handles a request that may block on a worker. The worker answers through the event loop, so the response
+         * is queued and the connection's state touched by one thread at a time.
+         */
+        private void handOff(Supplier<ByteBuffer> request) {
+            busy = true;
+            workers.execute(() -> {
+                ByteBuffer response = null;
+                try {
+                    response = request.get();
+                } finally {
+                    workerResponse = response;
+                    eventLoop.answered(this);
+                }
+            });
+        }
+
+        /**
+         * Queues the response of the request a worker handled, then carries on with the requests read after it.
+         * @throws IOException if the worker failed to produce a response
+         */
+        private void resume() throws IOException {
+            if (!key.isValid()) {
+                return;
+            }
+            ByteBuffer response = workerResponse;
+            workerResponse = null;
+            busy = false;
+            if (response == null) {
+                throw new IOException("Failed to handle a request of client " + clientId);
+            }
+            pendingBytes += response.remaining();
+            pendingWrites.add(response);
+            consumeReadBuffer();
+            read();
+        }
+
+        /**
+         * Adds a byte to the current line, a line ends at '\n', '\r' or "\r\n".
+         */
+        private void consume(byte value) throws IOException {
+            if (value == '\n' && previousWasCarriageReturn) {
+                previousWasCarriageReturn = false;
+                return;
+            }
+            previousWasCarriageReturn = value == '\r';
+            if (value == '\n' || value == '\r') {
+                String clientInput = new String(line, 0, lineLength, CHARSET);
+                lineLength = 0;
+                log.debug("client {} says {}", clientId, clientInput);
+                if (requestHandler.isBinaryUpgrade(protocol, clientInput)) {
+                    send(protocol.deriveBinaryUpgradeResponse());
+                    binary = true;
+                    return;
+                }
+                if (requestHandler.mayBlock(protocol, clientInput)) {
+                    handOff(() -> {
+                        StringBuilder response = new StringBuilder();
+                        try {
+                            requestHandler.handle(protocol, clientInput, response);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                        return ByteBuffer.wrap(response.append(System.lineSeparator()).toString().getBytes(CHARSET));
+                    });
+                    return;
+                }
+                requestHandler.handle(protocol, clientInput, responseWriter);
+                responseWriter.write(System.lineSeparator());
+                responseWriter.flush();
+                return;
+            }
+            if (lineLength == line.length) {
+                if (line.length >= MAX_LINE_LENGTH) {
+                    throw new IOException("Line longer than " + MAX_LINE_LENGTH + " bytes");
+                }
+                line = Arrays.copyOf(line, Math.min(line.length * 2, MAX_LINE_LENGTH));
+            }
+            line[lineLength++] = value;
+        }
+
+        /**
+         * Copies as much of the current {@link BinaryProtocol} frame as the buffer holds, handling the frame once it
+         * is complete. Responses are queued and written together once the whole read has been processed.
+         */
+        private void consumeFrame(ByteBuffer buffer) throws IOException {
+            if (frameBody == null) {
+                while (frameLengthBytes < Integer.BYTES && buffer.hasRemaining()) {
+                    frameLength = (frameLength << 8) | (buffer.get() & 0xFF);
+                    frameLengthBytes++;
+                }
+                if (frameLengthBytes < Integer.BYTES) {
+                    return;
+                }
+                BinaryProtocol.checkFrameLength(frameLength);
+                frameBody = new byte[frameLength];
+                frameBodyRead = 0;
+            }
+            int count = Math.min(buffer.remaining(), frameBody.length - frameBodyRead);
+            buffer.get(frameBody, frameBodyRead, count);
+            frameBodyRead += count;
+            if (frameBodyRead == frameBody.length) {
+                Frame request = BinaryProtocol.decodeFrame(frameBody);
+                frameBody = null;
+                frameLength = 0;
+                frameLengthBytes = 0;
+                if (requestHandler.mayBlock(protocol, request)) {
+                    handOff(() -> BinaryProtocol.encodeFrame(requestHandler.handle(protocol, request)));
+                    return;
+                }
+                ByteBuffer encoded = BinaryProtocol.encodeFrame(requestHandler.handle(protocol, request));
+                pendingBytes += encoded.remaining();
+                pendingWrites.add(encoded);
+            }
+        }
+
+        /**
+         * Queues a response terminated by a line break, as {@link java.io.PrintWriter#println(String)} would write
+         * it, the response is written on the next flush.
+         */
+        private void send(String response) throws IOException {
+            responseWriter.write(response);
+            responseWriter.write(System.lineSeparator());
+            responseWriter.flush();
+        }
+
+        /**
+         * Writes as much of the queue as the socket takes, waiting for the socket to become writable if it is not all
+         * written, and only reading further requests meanwhile while the queue is below the high water mark and no
+         * worker is handling a request.
+         */
+        private void flush() throws IOException {
+            int readOps = busy ? 0 : SelectionKey.OP_READ;
+            while (!pendingWrites.isEmpty()) {
+                ByteBuffer buffer = pendingWrites.peek();
+                pendingBytes -= channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    if (key.isValid()) {
+                        key.interestOps(pendingBytes < WRITE_HIGH_WATER_MARK
+                            ? readOps | SelectionKey.OP_WRITE : SelectionKey.OP_WRITE);
+                    }
+                    return;
+                }
+                pendingWrites.poll();
+            }
+            if (key.isValid()) {
+                key.interestOps(readOps);
+            }
+        }
+
+        private void close() {
+            key.cancel();
+            closeQuietly(channel);
+        }
+    }
+
+    private static String clientIdOf(SocketChannel channel) {
+        try {
+            InetSocketAddress address = (InetSocketAddress) channel.getRemoteAddress();
+            if (address != null) {
+                return address.getAddress().getHostAddress() + ":" + address.getPort();
+            }
+        } catch (IOException ex) {
+            log.debug("Could not read the address of a client", ex);
+        }
+        return "unknown";
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            log.error("Failed to close socket", ex);
+        }
+    }
+}
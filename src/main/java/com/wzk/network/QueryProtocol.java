@@ -1,36 +1,76 @@
 package com.wzk.network;
 
+import static com.wzk.service.AnagramFinder.WILDCARD;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.base.Joiner;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Handles the communication protocol between the client and server to facilitate more complex interactions
+ * Handles the communication protocol between the client and server to facilitate more complex interactions. Large
+ * results are shown a page at a time, the protocol keeps a cursor over the rest of the result until the client asks
+ * for the next page, finds something else or returns to the menu.
  */
 @Slf4j
 class QueryProtocol {
     public static final String EXIT_PHRASE = "quit program";
     public static final String MSG_SENTINEL = "^";
     public static final String RETURN_TO_MENU = "<<";
+    public static final String NEXT_PAGE = ">>";
+    /** The most results shown in one response, the rest wait for {@link #NEXT_PAGE}. */
+    public static final int PAGE_SIZE = 500;
+    /** Results are written this many to a line so neither side handles one huge line. */
+    static final int WORDS_PER_LINE = 50;
+    /** Typed at the top menu to print the server's metrics, see {@link com.wzk.metrics.Metrics}. */
+    public static final String STATS_REQUEST = "#stats";
 
     public static final int MENU = 0;
     public static final int ADD_WORD = 1;
     public static final int REMOVE_WORD = 2;
     public static final int FIND_ANAGRAM = 3;
+    public static final int BATCH_ANAGRAM = 4;
+    public static final int SELECT_DICTIONARY = 5;
+
+    private static final Joiner JOINER = Joiner.on(",");
 
     private int currentState = MENU;
     private final String clientId;
+    private String dictionaryName;
+    private Iterator<String> pendingResults = Collections.emptyIterator();
+    private int resultsShown;
+    private int resultCount;
 
     public QueryProtocol(String clientId) {
         this.clientId = clientId;
     }
 
+    public String getClientId() {
+        return clientId;
+    }
+
     public int getCurrentState() {
         return currentState;
     }
 
+    /**
+     * @return the dictionary the client has chosen, or null if they are using the default
+     */
+    public String getDictionaryName() {
+        return dictionaryName;
+    }
+
+    public void setDictionaryName(String dictionaryName) {
+        this.dictionaryName = dictionaryName;
+    }
+
     /**
      * Prints the menu if the request is null, if the request is any of the provided menu options, it changes
      * the protocol state to that menu option and provides an adequate response for the user. If the user enters
@@ -39,6 +79,7 @@ class QueryProtocol {
      * @return a response showing the menu or prompting the user for further input.
      */
     public String deriveMenuResponse(String request) {
+        pendingResults = Collections.emptyIterator();
         StringBuilder responseBuilder = new StringBuilder();
         if (currentState == MENU) {
             if (request == null) {
@@ -47,6 +88,9 @@ class QueryProtocol {
                 responseBuilder.append("[A] Add a word\n");
                 responseBuilder.append("[D] Delete a word\n");
                 responseBuilder.append("[P] Print Anagrams\n");
+                responseBuilder.append("[B] Batch print Anagrams for many words\n");
+                responseBuilder.append("[L] Choose a dictionary\n");
+                responseBuilder.append("Type "+STATS_REQUEST+" for server statistics\n");
                 responseBuilder.append("Type "+EXIT_PHRASE+" to quit\n");
                 log.debug("Printing menu for client {}", clientId);
             } else if ("a".equalsIgnoreCase(request)) {
@@ -58,13 +102,21 @@ class QueryProtocol {
                 currentState = REMOVE_WORD;
                 log.debug("Client {} selected remove word", clientId);
             } else if ("p".equalsIgnoreCase(request)) {
-                responseBuilder.append("Enter a word to find its anagrams:\n");
+                responseBuilder.append("Enter a word to find its anagrams, use "+WILDCARD+" for a blank tile:\n");
                 currentState = FIND_ANAGRAM;
                 log.debug("Client {} selected find anagram", clientId);
+            } else if ("b".equalsIgnoreCase(request)) {
+                responseBuilder.append("Enter words separated by spaces to find their anagrams:\n");
+                currentState = BATCH_ANAGRAM;
+                log.debug("Client {} selected batch find anagram", clientId);
+            } else if ("l".equalsIgnoreCase(request)) {
+                responseBuilder.append("Enter the name of the dictionary to use:\n");
+                currentState = SELECT_DICTIONARY;
+                log.debug("Client {} selected choose dictionary", clientId);
             } else {
                 responseBuilder.append("Invalid request ["+request+"]\n");
                 responseBuilder.append("Expecting:\n");
-                responseBuilder.append("Menu Option [A],[D] or [P]\n");
+                responseBuilder.append("Menu Option [A],[D],[P],[B] or [L]\n");
                 log.debug("Client {} entered invalid request", clientId);
             }
         }
@@ -120,13 +172,151 @@ class QueryProtocol {
      */
     public String deriveFindAnagramResponse(String word, List<String> anagrams) {
         StringBuilder responseBuilder = new StringBuilder();
-        responseBuilder.append("Found "+anagrams.size()+" anagrams for word "+word+"\n");
-        responseBuilder.append(Joiner.on(",").join(anagrams)+"\n");
-        responseBuilder.append("Find another? or type '<<' to go back.\n");
+        writeTo(responseBuilder, out -> writeFindAnagramResponse(word, anagrams, out));
+        return responseBuilder.toString();
+    }
+
+    /**
+     * Writes the first page of the anagrams found for a word straight to the client, and keeps a cursor over the
+     * rest for {@link #writeNextPage(Appendable)}.
+     * @param word word to find anagrams of.
+     * @param anagrams the list of anagrams found for the word.
+     * @param out where the response is written.
+     * @throws IOException if the response can not be written.
+     */
+    public void writeFindAnagramResponse(String word, List<String> anagrams, Appendable out) throws IOException {
+        pendingResults = anagrams.iterator();
+        resultsShown = 0;
+        resultCount = anagrams.size();
+        out.append("Found "+resultCount+" anagrams for word "+word+"\n");
+        writePage(out);
+    }
+
+    /**
+     * Writes the next page of the last result to the client.
+     * @param out where the response is written.
+     * @throws IOException if the response can not be written.
+     */
+    public void writeNextPage(Appendable out) throws IOException {
+        if (!pendingResults.hasNext()) {
+            out.append("There are no more results.\n");
+            out.append("Find another? or type '<<' to go back.\n");
+            out.append(MSG_SENTINEL);
+            return;
+        }
+        writePage(out);
+    }
+
+    private void writePage(Appendable out) throws IOException {
+        int firstShown = resultsShown + 1;
+        int pageEnd = resultsShown + PAGE_SIZE;
+        while (resultsShown < pageEnd && pendingResults.hasNext()) {
+            int lineEnd = Math.min(resultsShown + WORDS_PER_LINE, pageEnd);
+            out.append(pendingResults.next());
+            resultsShown++;
+            while (resultsShown < lineEnd && pendingResults.hasNext()) {
+                out.append(',').append(pendingResults.next());
+                resultsShown++;
+            }
+            out.append('\n');
+        }
+        if (resultsShown == 0) {
+            out.append('\n');
+        }
+        if (pendingResults.hasNext()) {
+            out.append("Showing "+firstShown+"-"+resultsShown+" of "+resultCount+", type '"+NEXT_PAGE
+                +"' for more.\n");
+            log.debug("Client {} has {} results left to page through", clientId, resultCount - resultsShown);
+        } else {
+            pendingResults = Collections.emptyIterator();
+        }
+        out.append("Find another? or type '<<' to go back.\n");
+        out.append(MSG_SENTINEL);
+    }
+
+    /**
+     * Prints the anagrams found for each of a batch of words entered by the user, one line per word.
+     * @param anagramsByWord the anagrams found for each word.
+     * @return a formatted response displaying the anagrams to the user.
+     */
+    public String deriveBatchAnagramResponse(Map<String, List<String>> anagramsByWord) {
+        StringBuilder responseBuilder = new StringBuilder();
+        writeTo(responseBuilder, out -> writeBatchAnagramResponse(anagramsByWord, out));
+        return responseBuilder.toString();
+    }
+
+    /**
+     * Writes the anagrams found for each of a batch of words straight to the client, one line per word.
+     * @param anagramsByWord the anagrams found for each word.
+     * @param out where the response is written.
+     * @throws IOException if the response can not be written.
+     */
+    public void writeBatchAnagramResponse(Map<String, List<String>> anagramsByWord, Appendable out)
+        throws IOException {
+        out.append("Found anagrams for "+anagramsByWord.size()+" words\n");
+        for (Map.Entry<String, List<String>> entry : anagramsByWord.entrySet()) {
+            out.append(entry.getKey()).append(": ");
+            JOINER.appendTo(out, entry.getValue());
+            out.append('\n');
+        }
+        out.append("Find another batch? or type '<<' to go back.\n");
+        out.append(MSG_SENTINEL);
+    }
+
+    /**
+     * Prints a response to the user for when they have tried to choose a dictionary.
+     * @param name the dictionary chosen.
+     * @param didSucceed whether or not a dictionary with the name exists.
+     * @param names the names of every dictionary that can be chosen.
+     * @return a response to return to the user.
+     */
+    public String deriveSelectDictionaryResponse(String name, boolean didSucceed, Collection<String> names) {
+        StringBuilder responseBuilder = new StringBuilder();
+        if (didSucceed) {
+            dictionaryName = name;
+            responseBuilder.append("Now using dictionary ["+name+"].\n");
+            responseBuilder.append("Choose another? or type '<<' to go back.\n");
+            log.debug("Client {} is now using dictionary {}", clientId, name);
+        } else {
+            responseBuilder.append("There is no dictionary ["+name+"]. Choose one of; "+Joiner.on(", ").join(names)
+                +"\n");
+            log.debug("Client {} chose unknown dictionary {}", clientId, name);
+        }
         responseBuilder.append(MSG_SENTINEL);
         return responseBuilder.toString();
     }
 
+    /**
+     * Tells the user the server does not take changes, the client stays where it is.
+     * @param word the word the user tried to add or remove
+     * @return a response pointing the user at the primary
+     */
+    public String deriveReadOnlyResponse(String word) {
+        log.debug("Refused change to word {} from client {}, the server is read only", word, clientId);
+        return "Word ["+word+"] was not changed, this server is a read only replica. Make changes on the primary.\n"
+            +MSG_SENTINEL;
+    }
+
+    /**
+     * Prints the server's metrics for the user, the client stays at the top menu.
+     * @param report the metrics rendered one per line.
+     * @return a response displaying the metrics to the user.
+     */
+    public String deriveStatsResponse(String report) {
+        log.debug("Printing statistics for client {}", clientId);
+        return report+MSG_SENTINEL;
+    }
+
+    /**
+     * Acknowledges a request to switch the connection over to the {@link BinaryProtocol}, this is the last text
+     * message sent on the connection.
+     * @return the acknowledgement.
+     */
+    public String deriveBinaryUpgradeResponse() {
+        log.debug("Client {} switched to the binary protocol", clientId);
+        return BinaryProtocol.UPGRADE_ACCEPTED+"\n"+MSG_SENTINEL;
+    }
+
     /**
      * Resets the users interactions back to the top menu.
      * @return Prints the initial menu to the user.
@@ -136,4 +326,18 @@ class QueryProtocol {
         log.debug("Returning client {} to top menu", clientId);
         return deriveMenuResponse(null);
     }
+
+    @FunctionalInterface
+    private interface ResponseWriter {
+        void write(Appendable out) throws IOException;
+    }
+
+    private static void writeTo(StringBuilder responseBuilder, ResponseWriter writer) {
+        try {
+            writer.write(responseBuilder);
+        } catch (IOException ex) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(ex);
+        }
+    }
 }
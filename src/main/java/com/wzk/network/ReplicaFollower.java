@@ -0,0 +1,174 @@
+package com.wzk.network;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.wzk.entity.AnagramGroup;
+import com.wzk.entity.Dictionary;
+import com.wzk.metrics.Metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps a replica's {@link Dictionary} in step with a primary's by applying the changes its
+ * {@link ReplicationPublisher} streams. Changes are applied on this thread through the dictionary's own add and
+ * remove, so the replica's index and caches stay current and its clients are served from the replica's dictionary
+ * without ever waiting on the primary. Whenever the connection is lost the follower reconnects, takes a fresh copy
+ * and removes any word the copy no longer has. How far behind the primary the replica is gets published as the
+ * replica.lag gauge, in changes.
+ */
+@Slf4j
+public class ReplicaFollower extends Thread {
+    private static final long RECONNECT_MILLIS = 1000;
+
+    private final Dictionary dictionary;
+    private final String primary;
+    private final int primaryPort;
+    private volatile long appliedSequence;
+    private volatile long primarySequence;
+    private volatile boolean caughtUp;
+    private volatile boolean stopped;
+    private volatile Socket socket;
+
+    /**
+     * @param dictionary the replica's dictionary, it should ignore case the same way the primary's does
+     * @param primary the host of the primary
+     * @param primaryPort the primary's replication port
+     */
+    public ReplicaFollower(Dictionary dictionary, String primary, int primaryPort) {
+        super("replica-follower");
+        this.dictionary = dictionary;
+        this.primary = primary;
+        this.primaryPort = primaryPort;
+        setDaemon(true);
+        Metrics.gauge("replica.applied", this::getAppliedSequence);
+        Metrics.gauge("replica.lag", this::getLag);
+    }
+
+    /**
+     * @return the sequence number of the last change applied
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * @return how many changes the primary has made that are not applied yet, as of the primary's last heartbeat
+     */
+    public long getLag() {
+        return Math.max(primarySequence - appliedSequence, 0);
+    }
+
+    /**
+     * @return whether the replica has a full copy of the primary's dictionary and is applying its changes
+     */
+    public boolean isCaughtUp() {
+        return caughtUp;
+    }
+
+    @Override
+    public void run() {
+        while (!stopped) {
+            try (Socket primarySocket = new Socket(primary, primaryPort)) {
+                socket = primarySocket;
+                log.info("Following primary {}:{}", primary, primaryPort);
+                follow(new DataInputStream(new BufferedInputStream(primarySocket.getInputStream())));
+            } catch (IOException ex) {
+                if (!stopped) {
+                    log.warn("Lost connection with primary {}:{}, reconnecting", primary, primaryPort, ex);
+                }
+            }
+            caughtUp = false;
+            if (!stopped) {
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops following the primary, the dictionary keeps the changes applied so far.
+     */
+    public void stopFollowing() {
+        stopped = true;
+        interrupt();
+        Socket primarySocket = socket;
+        if (primarySocket != null) {
+            try {
+                primarySocket.close();
+            } catch (IOException ex) {
+                log.error("Failed to disconnect from primary {}:{}", primary, primaryPort, ex);
+            }
+        }
+    }
+
+    private void follow(DataInputStream input) throws IOException {
+        Set<String> copiedWords = new HashSet<>();
+        while (true) {
+            byte type;
+            try {
+                type = input.readByte();
+            } catch (EOFException ex) {
+                return;
+            }
+            switch (type) {
+                case ReplicationPublisher.WORD:
+                    String word = input.readUTF();
+                    copiedWords.add(word);
+                    dictionary.addWord(word);
+                    break;
+                case ReplicationPublisher.COPY_END:
+                    removeWordsNotIn(copiedWords);
+                    copiedWords = new HashSet<>();
+                    appliedSequence = input.readLong();
+                    primarySequence = Math.max(primarySequence, appliedSequence);
+                    caughtUp = true;
+                    log.info("Copied {} words from primary, following from change {}", dictionary.getSize(),
+                        appliedSequence);
+                    break;
+                case ReplicationPublisher.ADD:
+                case ReplicationPublisher.REMOVE:
+                    long sequence = input.readLong();
+                    String changedWord = input.readUTF();
+                    if (type == ReplicationPublisher.ADD) {
+                        dictionary.addWord(changedWord);
+                    } else {
+                        dictionary.removeWord(changedWord);
+                    }
+                    appliedSequence = sequence;
+                    break;
+                case ReplicationPublisher.HEARTBEAT:
+                    primarySequence = input.readLong();
+                    break;
+                default:
+                    throw new IOException("Unknown replication record " + type);
+            }
+        }
+    }
+
+    /**
+     * Removes the words left over from before the copy, ones the primary removed while this replica was away.
+     */
+    private void removeWordsNotIn(Set<String> copiedWords) {
+        List<String> staleWords = new ArrayList<>();
+        for (AnagramGroup group : dictionary.getAnagramGroups()) {
+            for (String word : group.getWords()) {
+                if (!copiedWords.contains(word)) {
+                    staleWords.add(word);
+                }
+            }
+        }
+        staleWords.forEach(dictionary::removeWord);
+    }
+}
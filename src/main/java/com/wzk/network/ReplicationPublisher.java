@@ -0,0 +1,220 @@
+package com.wzk.network;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.wzk.entity.AnagramGroup;
+import com.wzk.entity.Dictionary;
+import com.wzk.metrics.Metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Publishes every change made to a primary's {@link Dictionary} to its read replicas, see {@link ReplicaFollower}.
+ * Changes are numbered in the order they are made. A replica that connects is sent every word in the dictionary,
+ * then the sequence number the copy starts from, then every change made since it connected. The copy is read while
+ * changes carry on, so it may already hold some of the changes that follow it, replaying those is harmless since
+ * adding a present word or removing a missing one does nothing. Each replica has its own bounded queue of changes,
+ * a replica that falls too far behind is disconnected and copies the dictionary afresh when it reconnects. Records
+ * are a type byte followed by:
+ * <pre>
+ *   WORD          String word in the copy
+ *   COPY_END      long   sequence the copy is current from
+ *   ADD, REMOVE   long   sequence, String word
+ *   HEARTBEAT     long   latest sequence published
+ * </pre>
+ */
+@Slf4j
+public class ReplicationPublisher extends Thread {
+    static final byte WORD = 1;
+    static final byte COPY_END = 2;
+    static final byte ADD = 3;
+    static final byte REMOVE = 4;
+    static final byte HEARTBEAT = 5;
+    public static final int DEFAULT_BACKLOG = 65536;
+    private static final long HEARTBEAT_MILLIS = 500;
+
+    private final Dictionary dictionary;
+    private final int serverPort;
+    private final int backlog;
+    private final Set<Replica> replicas = ConcurrentHashMap.newKeySet();
+    private long sequence;
+    private ServerSocket serverSocket;
+
+    /**
+     * A change queued for the replicas.
+     */
+    private static final class Change {
+        private final long sequence;
+        private final String word;
+        private final boolean added;
+
+        private Change(long sequence, String word, boolean added) {
+            this.sequence = sequence;
+            this.word = word;
+            this.added = added;
+        }
+    }
+
+    /**
+     * @param dictionary the primary's dictionary
+     * @param serverPort the port replicas connect to
+     * @param backlog the most changes queued for a replica before it is disconnected
+     */
+    public ReplicationPublisher(Dictionary dictionary, int serverPort, int backlog) {
+        super("replication-publisher");
+        this.dictionary = dictionary;
+        this.serverPort = serverPort;
+        this.backlog = backlog;
+        setDaemon(true);
+        dictionary.addMutationListener(this::publish);
+        Metrics.gauge("replication.sequence", this::getPublishedSequence);
+        Metrics.gauge("replication.replicas", replicas::size);
+    }
+
+    /**
+     * Starts accepting replicas.
+     * @throws IOException if the port can not be opened
+     */
+    public void startServer() throws IOException {
+        serverSocket = new ServerSocket(serverPort);
+        start();
+        log.info("Publishing dictionary changes on port {}", getLocalPort());
+    }
+
+    public int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the sequence number of the latest change made to the dictionary
+     */
+    public synchronized long getPublishedSequence() {
+        return sequence;
+    }
+
+    @Override
+    public void run() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Replica replica = new Replica(socket);
+                Thread sender = new Thread(replica, "replication-" + replica.replicaIpPort);
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException ex) {
+                if (!serverSocket.isClosed()) {
+                    log.error("Unable to establish connection with replica", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting replicas and disconnects the replicas already connected.
+     */
+    public void stopServer() {
+        try {
+            serverSocket.close();
+        } catch (IOException ex) {
+            log.error("Failed to close the replication port", ex);
+        }
+        replicas.forEach(Replica::disconnect);
+    }
+
+    /**
+     * Called while the dictionary is being changed, so it only numbers the change and offers it to each replica's
+     * queue without waiting.
+     */
+    private synchronized void publish(String word, boolean added) {
+        Change change = new Change(++sequence, word, added);
+        for (Replica replica : replicas) {
+            if (!replica.changes.offer(change)) {
+                replica.overflowed = true;
+            }
+        }
+    }
+
+    private synchronized long subscribe(Replica replica) {
+        replicas.add(replica);
+        return sequence;
+    }
+
+    /**
+     * Sends the copy and then the changes to one replica.
+     */
+    private class Replica implements Runnable {
+        private final Socket socket;
+        private final String replicaIpPort;
+        private final BlockingQueue<Change> changes = new LinkedBlockingQueue<>(backlog);
+        private volatile boolean overflowed;
+
+        private Replica(Socket socket) {
+            this.socket = socket;
+            this.replicaIpPort = socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+        }
+
+        @Override
+        public void run() {
+            try (Socket replicaSocket = socket) {
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    replicaSocket.getOutputStream()));
+                long copySequence = subscribe(this);
+                log.info("Replica {} connected, copying {} words", replicaIpPort, dictionary.getSize());
+                for (AnagramGroup group : dictionary.getAnagramGroups()) {
+                    for (String word : group.getWords()) {
+                        output.writeByte(WORD);
+                        output.writeUTF(word);
+                    }
+                }
+                output.writeByte(COPY_END);
+                output.writeLong(copySequence);
+                output.flush();
+                List<Change> batch = new ArrayList<>();
+                while (!overflowed) {
+                    Change first = changes.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        changes.drainTo(batch);
+                    }
+                    for (Change change : batch) {
+                        output.writeByte(change.added ? ADD : REMOVE);
+                        output.writeLong(change.sequence);
+                        output.writeUTF(change.word);
+                    }
+                    batch.clear();
+                    output.writeByte(HEARTBEAT);
+                    output.writeLong(getPublishedSequence());
+                    output.flush();
+                }
+                log.warn("Replica {} fell more than {} changes behind, disconnecting it", replicaIpPort, backlog);
+            } catch (IOException ex) {
+                if (!socket.isClosed()) {
+                    log.warn("Lost connection with replica {}", replicaIpPort, ex);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                replicas.remove(this);
+            }
+        }
+
+        private void disconnect() {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                log.error("Failed to disconnect replica {}", replicaIpPort, ex);
+            }
+        }
+    }
+}
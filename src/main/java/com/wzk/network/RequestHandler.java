@@ -0,0 +1,257 @@
+package com.wzk.network;
+
+import static com.wzk.network.QueryProtocol.ADD_WORD;
+import static com.wzk.network.QueryProtocol.BATCH_ANAGRAM;
+import static com.wzk.network.QueryProtocol.FIND_ANAGRAM;
+import static com.wzk.network.QueryProtocol.MENU;
+import static com.wzk.network.QueryProtocol.MSG_SENTINEL;
+import static com.wzk.network.QueryProtocol.NEXT_PAGE;
+import static com.wzk.network.QueryProtocol.REMOVE_WORD;
+import static com.wzk.network.QueryProtocol.RETURN_TO_MENU;
+import static com.wzk.network.QueryProtocol.SELECT_DICTIONARY;
+import static com.wzk.network.QueryProtocol.STATS_REQUEST;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.wzk.entity.Dictionary;
+import com.wzk.metrics.Counter;
+import com.wzk.metrics.Metrics;
+import com.wzk.network.BinaryProtocol.Frame;
+import com.wzk.service.AnagramFinder;
+import com.wzk.service.DictionaryRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Turns a line of client input into the response for it, using the client's {@link QueryProtocol} to track which
+ * menu option they are in and which dictionary they are using. Shared by the server implementations so they all
+ * speak exactly the same protocol. With an {@link AccessLog} every request handled is recorded in it.
+ */
+@Slf4j
+class RequestHandler {
+    private static final CharMatcher WHITESPACE = CharMatcher.whitespace();
+    private static final Counter REQUESTS = Metrics.counter("requests");
+
+    private final DictionaryRegistry dictionaries;
+    private final AccessLog accessLog;
+
+    RequestHandler(DictionaryRegistry dictionaries) {
+        this(dictionaries, null);
+    }
+
+    /**
+     * @param accessLog records every request handled, or null to record nothing
+     */
+    RequestHandler(DictionaryRegistry dictionaries, AccessLog accessLog) {
+        this.dictionaries = dictionaries;
+        this.accessLog = accessLog;
+    }
+
+    /**
+     * Looks up the client's state and writes the response to their input. A user can choose to; find anagrams,
+     * find anagrams for a batch of words, add words, remove words, choose a dictionary, print the server's
+     * statistics or return to the menu. Anagrams are written straight to the client a page at a time rather than
+     * built into one response first. A request that fails, e.g. because the dictionary can not be loaded or the
+     * change can not be logged, is answered with an error and leaves the client where it was.
+     * @param qp the protocol state of the client
+     * @param clientInput the line sent by the client
+     * @param out where the response is written, terminated by the message sentinel
+     * @throws IOException if the response can not be written
+     */
+    void handle(QueryProtocol qp, String clientInput, Appendable out) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            respond(qp, clientInput, out);
+        } catch (RuntimeException ex) {
+            log.error("Failed to handle request from client {}", qp.getClientId(), ex);
+            out.append("Failed to handle request: " + ex + "\n" + MSG_SENTINEL);
+        }
+        if (accessLog != null) {
+            accessLog.record(qp.getClientId(), clientInput, System.nanoTime() - startTime);
+        }
+    }
+
+    private void respond(QueryProtocol qp, String clientInput, Appendable out) throws IOException {
+        // by default the response should be failed since this would indicate the program
+        // was not able to derive the appropriate response to the request.
+        String response = "Failed to generate response for input: "+clientInput;
+        REQUESTS.increment();
+        if (MENU == qp.getCurrentState() && STATS_REQUEST.equals(clientInput)) {
+            response = qp.deriveStatsResponse(Metrics.report());
+        } else if (MENU == qp.getCurrentState()) {
+            response = qp.deriveMenuResponse(clientInput);
+        } else {
+            if ((qp.getCurrentState() == ADD_WORD || qp.getCurrentState() == REMOVE_WORD ||
+                qp.getCurrentState() == FIND_ANAGRAM || qp.getCurrentState() == BATCH_ANAGRAM ||
+                qp.getCurrentState() == SELECT_DICTIONARY) && RETURN_TO_MENU.equals(clientInput)) {
+                response = qp.returnToMenu();
+            } else if (FIND_ANAGRAM == qp.getCurrentState() && NEXT_PAGE.equals(clientInput)) {
+                qp.writeNextPage(out);
+                return;
+            } else if (SELECT_DICTIONARY == qp.getCurrentState()) {
+                String name = clientInput.trim();
+                response = qp.deriveSelectDictionaryResponse(name, dictionaries.contains(name),
+                    dictionaries.getNames());
+            } else {
+                DictionaryRegistry.Entry entry = dictionaries.get(qp.getDictionaryName());
+                Dictionary dictionary = entry.getDictionary();
+                AnagramFinder anagramFinder = entry.getAnagramFinder();
+                if ((ADD_WORD == qp.getCurrentState() || REMOVE_WORD == qp.getCurrentState())
+                    && dictionaries.isReadOnly()) {
+                    response = qp.deriveReadOnlyResponse(clientInput);
+                } else if (ADD_WORD == qp.getCurrentState()) {
+                    boolean didSucceed = dictionary.addWord(clientInput);
+                    response = qp.deriveAddWordResponse(clientInput, didSucceed);
+                } else if (REMOVE_WORD == qp.getCurrentState()) {
+                    boolean didSucceed = dictionary.removeWord(clientInput);
+                    response = qp.deriveRemoveWordResponse(clientInput, didSucceed);
+                } else if (FIND_ANAGRAM == qp.getCurrentState()) {
+                    List<String> anagrams = anagramFinder.findAnagrams(clientInput);
+                    qp.writeFindAnagramResponse(clientInput, anagrams, out);
+                    return;
+                } else if (BATCH_ANAGRAM == qp.getCurrentState()) {
+                    List<String> words = Splitter.on(WHITESPACE).omitEmptyStrings().splitToList(clientInput);
+                    qp.writeBatchAnagramResponse(anagramFinder.findAnagramsBatch(words), out);
+                    return;
+                }
+            }
+        }
+        out.append(response);
+    }
+
+    /**
+     * Checks whether a line of client input asks to switch the connection to the {@link BinaryProtocol}, which is
+     * only possible from the top menu.
+     * @param qp the protocol state of the client
+     * @param clientInput the line sent by the client
+     * @return whether or not the connection should switch to binary frames after acknowledging the request
+     */
+    boolean isBinaryUpgrade(QueryProtocol qp, String clientInput) {
+        return MENU == qp.getCurrentState() && BinaryProtocol.UPGRADE_REQUEST.equals(clientInput);
+    }
+
+    /**
+     * Checks whether handling a line of client input may wait on more than the CPU, for the dictionary the client
+     * is using to load or for a change to reach its mutation log, so an event loop can hand it to another thread
+     * rather than hold up its other clients.
+     * @param qp the protocol state of the client
+     * @param clientInput the line sent by the client
+     * @return whether or not handling the line may block
+     */
+    boolean mayBlock(QueryProtocol qp, String clientInput) {
+        int state = qp.getCurrentState();
+        if (MENU == state || SELECT_DICTIONARY == state || RETURN_TO_MENU.equals(clientInput)
+            || (FIND_ANAGRAM == state && NEXT_PAGE.equals(clientInput))) {
+            return false;
+        }
+        return mayBlock(qp, ADD_WORD == state || REMOVE_WORD == state);
+    }
+
+    /**
+     * Checks whether handling a binary request frame may block, see {@link #mayBlock(QueryProtocol, String)}.
+     * @param qp the protocol state of the client
+     * @param request the request frame
+     * @return whether or not handling the frame may block
+     */
+    boolean mayBlock(QueryProtocol qp, Frame request) {
+        if (request.code == BinaryProtocol.STATS || request.code == BinaryProtocol.USE) {
+            return false;
+        }
+        return mayBlock(qp, request.code == BinaryProtocol.ADD || request.code == BinaryProtocol.REMOVE);
+    }
+
+    private boolean mayBlock(QueryProtocol qp, boolean changesDictionary) {
+        DictionaryRegistry.Entry entry = dictionaries.getIfLoaded(qp.getDictionaryName());
+        if (entry == null) {
+            return true;
+        }
+        return changesDictionary && !dictionaries.isReadOnly() && entry.getDictionary().hasMutationLog();
+    }
+
+    /**
+     * Executes a binary request frame against the dictionary the client is using.
+     * @param qp the protocol state of the client, carried over from before the switch to binary frames
+     * @param request the request frame
+     * @return the response frame carrying the request's id
+     */
+    Frame handle(QueryProtocol qp, Frame request) {
+        long startTime = System.nanoTime();
+        Frame response = respond(qp, request);
+        if (accessLog != null) {
+            accessLog.record(qp.getClientId(), "binary opcode " + request.code, System.nanoTime() - startTime);
+        }
+        return response;
+    }
+
+    private Frame respond(QueryProtocol qp, Frame request) {
+        REQUESTS.increment();
+        try {
+            if (request.code == BinaryProtocol.STATS) {
+                return new Frame(BinaryProtocol.STATUS_OK, request.requestId,
+                    BinaryProtocol.encodeWord(Metrics.report()));
+            }
+            if (request.code == BinaryProtocol.USE) {
+                String name = BinaryProtocol.decodeWord(request.payload);
+                boolean exists = dictionaries.contains(name);
+                if (exists) {
+                    qp.setDictionaryName(name);
+                }
+                return new Frame(BinaryProtocol.STATUS_OK, request.requestId, BinaryProtocol.encodeBoolean(exists));
+            }
+            if ((request.code == BinaryProtocol.ADD || request.code == BinaryProtocol.REMOVE)
+                && dictionaries.isReadOnly()) {
+                return error(request, "This server is a read only replica, make changes on the primary");
+            }
+            DictionaryRegistry.Entry entry = dictionaries.get(qp.getDictionaryName());
+            Dictionary dictionary = entry.getDictionary();
+            AnagramFinder anagramFinder = entry.getAnagramFinder();
+            byte[] payload;
+            switch (request.code) {
+                case BinaryProtocol.ADD:
+                    payload = BinaryProtocol.encodeBoolean(
+                        dictionary.addWord(BinaryProtocol.decodeWord(request.payload)));
+                    break;
+                case BinaryProtocol.REMOVE:
+                    payload = BinaryProtocol.encodeBoolean(
+                        dictionary.removeWord(BinaryProtocol.decodeWord(request.payload)));
+                    break;
+                case BinaryProtocol.CONTAINS:
+                    payload = BinaryProtocol.encodeBoolean(
+                        dictionary.containsWord(BinaryProtocol.decodeWord(request.payload)));
+                    break;
+                case BinaryProtocol.FIND:
+                    payload = BinaryProtocol.encodeWords(
+                        anagramFinder.findAnagrams(BinaryProtocol.decodeWord(request.payload)));
+                    break;
+                case BinaryProtocol.FIND_PAGE:
+                    BinaryProtocol.PageRequest page = BinaryProtocol.decodePageRequest(request.payload);
+                    payload = BinaryProtocol.encodeWords(
+                        anagramFinder.findAnagramsPage(page.word, page.after, page.limit));
+                    break;
+                case BinaryProtocol.BATCH:
+                    List<String> words = BinaryProtocol.decodeWords(request.payload);
+                    Map<String, List<String>> anagramsByWord = anagramFinder.findAnagramsBatch(words);
+                    List<List<String>> results = new ArrayList<>(words.size());
+                    for (String word : words) {
+                        results.add(anagramsByWord.get(word));
+                    }
+                    payload = BinaryProtocol.encodeBatch(results);
+                    break;
+                default:
+                    return error(request, "Unknown opcode " + request.code);
+            }
+            return new Frame(BinaryProtocol.STATUS_OK, request.requestId, payload);
+        } catch (RuntimeException ex) {
+            return error(request, "Failed to handle request: " + ex);
+        }
+    }
+
+    private static Frame error(Frame request, String message) {
+        return new Frame(BinaryProtocol.STATUS_ERROR, request.requestId, BinaryProtocol.encodeWord(message));
+    }
+}
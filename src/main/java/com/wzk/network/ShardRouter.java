@@ -0,0 +1,468 @@
+package com.wzk.network;
+
+import static com.wzk.network.QueryProtocol.MSG_SENTINEL;
+import static com.wzk.service.AnagramFinder.WILDCARD;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.collect.Ordering;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.wzk.entity.LetterSignature;
+import com.wzk.metrics.Counter;
+import com.wzk.metrics.Metrics;
+import com.wzk.network.BinaryProtocol.Frame;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fronts a cluster of servers that each hold one shard of a dictionary. Every shard owns a range of letter signature
+ * hashes, see {@link #shardOf(String, int)}, so all the anagrams of a word live on the one shard that owns its
+ * signature. The router speaks the {@link BinaryProtocol} to its clients and forwards each request over one pipelined
+ * {@link BinarySocketClient} per shard: adds, removes, contains and finds go to the owning shard, while wildcard
+ * finds, batches spanning shards and stats are fanned out and their results merged. The router keeps no state of its
+ * own, so several routers can front the same shards.
+ * <p>
+ * A request to a shard that does not answer in time, or whose connection has ended, is answered with an error. The
+ * next request to a shard whose connection has ended connects to it again, at most once a second, and the requests
+ * in between fail straight away.
+ */
+@Slf4j
+public class ShardRouter extends Thread {
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+    static final String BINARY_ONLY = "This is a shard router, switch to the binary protocol with "
+        + BinaryProtocol.UPGRADE_REQUEST;
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final Counter ROUTED_REQUESTS = Metrics.counter("router.requests");
+    private static final Counter SHARD_FAILURES = Metrics.counter("router.shardFailures");
+    private static final long RECONNECT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final int serverPort;
+    private final ExecutorService connectionExecutor;
+    private final long timeoutMillis;
+    private final ScheduledThreadPoolExecutor timeouts;
+    private ServerSocket serverSocket;
+
+    /**
+     * @param shards a client for each shard, in shard order and not yet connected
+     * @param serverPort the port clients connect to
+     * @param connectionExecutor serves each client connection, see {@link ConnectionExecutors}
+     */
+    public ShardRouter(List<BinarySocketClient> shards, int serverPort, ExecutorService connectionExecutor) {
+        this(shards, serverPort, connectionExecutor, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param shards a client for each shard, in shard order and not yet connected
+     * @param serverPort the port clients connect to
+     * @param connectionExecutor serves each client connection, see {@link ConnectionExecutors}
+     * @param timeoutMillis how long to wait for a shard's response before answering with an error
+     */
+    public ShardRouter(List<BinarySocketClient> shards, int serverPort, ExecutorService connectionExecutor,
+                       long timeoutMillis) {
+        super("shard-router");
+        for (BinarySocketClient shard : shards) {
+            this.shards.add(new Shard(this.shards.size(), shard));
+        }
+        this.serverPort = serverPort;
+        this.connectionExecutor = connectionExecutor;
+        this.timeoutMillis = timeoutMillis;
+        this.timeouts = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactoryBuilder().setNameFormat("shard-router-timeouts").setDaemon(true).build());
+        // most requests are answered long before their timeout, their cancelled timeouts are not kept queued
+        this.timeouts.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Finds the shard owning a word. The range of signature hashes is split evenly between the shards, words are
+     * normalized to lowercase first since a cluster serves a case insensitive dictionary.
+     * @param word the word
+     * @param shardCount the number of shards in the cluster
+     * @return the index of the shard owning the word's letter signature
+     */
+    public static int shardOf(String word, int shardCount) {
+        int hash = LetterSignature.of(word.toLowerCase(Locale.ROOT)).hashCode() * 0x9E3779B9;
+        return (int) (((hash & 0xFFFFFFFFL) * shardCount) >>> 32);
+    }
+
+    /**
+     * Connects to every shard and starts accepting clients.
+     * @throws IOException if a shard can not be reached or the port can not be opened
+     */
+    public void startServer() throws IOException {
+        for (Shard shard : shards) {
+            shard.client.connect();
+        }
+        serverSocket = new ServerSocket(serverPort);
+        start();
+        log.info("Shard router listening on port {} for {} shards", getLocalPort(), shards.size());
+    }
+
+    public int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void run() {
+        while (!serverSocket.isClosed()) {
+            try {
+                connectionExecutor.execute(new RouterConnection(serverSocket.accept()));
+            } catch (IOException ex) {
+                if (!serverSocket.isClosed()) {
+                    log.error("Unable to establish connection with client", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting clients, disconnects from the shards and interrupts the clients already connected.
+     */
+    public void stopServer() {
+        try {
+            serverSocket.close();
+            for (Shard shard : shards) {
+                shard.client.close();
+            }
+        } catch (IOException ex) {
+            log.error("Failed to close the shard router", ex);
+        }
+        connectionExecutor.shutdownNow();
+        timeouts.shutdownNow();
+    }
+
+    /**
+     * Routes one request, the response frame carries the request's id.
+     */
+    CompletableFuture<Frame> route(Frame request) {
+        ROUTED_REQUESTS.increment();
+        try {
+            switch (request.code) {
+                case BinaryProtocol.ADD:
+                case BinaryProtocol.REMOVE:
+                case BinaryProtocol.CONTAINS:
+                    return forward(shardOf(BinaryProtocol.decodeWord(request.payload), shards.size()), request);
+                case BinaryProtocol.FIND:
+                    String word = BinaryProtocol.decodeWord(request.payload);
+                    if (word.indexOf(WILDCARD) < 0) {
+                        return forward(shardOf(word, shards.size()), request);
+                    }
+                    return respond(request, fanOut(request).thenApply(payloads -> {
+                        List<String> anagrams = new ArrayList<>();
+                        payloads.forEach(payload -> anagrams.addAll(BinaryProtocol.decodeWords(payload)));
+                        return BinaryProtocol.encodeWords(anagrams);
+                    }));
+                case BinaryProtocol.FIND_PAGE:
+                    BinaryProtocol.PageRequest page = BinaryProtocol.decodePageRequest(request.payload);
+                    if (page.word.indexOf(WILDCARD) < 0) {
+                        return forward(shardOf(page.word, shards.size()), request);
+                    }
+                    // every shard's page starts after the same cursor, the first limit of them all make the page
+                    return respond(request, fanOut(request).thenApply(payloads -> {
+                        List<String> candidates = new ArrayList<>();
+                        payloads.forEach(payload -> candidates.addAll(BinaryProtocol.decodeWords(payload)));
+                        return BinaryProtocol.encodeWords(Ordering.natural().leastOf(candidates, page.limit));
+                    }));
+                case BinaryProtocol.BATCH:
+                    return routeBatch(request);
+                case BinaryProtocol.STATS:
+                    return respond(request, fanOut(request).thenApply(payloads -> {
+                        StringBuilder report = new StringBuilder("router\n").append(Metrics.report());
+                        for (int shard = 0; shard < payloads.size(); shard++) {
+                            report.append("shard ").append(shard).append('\n')
+                                .append(BinaryProtocol.decodeWord(payloads.get(shard)));
+                        }
+                        return BinaryProtocol.encodeWord(report.toString());
+                    }));
+                case BinaryProtocol.USE:
+                    return CompletableFuture.completedFuture(
+                        error(request, "Choosing a dictionary is not supported by the shard router"));
+                default:
+                    return CompletableFuture.completedFuture(error(request, "Unknown opcode " + request.code));
+            }
+        } catch (RuntimeException ex) {
+            return CompletableFuture.completedFuture(error(request, "Failed to route request: " + ex));
+        }
+    }
+
+    /**
+     * Splits a batch into one batch per shard, wildcard words going to every shard, and puts the anagrams back
+     * together in the order the words were requested.
+     */
+    private CompletableFuture<Frame> routeBatch(Frame request) {
+        List<String> words = BinaryProtocol.decodeWords(request.payload);
+        List<Set<String>> wordsByShard = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            wordsByShard.add(new LinkedHashSet<>());
+        }
+        for (String word : words) {
+            if (word.indexOf(WILDCARD) >= 0) {
+                wordsByShard.forEach(shardWords -> shardWords.add(word));
+            } else {
+                wordsByShard.get(shardOf(word, shards.size())).add(word);
+            }
+        }
+        List<CompletableFuture<Map<String, List<String>>>> shardResults = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<String> shardWords = new ArrayList<>(wordsByShard.get(shard));
+            if (!shardWords.isEmpty()) {
+                shardResults.add(shards.get(shard).send(BinaryProtocol.BATCH, BinaryProtocol.encodeWords(shardWords))
+                    .thenApply(payload -> {
+                        try {
+                            return BinaryProtocol.decodeBatch(shardWords, payload);
+                        } catch (IOException ex) {
+                            throw new CompletionException(ex);
+                        }
+                    }));
+            }
+        }
+        return respond(request, CompletableFuture.allOf(shardResults.toArray(new CompletableFuture<?>[0]))
+            .thenApply(done -> {
+                List<List<String>> results = new ArrayList<>(words.size());
+                for (String word : words) {
+                    List<String> anagrams = new ArrayList<>();
+                    for (CompletableFuture<Map<String, List<String>>> shardResult : shardResults) {
+                        anagrams.addAll(shardResult.join().getOrDefault(word, new ArrayList<>()));
+                    }
+                    results.add(anagrams);
+                }
+                return BinaryProtocol.encodeBatch(results);
+            }));
+    }
+
+    private CompletableFuture<Frame> forward(int shard, Frame request) {
+        return respond(request, shards.get(shard).send(request.code, request.payload));
+    }
+
+    /**
+     * Sends a request to every shard.
+     * @return a future of each shard's response payload, in shard order
+     */
+    private CompletableFuture<List<byte[]>> fanOut(Frame request) {
+        List<CompletableFuture<byte[]>> responses = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            responses.add(shard.send(request.code, request.payload));
+        }
+        return CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<byte[]> payloads = new ArrayList<>(responses.size());
+            responses.forEach(response -> payloads.add(response.join()));
+            return payloads;
+        });
+    }
+
+    /**
+     * The connection to one shard, replaced by a new one when a request finds it has ended.
+     */
+    private final class Shard {
+        private final int index;
+        private final ReentrantLock reconnectLock = new ReentrantLock();
+        private volatile BinarySocketClient client;
+        private long lastReconnect = System.nanoTime() - RECONNECT_INTERVAL_NANOS;
+
+        private Shard(int index, BinarySocketClient client) {
+            this.index = index;
+            this.client = client;
+        }
+
+        /**
+         * Sends a request to the shard.
+         * @return a future of the response payload, failed if the shard can not be reached or does not answer in time
+         */
+        private CompletableFuture<byte[]> send(byte opcode, byte[] payload) {
+            BinarySocketClient current;
+            try {
+                current = connected();
+            } catch (IOException ex) {
+                SHARD_FAILURES.increment();
+                CompletableFuture<byte[]> failed = new CompletableFuture<>();
+                failed.completeExceptionally(ex);
+                return failed;
+            }
+            CompletableFuture<byte[]> response = current.send(opcode, payload);
+            ScheduledFuture<?> timeout = timeouts.schedule(() -> {
+                if (response.completeExceptionally(new TimeoutException(
+                    "Shard " + index + " did not respond within " + timeoutMillis + "ms"))) {
+                    SHARD_FAILURES.increment();
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            response.whenComplete((result, ex) -> timeout.cancel(false));
+            return response;
+        }
+
+        /**
+         * @return the client if it is still connected, otherwise a new one connected in its place
+         * @throws IOException if the shard can not be reached, or was tried too recently or by another request
+         */
+        private BinarySocketClient connected() throws IOException {
+            BinarySocketClient current = client;
+            if (current.isConnected()) {
+                return current;
+            }
+            String address = current.getServer() + ":" + current.getServerPort();
+            // only one request reconnects, the others fail rather than queue behind it
+            if (!reconnectLock.tryLock()) {
+                throw new IOException("Shard " + index + " at " + address + " is unavailable");
+            }
+            try {
+                current = client;
+                if (current.isConnected()) {
+                    return current;
+                }
+                long now = System.nanoTime();
+                if (now - lastReconnect < RECONNECT_INTERVAL_NANOS) {
+                    throw new IOException("Shard " + index + " at " + address + " is unavailable");
+                }
+                lastReconnect = now;
+                BinarySocketClient replacement = new BinarySocketClient(current.getServer(), current.getServerPort());
+                try {
+                    replacement.connect();
+                } catch (IOException ex) {
+                    log.warn("Failed to reconnect to shard {} at {}", index, address, ex);
+                    throw new IOException("Shard " + index + " at " + address + " is unavailable: " + ex, ex);
+                }
+                current.close();
+                client = replacement;
+                log.info("Reconnected to shard {} at {}", index, address);
+                return replacement;
+            } finally {
+                reconnectLock.unlock();
+            }
+        }
+    }
+
+    private static CompletableFuture<Frame> respond(Frame request, CompletableFuture<byte[]> payload) {
+        return payload.handle((result, ex) -> {
+            if (ex == null) {
+                return new Frame(BinaryProtocol.STATUS_OK, request.requestId, result);
+            }
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            return error(request, cause.getMessage());
+        });
+    }
+
+    private static Frame error(Frame request, String message) {
+        return new Frame(BinaryProtocol.STATUS_ERROR, request.requestId,
+            BinaryProtocol.encodeWord(message == null ? "Shard request failed" : message));
+    }
+
+    /**
+     * Serves one client of the router. The client is greeted like a {@link SocketServer} client so a
+     * {@link BinarySocketClient} can switch it to the binary protocol, after which every frame is routed as soon as
+     * it is read and the responses are written back in the order the requests arrived.
+     */
+    private class RouterConnection implements Runnable, ConnectionExecutors.Rejectable {
+        private final Socket socket;
+        private final String clientIpPort;
+        private final AtomicInteger unanswered = new AtomicInteger();
+        private DataOutputStream output;
+
+        private RouterConnection(Socket socket) {
+            this.socket = socket;
+            this.clientIpPort = socket.getInetAddress().getHostAddress() + ":" + socket.getPort();
+        }
+
+        @Override
+        public String getClientIpPort() {
+            return clientIpPort;
+        }
+
+        @Override
+        public void run() {
+            try (Socket client = socket) {
+                InputStream input = new BufferedInputStream(client.getInputStream());
+                OutputStream rawOutput = client.getOutputStream();
+                writeText(rawOutput, BINARY_ONLY);
+                String line;
+                while ((line = readLine(input)) != null && !BinaryProtocol.UPGRADE_REQUEST.equals(line)) {
+                    writeText(rawOutput, BINARY_ONLY);
+                }
+                if (line == null) {
+                    return;
+                }
+                writeText(rawOutput, BinaryProtocol.UPGRADE_ACCEPTED);
+                output = new DataOutputStream(new BufferedOutputStream(rawOutput));
+                DataInputStream frames = new DataInputStream(input);
+                CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+                Frame request;
+                while ((request = BinaryProtocol.readFrame(frames)) != null) {
+                    unanswered.incrementAndGet();
+                    CompletableFuture<Frame> response = route(request);
+                    written = written.thenCompose(previous -> response).thenAccept(this::write);
+                }
+                written.join();
+            } catch (IOException | CompletionException ex) {
+                log.error("Connection with client failed, {}", clientIpPort, ex);
+            }
+        }
+
+        /**
+         * Writes a response, flushing once no other response is waiting so pipelined responses share writes.
+         */
+        private void write(Frame response) {
+            try {
+                BinaryProtocol.writeFrame(output, response);
+                if (unanswered.decrementAndGet() == 0) {
+                    output.flush();
+                }
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }
+
+        @Override
+        public void rejectAsBusy() {
+            try (Socket client = socket) {
+                writeText(client.getOutputStream(), ClientConnection.SERVER_BUSY);
+            } catch (IOException ex) {
+                log.error("Failed to turn away client {}", clientIpPort, ex);
+            }
+        }
+
+        private void writeText(OutputStream out, String message) throws IOException {
+            out.write((message + "\n" + MSG_SENTINEL + System.lineSeparator()).getBytes(CHARSET));
+            out.flush();
+        }
+
+        /**
+         * Reads a line without buffering past it, the bytes after the upgrade request are binary frames.
+         */
+        private String readLine(InputStream input) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int value;
+            while ((value = input.read()) >= 0 && value != '\n') {
+                if (value != '\r') {
+                    line.write(value);
+                }
+            }
+            if (value < 0 && line.size() == 0) {
+                return null;
+            }
+            return new String(line.toByteArray(), CHARSET);
+        }
+    }
+}
@@ -1,41 +1,61 @@
 package com.wzk.network;
 
-import static com.wzk.network.QueryProtocol.ADD_WORD;
-import static com.wzk.network.QueryProtocol.REMOVE_WORD;
-import static com.wzk.network.QueryProtocol.FIND_ANAGRAM;
-import static com.wzk.network.QueryProtocol.MENU;
-import static com.wzk.network.QueryProtocol.RETURN_TO_MENU;
-
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.wzk.entity.Dictionary;
+import com.wzk.metrics.Counter;
+import com.wzk.metrics.Metrics;
 import com.wzk.service.AnagramFinder;
+import com.wzk.service.DictionaryRegistry;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Exposes the {@link AnagramFinder} and {@link Dictionary} over a socket to clients.
  * Using {@link SocketClient} a user can send requests to the server to find anagrams for a word or to add and remove
- * words from the in memory dictionary. Each client is allocated a new thread so the server is able to handle
- * requests from multiple clients.
+ * words from the in memory dictionary. Each client is served by a {@link ClientConnection} on the server's connection
+ * executor, see {@link ConnectionExecutors}, so the number of clients handled at once is explicitly bounded.
+ * Accepted connections are counted, and the most recently created server publishes its active and rejected
+ * connections as gauges, see {@link Metrics}.
  */
 @Slf4j
 public class SocketServer extends Thread {
+    private static final Counter ACCEPTED_CONNECTIONS = Metrics.counter("connections.accepted");
+
     private ServerSocket serverSocket;
-    private final AnagramFinder anagramFinder;
-    private final Dictionary dictionary;
+    private final RequestHandler requestHandler;
     private final int serverPort;
+    private final ExecutorService connectionExecutor;
+    private final AtomicInteger activeConnections = new AtomicInteger();
 
     public SocketServer(AnagramFinder anagramFinder, Dictionary dictionary, int serverPort) {
-        this.anagramFinder = anagramFinder;
-        this.dictionary = dictionary;
+        this(anagramFinder, dictionary, serverPort, ConnectionExecutors.bounded(
+            ConnectionExecutors.DEFAULT_MAX_CONNECTIONS, ConnectionExecutors.DEFAULT_QUEUE_CAPACITY));
+    }
+
+    public SocketServer(AnagramFinder anagramFinder, Dictionary dictionary, int serverPort,
+                        ExecutorService connectionExecutor) {
+        this(DictionaryRegistry.of(dictionary, anagramFinder), serverPort, connectionExecutor);
+    }
+
+    public SocketServer(DictionaryRegistry dictionaries, int serverPort, ExecutorService connectionExecutor) {
+        this(dictionaries, serverPort, connectionExecutor, null);
+    }
+
+    /**
+     * @param accessLog records every client request, or null to record nothing
+     */
+    public SocketServer(DictionaryRegistry dictionaries, int serverPort, ExecutorService connectionExecutor,
+                        AccessLog accessLog) {
+        this.requestHandler = new RequestHandler(dictionaries, accessLog);
         this.serverPort = serverPort;
+        this.connectionExecutor = connectionExecutor;
+        Metrics.gauge("connections.active", activeConnections::get);
+        Metrics.gauge("connections.rejected", this::getRejectedConnections);
     }
 
     public void startServer() {
@@ -48,64 +68,68 @@ public class SocketServer extends Thread {
     }
 
     /**
-     * Waits for a client to connect, upon receiving a connection establishes input and output with the client
-     * in a new thread. The thread continues to listen to the client, when an input is received, it uses the
-     * {@link QueryProtocol} to look up the clients state and what the response should be. A user can choose to; find
-     * anagrams, add words, remove words or quit.
+     * @return the port the server is listening on, useful when it was started on port 0
+     */
+    public int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the number of clients currently being served
+     */
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    /**
+     * @return the number of clients waiting for the connection executor
+     */
+    public int getQueuedConnections() {
+        return ConnectionExecutors.getQueuedCount(connectionExecutor);
+    }
+
+    /**
+     * @return the number of clients turned away because the connection executor was full
+     */
+    public long getRejectedConnections() {
+        return ConnectionExecutors.getRejectedCount(connectionExecutor);
+    }
+
+    /**
+     * Waits for a client to connect, upon receiving a connection hands it to the connection executor as a
+     * {@link ClientConnection}. If the executor is full the client is told the server is busy and disconnected.
      */
     @Override
     public void run() {
-        while(true) {
-            log.info("Waiting for a client ....");
+        while(!serverSocket.isClosed()) {
+            log.debug("Waiting for a client ....");
             try{
                 final Socket socket = serverSocket.accept();
-                final String clientIpPort = socket.getInetAddress().getHostAddress()+":"+socket.getPort();
-
-                log.info("Client connected, IP and port: {}", clientIpPort);
-                new Thread(() ->{
-                    try {
-                        BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                        PrintWriter output = new PrintWriter(socket.getOutputStream(), true);
-                        QueryProtocol qp = new QueryProtocol(clientIpPort);
-                        String initialMsg = qp.deriveMenuResponse(null);
-                        output.println(initialMsg);
-                        String clientInput;
-                        while ((clientInput = input.readLine()) != null) {
-                            log.info("client {} says {}", clientIpPort, clientInput);
-                            // by default the response should be failed since this would indicate the program
-                            // was not able to derive the appropriate response to the request.
-                            String response = "Failed to generate response for input: "+clientInput;
-                            if (MENU == qp.getCurrentState()) {
-                                response = qp.deriveMenuResponse(clientInput);
-                            } else {
-                                if ((qp.getCurrentState() == ADD_WORD || qp.getCurrentState() == REMOVE_WORD ||
-                                    qp.getCurrentState() == FIND_ANAGRAM) && RETURN_TO_MENU.equals(clientInput)) {
-                                    response = qp.returnToMenu();
-                                } else {
-                                    if (ADD_WORD == qp.getCurrentState()) {
-                                        boolean didSucceed = dictionary.addWord(clientInput);
-                                        response = qp.deriveAddWordResponse(clientInput, didSucceed);
-                                    } else if (REMOVE_WORD == qp.getCurrentState()) {
-                                        boolean didSucceed = dictionary.removeWord(clientInput);
-                                        response = qp.deriveRemoveWordResponse(clientInput, didSucceed);
-                                    } else if (FIND_ANAGRAM == qp.getCurrentState()) {
-                                        List<String> anagrams = anagramFinder.findAnagrams(clientInput);
-                                        response = qp.deriveFindAnagramResponse(clientInput, anagrams);
-                                    }
-                                }
-                            }
-                            output.println(response);
-                        }
-                        input.close();
-                        output.close();
-                        socket.close();
-                    } catch (IOException ex) {
-                        log.error("Connection with client failed, {}", clientIpPort, ex);
-                    }
-                }).start();
+                ACCEPTED_CONNECTIONS.increment();
+                ClientConnection connection = new ClientConnection(socket, requestHandler, activeConnections);
+                log.info("Client connected, IP and port: {}", connection.getClientIpPort());
+                connectionExecutor.execute(connection);
+                log.debug("{} clients connected, {} waiting, {} turned away", activeConnections.get(),
+                    getQueuedConnections(), getRejectedConnections());
             } catch (IOException ex) {
-                log.error("Unable to establish connection with client", ex);
+                if (!serverSocket.isClosed()) {
+                    log.error("Unable to establish connection with client", ex);
+                }
             }
         }
     }
+
+    /**
+     * Stops accepting clients and stops the connection executor. Clients waiting in the executor's queue are never
+     * served. Clients already connected stay connected until they disconnect, interrupting their threads does not
+     * unblock a read from a socket.
+     */
+    public void stopServer() {
+        try {
+            serverSocket.close();
+        } catch (IOException ex) {
+            log.error("Failed to close server socket", ex);
+        }
+        connectionExecutor.shutdownNow();
+    }
 }
@@ -0,0 +1,94 @@
+package com.wzk.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Ordering;
+import com.wzk.entity.Dictionary;
+import com.wzk.entity.LetterSignature;
+
+/**
+ * Remembers the words found for the most requested letter signatures of a {@link Dictionary}, bounded by the total
+ * number of words held and evicting the least recently used signatures first. Every word added to or removed from the
+ * dictionary evicts only the one signature it belongs to, so changes to the dictionary leave the rest of the cache
+ * warm.
+ */
+public class AnagramCache {
+    private final Cache<LetterSignature, List<String>> groupsBySignature;
+    /** Counts every invalidation, a lookup that raced one can not tell whether it cached a stale group. */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a cache and registers it to be told about the dictionary's changes.
+     * @param dictionary the dictionary whose lookups are cached
+     * @param maximumWords the most words the cache holds across every signature
+     */
+    public AnagramCache(Dictionary dictionary, long maximumWords) {
+        this.groupsBySignature = CacheBuilder.newBuilder()
+            .maximumWeight(maximumWords)
+            .weigher((LetterSignature signature, List<String> words) -> words.size() + 1)
+            .recordStats()
+            .build();
+        dictionary.addMutationListener((word, added) -> invalidate(LetterSignature.of(word)));
+    }
+
+    /**
+     * Returns the cached words for a signature, looking them up on a miss.
+     * @param signature the signature to find the words of
+     * @param lookUp finds the words with the signature in the dictionary
+     * @return a new list of the words with the signature
+     */
+    List<String> get(LetterSignature signature, Function<LetterSignature, List<String>> lookUp) {
+        return new ArrayList<>(getSorted(signature, lookUp));
+    }
+
+    /**
+     * Returns the cached words for a signature without copying them, looking them up on a miss. The words are sorted
+     * once as they are cached, so a page of them can be found with a binary search.
+     * @param signature the signature to find the words of
+     * @param lookUp finds the words with the signature in the dictionary
+     * @return an immutable list of the words with the signature, in alphabetical order
+     */
+    List<String> getSorted(LetterSignature signature, Function<LetterSignature, List<String>> lookUp) {
+        List<String> cached = groupsBySignature.getIfPresent(signature);
+        if (cached != null) {
+            return cached;
+        }
+        long invalidationsBefore = invalidations.get();
+        List<String> words = Ordering.natural().immutableSortedCopy(lookUp.apply(signature));
+        groupsBySignature.put(signature, words);
+        if (invalidations.get() != invalidationsBefore) {
+            // a change landed while looking up, it may have invalidated the signature before the put
+            groupsBySignature.invalidate(signature);
+        }
+        return words;
+    }
+
+    /**
+     * Drops a signature whose words have changed.
+     * @param signature the signature of the changed word
+     */
+    public void invalidate(LetterSignature signature) {
+        invalidations.incrementAndGet();
+        groupsBySignature.invalidate(signature);
+    }
+
+    /**
+     * @return the hit, miss and eviction counts of the cache
+     */
+    public CacheStats getStats() {
+        return groupsBySignature.stats();
+    }
+
+    /**
+     * @return the number of signatures currently cached
+     */
+    public long size() {
+        return groupsBySignature.size();
+    }
+}
@@ -1,62 +1,296 @@
-package com.wzk.service;
-
-import java.util.Arrays;
-import java.util.List;
-import java.util.Locale;
-import java.util.stream.Collectors;
-
-import com.wzk.entity.Dictionary;
-
-import lombok.extern.slf4j.Slf4j;
-
-/**
- * Uses a Dictionary to find anagrams for a given word
- */
-@Slf4j
-public class AnagramFinder {
-
-    private final Dictionary dictionary;
-    public AnagramFinder(Dictionary dictionary) {
-        this.dictionary = dictionary;
-    }
-
-    /**
-     * Given a target word, order the characters in the target word alphabetically, find all the words in the dictionary
-     * with the same length as the target word, order the characters in each dictionary word alphabetically,
-     * return all words from the dictionary where the sorted dictionary word matches the sorted target word.
-     * This method is case insensitive.
-     * @param targetWord the word to find anagrams of
-     * @return the anagrams for the target word
-     */
-    public List<String> findAnagrams(String targetWord) {
-        String normalizedWord = targetWord;
-        if (dictionary.isIgnoreCase()) {
-            normalizedWord = targetWord.toLowerCase(Locale.ROOT);
-            log.debug("Word {} was converted to lowercase {}", targetWord, normalizedWord);
-        }
-        long startTime = System.currentTimeMillis();
-        List<String> wordsMatchingLength = dictionary.getWordsOfLength(normalizedWord.length());
-        String sortedString = convertToSortedString(normalizedWord);
-        List<String> anagrams = wordsMatchingLength.stream()
-            .filter( word -> {
-                String charSortedString = convertToSortedString(word);
-                return charSortedString.equals(sortedString); })
-            .collect(Collectors.toList());
-        anagrams.remove(normalizedWord); // don't return the word entered by the user as an anagram
-        long elapsedTime = System.currentTimeMillis() - startTime;
-        log.info("Found {} anagrams for word '{}', took {}ms", anagrams.size(), targetWord, elapsedTime);
-        return anagrams;
-    }
-
-    /**
-     * Takes the target word and sorts the characters in the word alphabetically, returns a String representation of
-     * this sorted character array.
-     * @param targetWord the word to convert
-     * @return the target word with its characters sorted alphabetically
-     */
-    public String convertToSortedString(String targetWord) {
-        char[] charArray = targetWord.toCharArray();
-        Arrays.sort(charArray);
-        return String.valueOf(charArray);
-    }
-}
+package com.wzk.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Ordering;
+import com.wzk.entity.Dictionary;
+import com.wzk.entity.LetterSignature;
+import com.wzk.metrics.LatencyTimer;
+import com.wzk.metrics.Metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Uses a Dictionary to find anagrams for a given word. By default anagrams are answered from the dictionary's
+ * signature index, the original scan over all words of the same length can be switched on for comparison. Wildcard
+ * scans and the queries no index answers go through a {@link CountVectorScanner} built the first time one is needed.
+ */
+@Slf4j
+public class AnagramFinder {
+    /** A blank in a query word, it stands for any one character. */
+    public static final char WILDCARD = Dictionary.WILDCARD;
+    private static final LatencyTimer FIND_TIMER = Metrics.timer("find");
+    private static final LatencyTimer BATCH_TIMER = Metrics.timer("find.batch");
+    private static final LatencyTimer WILDCARD_TIMER = Metrics.timer("find.wildcard");
+    private static final LatencyTimer NEAR_TIMER = Metrics.timer("find.near");
+
+    private final Dictionary dictionary;
+    private final boolean useSignatureIndex;
+    private final ForkJoinPool batchPool;
+    private final AnagramCache cache;
+    private volatile CountVectorScanner scanner;
+
+    public AnagramFinder(Dictionary dictionary) {
+        this(dictionary, true);
+    }
+
+    public AnagramFinder(Dictionary dictionary, boolean useSignatureIndex) {
+        this(dictionary, useSignatureIndex, ForkJoinPool.commonPool());
+    }
+
+    public AnagramFinder(Dictionary dictionary, boolean useSignatureIndex, ForkJoinPool batchPool) {
+        this(dictionary, useSignatureIndex, batchPool, null);
+    }
+
+    /**
+     * @param cache remembers the words found for each signature, or null to look every word up
+     */
+    public AnagramFinder(Dictionary dictionary, boolean useSignatureIndex, ForkJoinPool batchPool,
+                         AnagramCache cache) {
+        this.dictionary = dictionary;
+        this.useSignatureIndex = useSignatureIndex;
+        this.batchPool = batchPool;
+        this.cache = cache;
+    }
+
+    /**
+     * Finds all the words in the dictionary made up of the same characters as the target word, excluding the target
+     * word itself. Depending on how the finder was created this is either a lookup in the dictionary's signature
+     * index or a scan over all the words of the same length. A target word containing {@link #WILDCARD} blanks is
+     * answered by {@link #findWildcardAnagrams(String)}.
+     * This method is case insensitive.
+     * @param targetWord the word to find anagrams of
+     * @return the anagrams for the target word
+     */
+    public List<String> findAnagrams(String targetWord) {
+        String normalizedWord = targetWord;
+        if (dictionary.isIgnoreCase()) {
+            normalizedWord = targetWord.toLowerCase(Locale.ROOT);
+            log.debug("Word {} was converted to lowercase {}", targetWord, normalizedWord);
+        }
+        if (normalizedWord.indexOf(WILDCARD) >= 0) {
+            return findWildcardAnagrams(normalizedWord);
+        }
+        long startTime = FIND_TIMER.start();
+        List<String> anagrams = lookUp(LetterSignature.of(normalizedWord), normalizedWord);
+        anagrams.remove(normalizedWord); // don't return the word entered by the user as an anagram
+        FIND_TIMER.stop(startTime);
+        if (log.isDebugEnabled()) {
+            log.debug("Found {} anagrams for word '{}'", anagrams.size(), targetWord);
+        }
+        return anagrams;
+    }
+
+    /**
+     * Finds one page of the anagrams {@link #findAnagrams(String)} finds, the alphabetically first anagrams after a
+     * given one, so a word with many anagrams can be read a page at a time. The words of a signature are sorted once
+     * as they are cached and the page is found in them with a binary search. Wildcard searches are handed the page,
+     * so they stop once it is full rather than finding and sorting every match. This method is case insensitive.
+     * @param targetWord the word to find anagrams of
+     * @param after the last anagram of the previous page, or an empty string for the first page
+     * @param limit the most anagrams to return
+     * @return the page of anagrams in alphabetical order, a page shorter than the limit is the last
+     */
+    public List<String> findAnagramsPage(String targetWord, String after, int limit) {
+        String normalizedWord = dictionary.isIgnoreCase() ? targetWord.toLowerCase(Locale.ROOT) : targetWord;
+        if (normalizedWord.indexOf(WILDCARD) >= 0) {
+            long startTime = WILDCARD_TIMER.start();
+            int length = normalizedWord.length();
+            String fixedLetters = normalizedWord.replace(String.valueOf(WILDCARD), "");
+            int blanks = length - fixedLetters.length();
+            List<String> page = useSignatureIndex
+                ? dictionary.getAnagramsWithBlanks(fixedLetters, blanks, after, limit)
+                : scanner().scanPage(fixedLetters, blanks, length, after, limit);
+            WILDCARD_TIMER.stop(startTime);
+            return page;
+        }
+        long startTime = FIND_TIMER.start();
+        LetterSignature signature = LetterSignature.of(normalizedWord);
+        List<String> sortedWords = cache != null
+            ? cache.getSorted(signature, uncached -> lookUpUncached(uncached, normalizedWord))
+            : Ordering.natural().sortedCopy(lookUpUncached(signature, normalizedWord));
+        int position = Collections.binarySearch(sortedWords, after);
+        List<String> page = new ArrayList<>();
+        for (int i = position >= 0 ? position + 1 : -position - 1; i < sortedWords.size() && page.size() < limit; i++) {
+            if (!sortedWords.get(i).equals(normalizedWord)) {
+                page.add(sortedWords.get(i));
+            }
+        }
+        FIND_TIMER.stop(startTime);
+        return page;
+    }
+
+    /**
+     * Finds the anagrams of many words at once, with the same results {@link #findAnagrams(String)} would give for
+     * each word. Words sharing a letter signature are only looked up once, the distinct signatures and any
+     * wildcard words are spread over the finder's fork/join pool, and the whole batch is timed once.
+     * @param targetWords the words to find anagrams of
+     * @return the anagrams of each word, in the order the words were given
+     */
+    public Map<String, List<String>> findAnagramsBatch(Collection<String> targetWords) {
+        long startTime = BATCH_TIMER.start();
+        Map<String, String> normalizedWords = new LinkedHashMap<>();
+        for (String targetWord : targetWords) {
+            normalizedWords.put(targetWord,
+                dictionary.isIgnoreCase() ? targetWord.toLowerCase(Locale.ROOT) : targetWord);
+        }
+        Map<LetterSignature, String> signatures = new HashMap<>();
+        Set<String> wildcardWords = new HashSet<>();
+        for (String normalizedWord : normalizedWords.values()) {
+            if (normalizedWord.indexOf(WILDCARD) >= 0) {
+                wildcardWords.add(normalizedWord);
+            } else {
+                signatures.putIfAbsent(LetterSignature.of(normalizedWord), normalizedWord);
+            }
+        }
+
+        Map<LetterSignature, List<String>> groups = batchPool.submit(() -> signatures.entrySet().parallelStream()
+            .collect(Collectors.toConcurrentMap(Map.Entry::getKey,
+                entry -> lookUp(entry.getKey(), entry.getValue())))).join();
+        Map<String, List<String>> wildcardResults = batchPool.submit(() -> wildcardWords.parallelStream()
+            .collect(Collectors.toConcurrentMap(word -> word, this::findWildcardAnagrams))).join();
+
+        Map<String, List<String>> anagramsByWord = new LinkedHashMap<>();
+        normalizedWords.forEach((targetWord, normalizedWord) -> {
+            List<String> anagrams;
+            if (wildcardResults.containsKey(normalizedWord)) {
+                anagrams = new ArrayList<>(wildcardResults.get(normalizedWord));
+            } else {
+                anagrams = new ArrayList<>(groups.get(LetterSignature.of(normalizedWord)));
+                anagrams.remove(normalizedWord);
+            }
+            anagramsByWord.put(targetWord, anagrams);
+        });
+        BATCH_TIMER.stop(startTime);
+        log.debug("Found anagrams for a batch of {} words with {} distinct signatures", anagramsByWord.size(),
+            signatures.size() + wildcardWords.size());
+        return anagramsByWord;
+    }
+
+    /**
+     * Looks up the dictionary words with a signature, from the cache if there is one and otherwise either in the
+     * index or by scanning.
+     * @param signature the signature of the word
+     * @param normalizedWord a word with the signature, used to pick the words of the same length when scanning
+     * @return the words with the signature, including the word itself if it is in the dictionary
+     */
+    private List<String> lookUp(LetterSignature signature, String normalizedWord) {
+        if (cache != null) {
+            return cache.get(signature, uncached -> lookUpUncached(uncached, normalizedWord));
+        }
+        return lookUpUncached(signature, normalizedWord);
+    }
+
+    private List<String> lookUpUncached(LetterSignature signature, String normalizedWord) {
+        return useSignatureIndex ? dictionary.getAnagramGroup(signature) : scanForAnagrams(normalizedWord);
+    }
+
+    /**
+     * Finds all the words in the dictionary that can be made from the letters of the target word with each
+     * {@link #WILDCARD} replaced by any one character, e.g. "a?ple" finds "apple" and "ample" as well as
+     * anagrams such as "maple". The dictionary is searched for words of the same length containing the fixed
+     * letters of the target word, see {@link Dictionary#getAnagramsWithBlanks(String, int)}, or scanned for them when
+     * the finder is not using the signature index. This method is case insensitive.
+     * @param targetWord the word with blanks to find anagrams of
+     * @return every dictionary word matching the target word
+     */
+    public List<String> findWildcardAnagrams(String targetWord) {
+        String normalizedWord = dictionary.isIgnoreCase() ? targetWord.toLowerCase(Locale.ROOT) : targetWord;
+        long startTime = WILDCARD_TIMER.start();
+        int length = normalizedWord.length();
+        String fixedLetters = normalizedWord.replace(String.valueOf(WILDCARD), "");
+        int blanks = length - fixedLetters.length();
+        List<String> anagrams = useSignatureIndex ? dictionary.getAnagramsWithBlanks(fixedLetters, blanks)
+            : scanner().scan(fixedLetters, blanks, length, length);
+        WILDCARD_TIMER.stop(startTime);
+        log.debug("Found {} anagrams for wildcard word '{}'", anagrams.size(), targetWord);
+        return anagrams;
+    }
+
+    /**
+     * Finds the words of the same length as the target word that are an anagram of it once at most the given number
+     * of their letters are changed, e.g. "stare" with one difference finds "tears" as well as "stale" and "rates".
+     * No index answers this, so every word of that length is scanned. This method is case insensitive.
+     * @param targetWord the word to find near anagrams of
+     * @param maxDifferences the most letters that may differ
+     * @return the near anagrams in alphabetical order, excluding the target word itself
+     */
+    public List<String> findNearAnagrams(String targetWord, int maxDifferences) {
+        String normalizedWord = dictionary.isIgnoreCase() ? targetWord.toLowerCase(Locale.ROOT) : targetWord;
+        long startTime = NEAR_TIMER.start();
+        int length = normalizedWord.length();
+        List<String> anagrams = scanner().scan(normalizedWord, maxDifferences, length, length);
+        anagrams.remove(normalizedWord);
+        NEAR_TIMER.stop(startTime);
+        log.debug("Found {} near anagrams for word '{}'", anagrams.size(), targetWord);
+        return anagrams;
+    }
+
+    public boolean isUsingSignatureIndex() {
+        return useSignatureIndex;
+    }
+
+    /**
+     * @return the cache in front of lookups, or null if there is none
+     */
+    public AnagramCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Given a target word, derive its {@link LetterSignature}, find all the words in the dictionary with the same length
+     * as the target word and return those matching the signature. Matching is done on the words' prime products so
+     * no sorted copy of each dictionary word is allocated. The words are read from the dictionary rather than the
+     * scanner's columns, so finding anagrams never waits for the columns to be rebuilt after a change.
+     * @param normalizedWord the word to find anagrams of, already normalized to the dictionary's case
+     * @return the words from the dictionary sharing the target word's characters, including the target word
+     */
+    private List<String> scanForAnagrams(String normalizedWord) {
+        List<String> wordsMatchingLength = dictionary.getWordsOfLength(normalizedWord.length());
+        LetterSignature signature = LetterSignature.of(normalizedWord);
+        return wordsMatchingLength.stream()
+            .filter(signature::matches)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Creates the scanner on first use, so a finder that never scans does not listen to the dictionary's changes.
+     */
+    private CountVectorScanner scanner() {
+        CountVectorScanner current = scanner;
+        if (current == null) {
+            synchronized (this) {
+                current = scanner;
+                if (current == null) {
+                    current = new CountVectorScanner(dictionary, batchPool);
+                    scanner = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Takes the target word and sorts the characters in the word alphabetically, returns a String representation of
+     * this sorted character array.
+     * @param targetWord the word to convert
+     * @return the target word with its characters sorted alphabetically
+     */
+    public String convertToSortedString(String targetWord) {
+        char[] charArray = targetWord.toCharArray();
+        Arrays.sort(charArray);
+        return String.valueOf(charArray);
+    }
+}
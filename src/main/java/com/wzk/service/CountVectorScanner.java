@@ -0,0 +1,290 @@
+package com.wzk.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.google.common.collect.Ordering;
+import com.wzk.entity.AnagramGroup;
+import com.wzk.entity.Dictionary;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Answers the letter count questions no index of the {@link Dictionary} can, by scanning a copy of every word's
+ * letter counts. The counts are kept as columns, one byte array per letter a-z holding that letter's count in every
+ * word, with the words sorted by length so a query only scans the rows of the lengths it wants. A scan adds up, one
+ * column at a time, how many of each word's letters are missing from the letters given. That inner loop has no
+ * branches and runs over plain arrays, so the JIT unrolls and vectorizes it. Blocks of rows are scanned in parallel
+ * on a fork/join pool. Words with characters outside a-z are few and are checked one by one.
+ * <p>
+ * The columns are built the first time they are scanned. Any change to the dictionary marks them stale, and the next
+ * scan builds them again, so this suits a dictionary that is mostly read.
+ */
+@Slf4j
+public class CountVectorScanner {
+    private static final int LETTERS = 26;
+    /** Rows scanned by one task, small enough for a block's running totals to stay in the L1 cache. */
+    private static final int BLOCK_ROWS = 4096;
+
+    private final Dictionary dictionary;
+    private final ForkJoinPool pool;
+    private volatile Columns columns;
+    private volatile boolean stale = true;
+
+    /**
+     * Creates a scanner and registers it to be told about the dictionary's changes.
+     * @param dictionary the dictionary to scan
+     * @param pool the pool blocks of rows are scanned on
+     */
+    public CountVectorScanner(Dictionary dictionary, ForkJoinPool pool) {
+        this.dictionary = dictionary;
+        this.pool = pool;
+        dictionary.addMutationListener((word, added) -> stale = true);
+    }
+
+    /**
+     * Finds the words that can be spelled from the letters plus up to the given number of blanks, each standing in
+     * for any one character. With no blanks these are the sub-anagrams of the letters. With the length fixed to the
+     * length of a word and the word as the letters, the blanks are the most letters that may differ from the word.
+     * @param letters the letters available, already normalized to the dictionary's case
+     * @param blanks the most characters of the words that the letters may be missing
+     * @param minLength the length of the shortest words wanted
+     * @param maxLength the length of the longest words wanted
+     * @return the words found, shortest first and alphabetically within a length
+     */
+    public List<String> scan(String letters, int blanks, int minLength, int maxLength) {
+        Columns current = columns();
+        int[] available = availableCounts(letters);
+        List<String> words;
+        int firstRow = current.firstRowOfLength(minLength);
+        int endRow = current.firstRowOfLength(Math.min(maxLength, Byte.MAX_VALUE) + 1);
+        if (minLength > Byte.MAX_VALUE || firstRow >= endRow) {
+            // no word of these lengths is in the columns, only the words kept aside can match
+            words = new ArrayList<>();
+        } else if (endRow - firstRow <= BLOCK_ROWS) {
+            words = current.scanRows(firstRow, endRow, available, blanks);
+        } else {
+            int blocks = (endRow - firstRow + BLOCK_ROWS - 1) / BLOCK_ROWS;
+            words = pool.submit(() -> IntStream.range(0, blocks).parallel()
+                .mapToObj(block -> current.scanRows(firstRow + block * BLOCK_ROWS,
+                    Math.min(firstRow + (block + 1) * BLOCK_ROWS, endRow), available, blanks))
+                .flatMap(List::stream)
+                .collect(Collectors.toList())).join();
+        }
+        if (!current.otherWords.isEmpty()) {
+            String sortedLetters = sorted(letters);
+            for (String word : current.otherWords) {
+                if (word.length() >= minLength && word.length() <= maxLength
+                    && missingCharacters(sortedLetters, sorted(word)) <= blanks) {
+                    words.add(word);
+                }
+            }
+            words.sort(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()));
+        }
+        return words;
+    }
+
+    /**
+     * Finds one page of the words {@link #scan(String, int, int, int)} finds of a single length, the alphabetically
+     * first words after a given word. The rows of one length are in alphabetical order, so the scan starts at the row
+     * after the given word and stops once the page is full, a block at a time on the calling thread.
+     * @param letters the letters available, already normalized to the dictionary's case
+     * @param blanks the most characters of the words that the letters may be missing
+     * @param length the length of the words wanted
+     * @param after the last word of the previous page, or an empty string for the first page
+     * @param limit the most words to return
+     * @return the page's words in alphabetical order
+     */
+    public List<String> scanPage(String letters, int blanks, int length, String after, int limit) {
+        Columns current = columns();
+        int[] available = availableCounts(letters);
+        List<String> words = new ArrayList<>();
+        if (length >= 0 && length <= Byte.MAX_VALUE) {
+            int endRow = current.firstRowOfLength(length + 1);
+            int row = current.firstRowAfter(length, after);
+            while (row < endRow && words.size() < limit) {
+                int blockEnd = Math.min(row + BLOCK_ROWS, endRow);
+                words.addAll(current.scanRows(row, blockEnd, available, blanks));
+                row = blockEnd;
+            }
+        }
+        if (!current.otherWords.isEmpty()) {
+            String sortedLetters = sorted(letters);
+            for (String word : current.otherWords) {
+                if (word.length() == length && word.compareTo(after) > 0
+                    && missingCharacters(sortedLetters, sorted(word)) <= blanks) {
+                    words.add(word);
+                }
+            }
+        }
+        return Ordering.natural().leastOf(words, limit);
+    }
+
+    /**
+     * @return the number of words held in columns, the rest are checked one by one
+     */
+    int getColumnRows() {
+        return columns().words.length;
+    }
+
+    private Columns columns() {
+        Columns current = columns;
+        if (current == null || stale) {
+            synchronized (this) {
+                current = columns;
+                if (current == null || stale) {
+                    // cleared first, so a change made while building marks the new columns stale again
+                    stale = false;
+                    current = build();
+                    columns = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Columns build() {
+        long startTime = System.nanoTime();
+        List<String> columnWords = new ArrayList<>();
+        List<String> otherWords = new ArrayList<>();
+        for (AnagramGroup group : dictionary.getAnagramGroups()) {
+            for (String word : group.getWords()) {
+                (fitsColumns(word) ? columnWords : otherWords).add(word);
+            }
+        }
+        columnWords.sort(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()));
+        Columns built = new Columns(columnWords.toArray(new String[0]), otherWords);
+        log.debug("Built letter count columns of {} words in {}ms, {} words kept aside", columnWords.size(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), otherWords.size());
+        return built;
+    }
+
+    /**
+     * @return whether every character of the word is a-z and no count overflows a byte, which the length guarantees
+     */
+    private static boolean fitsColumns(String word) {
+        if (word.length() > Byte.MAX_VALUE) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char character = word.charAt(i);
+            if (character < 'a' || character > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] availableCounts(String letters) {
+        int[] available = new int[LETTERS];
+        for (int i = 0; i < letters.length(); i++) {
+            int letter = letters.charAt(i) - 'a';
+            if (letter >= 0 && letter < LETTERS) {
+                available[letter]++;
+            }
+        }
+        return available;
+    }
+
+    private static String sorted(String word) {
+        char[] characters = word.toCharArray();
+        Arrays.sort(characters);
+        return String.valueOf(characters);
+    }
+
+    /**
+     * Walks two sorted strings counting the characters of the word, including repeats, that the letters lack.
+     */
+    private static int missingCharacters(String sortedLetters, String sortedWord) {
+        int missing = 0;
+        int letterIndex = 0;
+        for (int i = 0; i < sortedWord.length(); i++) {
+            char character = sortedWord.charAt(i);
+            while (letterIndex < sortedLetters.length() && sortedLetters.charAt(letterIndex) < character) {
+                letterIndex++;
+            }
+            if (letterIndex < sortedLetters.length() && sortedLetters.charAt(letterIndex) == character) {
+                letterIndex++;
+            } else {
+                missing++;
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * An immutable copy of the dictionary's words as letter count columns.
+     */
+    private static final class Columns {
+        private final String[] words;
+        private final byte[][] counts = new byte[LETTERS][];
+        /** The first row of each length, the rows of length n are lengthStart[n] to lengthStart[n + 1]. */
+        private final int[] lengthStart = new int[Byte.MAX_VALUE + 2];
+        private final List<String> otherWords;
+
+        private Columns(String[] words, List<String> otherWords) {
+            this.words = words;
+            this.otherWords = Collections.unmodifiableList(otherWords);
+            for (int letter = 0; letter < LETTERS; letter++) {
+                counts[letter] = new byte[words.length];
+            }
+            for (int row = 0; row < words.length; row++) {
+                String word = words[row];
+                for (int i = 0; i < word.length(); i++) {
+                    counts[word.charAt(i) - 'a'][row]++;
+                }
+            }
+            int row = 0;
+            for (int length = 0; length < lengthStart.length; length++) {
+                while (row < words.length && words[row].length() < length) {
+                    row++;
+                }
+                lengthStart[length] = row;
+            }
+        }
+
+        private int firstRowOfLength(int length) {
+            return lengthStart[Math.max(0, Math.min(length, lengthStart.length - 1))];
+        }
+
+        /**
+         * @return the first row of the length holding a word that sorts after the given word
+         */
+        private int firstRowAfter(int length, String after) {
+            int position = Arrays.binarySearch(words, firstRowOfLength(length), firstRowOfLength(length + 1), after);
+            return position >= 0 ? position + 1 : -position - 1;
+        }
+
+        /**
+         * Totals the missing letters of each row a column at a time, then keeps the rows missing no more than the
+         * blanks. Letters given more often than any word can hold are skipped, none of their counts can be missing.
+         */
+        private List<String> scanRows(int from, int to, int[] available, int blanks) {
+            int[] missing = new int[to - from];
+            for (int letter = 0; letter < LETTERS; letter++) {
+                int availableCount = available[letter];
+                if (availableCount >= Byte.MAX_VALUE) {
+                    continue;
+                }
+                byte[] column = counts[letter];
+                for (int row = from; row < to; row++) {
+                    missing[row - from] += Math.max(column[row] - availableCount, 0);
+                }
+            }
+            List<String> found = new ArrayList<>();
+            for (int row = from; row < to; row++) {
+                if (missing[row - from] <= blanks) {
+                    found.add(words[row]);
+                }
+            }
+            return found;
+        }
+    }
+}
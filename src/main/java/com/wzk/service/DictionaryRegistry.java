@@ -0,0 +1,227 @@
+package com.wzk.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.wzk.entity.Dictionary;
+import com.wzk.metrics.Metrics;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves several named dictionaries, each with its own index and {@link AnagramFinder}. The default dictionary is
+ * always loaded, any other is loaded the first time it is asked for and kept while the estimated memory of every
+ * loaded dictionary fits the budget, past that the least recently used are evicted and loaded again when next asked
+ * for. Words added to or removed from a dictionary that is evicted are lost, changes that should last belong in the
+ * default dictionary. The size of every dictionary is published as a dictionary.&lt;name&gt;.words gauge, 0 while it
+ * is not loaded.
+ */
+@Slf4j
+public class DictionaryRegistry {
+    public static final String DEFAULT_DICTIONARY = "default";
+    private static final long BYTES_PER_WEIGHT = 1024;
+
+    /**
+     * Loads a named dictionary, called each time the dictionary is needed and not loaded.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        Dictionary load() throws IOException;
+    }
+
+    /**
+     * A loaded dictionary and the finder searching it.
+     */
+    @Getter
+    public static final class Entry {
+        private final String name;
+        private final Dictionary dictionary;
+        private final AnagramFinder anagramFinder;
+        /** The estimated heap, direct and mapped memory of the dictionary when it was loaded. */
+        private final long estimatedBytes;
+
+        Entry(String name, Dictionary dictionary, AnagramFinder anagramFinder) {
+            this.name = name;
+            this.dictionary = dictionary;
+            this.anagramFinder = anagramFinder;
+            this.estimatedBytes = dictionary.getEstimatedHeapBytes() + dictionary.getOffHeapBytes()
+                + dictionary.getMappedBytes();
+        }
+    }
+
+    private final Entry defaultEntry;
+    private final Map<String, Loader> loaders = new ConcurrentHashMap<>();
+    private final Function<Dictionary, AnagramFinder> finderFactory;
+    private final LoadingCache<String, Entry> loadedDictionaries;
+    private volatile boolean readOnly;
+
+    /**
+     * @param defaultDictionary the dictionary used by clients that have not chosen one
+     * @param defaultFinder the finder searching the default dictionary
+     * @param finderFactory creates the finder for each other dictionary as it is loaded
+     * @param memoryBudgetBytes how much memory the dictionaries other than the default may hold between them
+     */
+    public DictionaryRegistry(Dictionary defaultDictionary, AnagramFinder defaultFinder,
+                              Function<Dictionary, AnagramFinder> finderFactory, long memoryBudgetBytes) {
+        this.defaultEntry = new Entry(DEFAULT_DICTIONARY, defaultDictionary, defaultFinder);
+        this.finderFactory = finderFactory;
+        this.loadedDictionaries = CacheBuilder.newBuilder()
+            .maximumWeight(Math.max(memoryBudgetBytes / BYTES_PER_WEIGHT, 1))
+            .weigher((String name, Entry entry) -> (int) Math.min(entry.estimatedBytes / BYTES_PER_WEIGHT,
+                Integer.MAX_VALUE))
+            .removalListener(this::onRemoval)
+            .build(CacheLoader.from(this::load));
+        Metrics.gauge(wordsGaugeName(DEFAULT_DICTIONARY), defaultDictionary::getSize);
+        Metrics.gauge("dictionary." + DEFAULT_DICTIONARY + ".heapBytes", defaultDictionary::getEstimatedHeapBytes);
+        Metrics.gauge("dictionary." + DEFAULT_DICTIONARY + ".offHeapBytes", defaultDictionary::getOffHeapBytes);
+    }
+
+    /**
+     * @return a registry serving only the one dictionary
+     */
+    public static DictionaryRegistry of(Dictionary dictionary, AnagramFinder anagramFinder) {
+        return new DictionaryRegistry(dictionary, anagramFinder, AnagramFinder::new, 0);
+    }
+
+    /**
+     * Stops clients changing the dictionaries, e.g. on a replica whose dictionary is kept in step with a primary's.
+     * @param readOnly whether or not clients may only read
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Makes a dictionary available under a name without loading it.
+     * @param name the name clients choose the dictionary by
+     * @param loader loads the dictionary when it is needed
+     */
+    public void register(String name, Loader loader) {
+        if (DEFAULT_DICTIONARY.equals(name)) {
+            throw new IllegalArgumentException("The name " + DEFAULT_DICTIONARY + " is reserved");
+        }
+        loaders.put(name, loader);
+        loadedDictionaries.invalidate(name);
+        Metrics.gauge(wordsGaugeName(name), () -> {
+            Entry entry = loadedDictionaries.getIfPresent(name);
+            return entry == null ? 0 : entry.dictionary.getSize();
+        });
+    }
+
+    /**
+     * Makes a word list or snapshot file available under a name, files ending in .snapshot are opened as a
+     * {@link com.wzk.entity.DictionarySnapshot}, anything else is loaded as a case insensitive word list.
+     */
+    public void register(String name, Path file) {
+        if (file.getFileName().toString().endsWith(".snapshot")) {
+            register(name, () -> new Dictionary(file));
+        } else {
+            register(name, () -> Dictionary.fromWordFile(file, true));
+        }
+    }
+
+    public boolean contains(String name) {
+        return DEFAULT_DICTIONARY.equals(name) || loaders.containsKey(name);
+    }
+
+    /**
+     * @return the names of every dictionary that can be chosen, loaded or not
+     */
+    public Set<String> getNames() {
+        Set<String> names = new TreeSet<>(loaders.keySet());
+        names.add(DEFAULT_DICTIONARY);
+        return names;
+    }
+
+    /**
+     * Returns a dictionary, loading it first if it is not loaded.
+     * @param name the name of the dictionary, null for the default
+     * @return the dictionary and its finder
+     * @throws IllegalArgumentException if no dictionary has the name
+     * @throws UncheckedIOException if the dictionary could not be loaded
+     */
+    public Entry get(String name) {
+        if (name == null || DEFAULT_DICTIONARY.equals(name)) {
+            return defaultEntry;
+        }
+        if (!loaders.containsKey(name)) {
+            throw new IllegalArgumentException("No dictionary named " + name);
+        }
+        try {
+            return loadedDictionaries.get(name);
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            if (ex.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) ex.getCause();
+            }
+            throw new IllegalStateException("Failed to load dictionary " + name, ex.getCause());
+        }
+    }
+
+    /**
+     * Returns a dictionary only if it is already loaded, without loading it or waiting for a load in progress.
+     * @param name the name of the dictionary, null for the default
+     * @return the dictionary and its finder, or null if it is not loaded
+     */
+    public Entry getIfLoaded(String name) {
+        if (name == null || DEFAULT_DICTIONARY.equals(name)) {
+            return defaultEntry;
+        }
+        return loadedDictionaries.getIfPresent(name);
+    }
+
+    /**
+     * @return the estimated memory of every loaded dictionary, including the default
+     */
+    public long getLoadedBytes() {
+        long bytes = defaultEntry.estimatedBytes;
+        for (Entry entry : loadedDictionaries.asMap().values()) {
+            bytes += entry.estimatedBytes;
+        }
+        return bytes;
+    }
+
+    private static String wordsGaugeName(String name) {
+        return "dictionary." + name + ".words";
+    }
+
+    private Entry load(String name) {
+        long startTime = System.currentTimeMillis();
+        Loader loader = loaders.get(name);
+        if (loader == null) {
+            throw new IllegalArgumentException("No dictionary named " + name);
+        }
+        try {
+            Dictionary dictionary = loader.load();
+            Entry entry = new Entry(name, dictionary, finderFactory.apply(dictionary));
+            long elapsedTime = System.currentTimeMillis() - startTime;
+            log.info("Loaded dictionary {} with {} words, about {}KB, in {}ms", name, dictionary.getSize(),
+                entry.estimatedBytes / 1024, elapsedTime);
+            return entry;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to load dictionary " + name, ex);
+        }
+    }
+
+    private void onRemoval(RemovalNotification<String, Entry> notification) {
+        if (notification.wasEvicted()) {
+            log.info("Evicted dictionary {} to stay within the memory budget", notification.getKey());
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.wzk.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import com.wzk.entity.AnagramGroup;
+import com.wzk.entity.Dictionary;
+import com.wzk.metrics.LatencyTimer;
+import com.wzk.metrics.Metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Finds multi-word anagrams of a phrase, e.g. "dormitory" to "dirty room". The letters of the phrase are kept as a
+ * count per distinct character, every dictionary anagram group that fits inside those counts is a candidate, and the
+ * search subtracts one candidate at a time until no letters remain. Candidates are tried longest first and each level
+ * only considers candidates at or after the previous one, so every combination of groups is visited once. The top of
+ * the search tree is split into fork/join tasks, the leaves are searched sequentially.
+ */
+@Slf4j
+public class PhraseAnagramFinder {
+    /** Levels of the search tree above this depth are forked as separate tasks. */
+    private static final int FORK_DEPTH = 2;
+    private static final LatencyTimer PHRASE_TIMER = Metrics.timer("find.phrase");
+
+    private final Dictionary dictionary;
+    private final ForkJoinPool pool;
+
+    public PhraseAnagramFinder(Dictionary dictionary) {
+        this(dictionary, ForkJoinPool.commonPool());
+    }
+
+    public PhraseAnagramFinder(Dictionary dictionary, ForkJoinPool pool) {
+        this.dictionary = dictionary;
+        this.pool = pool;
+    }
+
+    /**
+     * Searches for phrases made up of dictionary words using exactly the letters of the given phrase, whitespace in
+     * the phrase is ignored. Each phrase is handed to the consumer as soon as it is found, the words of a phrase are
+     * separated by a single space. The phrase itself is not reported. The consumer is called from several threads
+     * at once and must be thread safe.
+     * @param phrase the phrase to find anagrams of
+     * @param options the limits of the search
+     * @param resultConsumer receives each phrase as it is found
+     * @return the number of phrases handed to the consumer
+     */
+    public long findPhraseAnagrams(String phrase, PhraseSearchOptions options, Consumer<String> resultConsumer) {
+        String normalizedPhrase = dictionary.isIgnoreCase() ? phrase.toLowerCase(Locale.ROOT) : phrase;
+        String letters = normalizedPhrase.replaceAll("\\s+", "");
+        String excludedPhrase = normalizedPhrase.trim().replaceAll("\\s+", " ");
+        long startTime = PHRASE_TIMER.start();
+
+        String alphabet = letters.chars().distinct().sorted()
+            .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append).toString();
+        int[] targetCounts = countLetters(letters, alphabet);
+        List<Candidate> candidates = collectCandidates(alphabet, targetCounts, letters.length(), options);
+
+        SearchState state = new SearchState(candidates, options, excludedPhrase, resultConsumer);
+        if (!letters.isEmpty() && options.getMaxWords() > 0 && options.getMaxResults() > 0) {
+            pool.invoke(new SearchTask(state, targetCounts, letters.length(), 0, new int[0]));
+        }
+        PHRASE_TIMER.stop(startTime);
+        log.debug("Found {} phrase anagrams for '{}' from {} candidate groups", state.emitted.get(), phrase,
+            candidates.size());
+        return state.emitted.get();
+    }
+
+    /**
+     * Selects the anagram groups that can be spelled from the phrase's letters and respect the minimum word length.
+     */
+    private List<Candidate> collectCandidates(String alphabet, int[] targetCounts, int letterCount,
+                                              PhraseSearchOptions options) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (AnagramGroup group : dictionary.getAnagramGroups()) {
+            int length = group.getSignature().getLength();
+            if (length < options.getMinWordLength() || length > letterCount || length == 0) {
+                continue;
+            }
+            String representative = group.getRepresentative();
+            if (representative == null) {
+                continue;
+            }
+            int[] counts = countLetters(representative, alphabet);
+            if (counts != null && fits(counts, targetCounts)) {
+                List<String> words = group.getWords();
+                words.sort(Comparator.naturalOrder());
+                candidates.add(new Candidate(counts, length, words));
+            }
+        }
+        candidates.sort(Comparator.comparingInt((Candidate candidate) -> candidate.length).reversed()
+            .thenComparing(candidate -> candidate.words.get(0)));
+        return candidates;
+    }
+
+    /**
+     * @return the count of each alphabet character in the word, or null if the word uses a character outside the
+     * alphabet
+     */
+    private static int[] countLetters(String word, String alphabet) {
+        int[] counts = new int[alphabet.length()];
+        for (int i = 0; i < word.length(); i++) {
+            int index = alphabet.indexOf(word.charAt(i));
+            if (index < 0) {
+                return null;
+            }
+            counts[index]++;
+        }
+        return counts;
+    }
+
+    private static boolean fits(int[] counts, int[] remaining) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > remaining[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Candidate {
+        private final int[] counts;
+        private final int length;
+        private final List<String> words;
+
+        private Candidate(int[] counts, int length, List<String> words) {
+            this.counts = counts;
+            this.length = length;
+            this.words = words;
+        }
+    }
+
+    /**
+     * State shared by every task of one search.
+     */
+    private static final class SearchState {
+        private final List<Candidate> candidates;
+        private final PhraseSearchOptions options;
+        private final String excludedPhrase;
+        private final Consumer<String> resultConsumer;
+        private final AtomicLong emitted = new AtomicLong();
+        private volatile boolean finished;
+
+        private SearchState(List<Candidate> candidates, PhraseSearchOptions options, String excludedPhrase,
+                            Consumer<String> resultConsumer) {
+            this.candidates = candidates;
+            this.options = options;
+            this.excludedPhrase = excludedPhrase;
+            this.resultConsumer = resultConsumer;
+        }
+
+        /**
+         * Expands a combination of anagram groups into phrases. When the same group is used more than once its words
+         * are picked in non-decreasing order so "a b" and "b a" are not both reported.
+         */
+        private void emit(int[] path) {
+            String[] words = new String[path.length];
+            expand(path, 0, 0, words);
+        }
+
+        private void expand(int[] path, int position, int firstWord, String[] words) {
+            if (finished) {
+                return;
+            }
+            if (position == path.length) {
+                String phrase = String.join(" ", words);
+                if (phrase.equals(excludedPhrase)) {
+                    return;
+                }
+                if (emitted.incrementAndGet() > options.getMaxResults()) {
+                    emitted.decrementAndGet();
+                    finished = true;
+                    return;
+                }
+                resultConsumer.accept(phrase);
+                return;
+            }
+            List<String> groupWords = candidates.get(path[position]).words;
+            boolean repeatsNext = position + 1 < path.length && path[position + 1] == path[position];
+            for (int i = firstWord; i < groupWords.size(); i++) {
+                words[position] = groupWords.get(i);
+                expand(path, position + 1, repeatsNext ? i : 0, words);
+            }
+        }
+    }
+
+    /**
+     * Searches the combinations that extend a partial phrase. Tasks near the root fork a child per fitting candidate,
+     * deeper tasks recurse in place reusing their count array.
+     */
+    @SuppressWarnings("serial")
+    private static final class SearchTask extends RecursiveAction {
+        private final SearchState state;
+        private final int[] remaining;
+        private final int remainingLength;
+        private final int start;
+        private final int[] path;
+
+        private SearchTask(SearchState state, int[] remaining, int remainingLength, int start, int[] path) {
+            this.state = state;
+            this.remaining = remaining;
+            this.remainingLength = remainingLength;
+            this.start = start;
+            this.path = path;
+        }
+
+        @Override
+        protected void compute() {
+            if (path.length >= FORK_DEPTH) {
+                int[] stack = new int[state.options.getMaxWords()];
+                System.arraycopy(path, 0, stack, 0, path.length);
+                search(remaining, remainingLength, start, stack, path.length);
+                return;
+            }
+            List<SearchTask> children = new ArrayList<>();
+            forEachFittingCandidate(remainingLength, start, path.length, remaining, index -> {
+                Candidate candidate = state.candidates.get(index);
+                int[] childRemaining = remaining.clone();
+                subtract(childRemaining, candidate.counts);
+                int[] childPath = new int[path.length + 1];
+                System.arraycopy(path, 0, childPath, 0, path.length);
+                childPath[path.length] = index;
+                if (remainingLength == candidate.length) {
+                    state.emit(childPath);
+                } else {
+                    children.add(new SearchTask(state, childRemaining, remainingLength - candidate.length,
+                        index, childPath));
+                }
+            });
+            invokeAll(children);
+        }
+
+        private void search(int[] counts, int length, int from, int[] stack, int depth) {
+            forEachFittingCandidate(length, from, depth, counts, index -> {
+                Candidate candidate = state.candidates.get(index);
+                stack[depth] = index;
+                if (length == candidate.length) {
+                    int[] found = new int[depth + 1];
+                    System.arraycopy(stack, 0, found, 0, depth + 1);
+                    state.emit(found);
+                } else {
+                    subtract(counts, candidate.counts);
+                    search(counts, length - candidate.length, index, stack, depth + 1);
+                    add(counts, candidate.counts);
+                }
+            });
+        }
+
+        /**
+         * Visits every candidate from the start index that fits in the remaining letters. Since candidates are
+         * ordered longest first, the walk stops as soon as the words left could no longer cover the remaining letters.
+         */
+        private void forEachFittingCandidate(int length, int from, int depth, int[] counts,
+                                             IntConsumer visitor) {
+            int wordsLeft = state.options.getMaxWords() - depth;
+            if (wordsLeft <= 0 || length < state.options.getMinWordLength()) {
+                return;
+            }
+            List<Candidate> candidates = state.candidates;
+            for (int index = from; index < candidates.size() && !state.finished; index++) {
+                Candidate candidate = candidates.get(index);
+                if ((long) candidate.length * wordsLeft < length) {
+                    return;
+                }
+                if (candidate.length <= length && fits(candidate.counts, counts)) {
+                    visitor.accept(index);
+                }
+            }
+        }
+
+        private static void subtract(int[] counts, int[] letters) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] -= letters[i];
+            }
+        }
+
+        private static void add(int[] counts, int[] letters) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += letters[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.wzk.service;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Limits applied to a {@link PhraseAnagramFinder} search.
+ */
+@Getter
+@Builder
+public class PhraseSearchOptions {
+    /** The most words a single phrase may be made up of. */
+    @Builder.Default
+    private final int maxWords = 3;
+    /** Dictionary words shorter than this are never used in a phrase. */
+    @Builder.Default
+    private final int minWordLength = 2;
+    /** The search stops once this many phrases have been produced. */
+    @Builder.Default
+    private final int maxResults = 1000;
+
+    public static PhraseSearchOptions defaults() {
+        return builder().build();
+    }
+}
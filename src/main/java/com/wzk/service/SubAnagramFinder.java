@@ -0,0 +1,81 @@
+package com.wzk.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.wzk.entity.Dictionary;
+import com.wzk.metrics.LatencyTimer;
+import com.wzk.metrics.Metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Uses a Dictionary to find every word that can be spelled from a set of letters, e.g. the words playable from a rack
+ * of tiles. The dictionary finds the words, see {@link Dictionary#getWordsSpelledFrom(String)}, and this keeps the
+ * longest of them.
+ */
+@Slf4j
+public class SubAnagramFinder {
+    public static final int DEFAULT_TOP_N = 100;
+    private static final LatencyTimer SUB_ANAGRAM_TIMER = Metrics.timer("find.sub");
+
+    private final Dictionary dictionary;
+    private final int defaultTopN;
+
+    public SubAnagramFinder(Dictionary dictionary) {
+        this(dictionary, DEFAULT_TOP_N);
+    }
+
+    public SubAnagramFinder(Dictionary dictionary, int defaultTopN) {
+        this.dictionary = dictionary;
+        this.defaultTopN = defaultTopN;
+    }
+
+    /**
+     * Finds the words that can be spelled from the letters using the finder's default limit.
+     * @param letters the letters available
+     * @return the words found grouped by length, longest first
+     */
+    public SortedMap<Integer, List<String>> findSubAnagrams(String letters) {
+        return findSubAnagrams(letters, defaultTopN);
+    }
+
+    /**
+     * Finds the words that can be spelled from the letters, each letter used at most as often as it appears.
+     * The longest words are kept first until topN words have been collected, words of the same length are
+     * ordered alphabetically. This method is case insensitive when the dictionary is.
+     * @param letters the letters available
+     * @param topN the most words to return
+     * @return the words found grouped by length, longest first
+     */
+    public SortedMap<Integer, List<String>> findSubAnagrams(String letters, int topN) {
+        String normalizedLetters = dictionary.isIgnoreCase() ? letters.toLowerCase(Locale.ROOT) : letters;
+        long startTime = SUB_ANAGRAM_TIMER.start();
+        TreeMap<Integer, List<String>> matchesByLength = new TreeMap<>();
+        for (String word : dictionary.getWordsSpelledFrom(normalizedLetters)) {
+            matchesByLength.computeIfAbsent(word.length(), length -> new ArrayList<>()).add(word);
+        }
+
+        SortedMap<Integer, List<String>> topWords = new TreeMap<>(Collections.reverseOrder());
+        int remaining = topN;
+        for (Map.Entry<Integer, List<String>> entry : matchesByLength.descendingMap().entrySet()) {
+            if (remaining <= 0) {
+                break;
+            }
+            List<String> words = entry.getValue();
+            words.sort(Comparator.naturalOrder());
+            List<String> kept = words.size() > remaining ? new ArrayList<>(words.subList(0, remaining)) : words;
+            topWords.put(entry.getKey(), kept);
+            remaining -= kept.size();
+        }
+        SUB_ANAGRAM_TIMER.stop(startTime);
+        log.debug("Found {} words spelled from '{}'", topN - remaining, letters);
+        return topWords;
+    }
+}
@@ -0,0 +1,61 @@
+package com.wzk.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CopyOnWriteWordStoreTest {
+
+    @Test
+    void testAddRemoveAndLookUp() {
+        CopyOnWriteWordStore store = new CopyOnWriteWordStore();
+        assertTrue(store.add("evil"));
+        assertTrue(store.add("live"));
+        assertTrue(store.add("tab"));
+        assertFalse(store.add("live"));
+        assertEquals(3, store.size());
+        assertEquals(2, store.groupCount());
+        assertTrue(store.contains("evil"));
+
+        List<String> anagrams = store.anagramsOf(LetterSignature.of("vile"));
+        anagrams.sort(null);
+        assertEquals(Arrays.asList("evil", "live"), anagrams);
+        assertEquals(Arrays.asList("tab"), store.wordsOfLength(3));
+
+        assertTrue(store.remove("evil"));
+        assertFalse(store.remove("evil"));
+        assertTrue(store.remove("live"));
+        assertFalse(store.contains("live"));
+        assertEquals(1, store.size());
+        assertEquals(1, store.groupCount());
+    }
+
+    @Test
+    void testReadersKeepTheVersionTheyStartedWith() {
+        CopyOnWriteWordStore store = new CopyOnWriteWordStore();
+        store.add("ant");
+        store.add("tan");
+        Collection<AnagramGroup> groups = store.anagramGroups();
+
+        store.add("nat");
+        store.add("bat");
+        store.remove("ant");
+
+        assertEquals(1, groups.size());
+        AnagramGroup group = groups.iterator().next();
+        List<String> words = group.getWords();
+        words.sort(null);
+        assertEquals(Arrays.asList("ant", "tan"), words);
+        assertEquals(2, store.anagramGroups().size());
+    }
+
+    @Test
+    void testConcurrentChangesAndLookUpsMatchAModel() throws Exception {
+        WordStoreModelCheck.check(new CopyOnWriteWordStore(), 20);
+    }
+}
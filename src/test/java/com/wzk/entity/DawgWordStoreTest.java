@@ -0,0 +1,136 @@
+package com.wzk.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class DawgWordStoreTest {
+
+    private static DawgWordStore load(String... words) {
+        DawgWordStore store = new DawgWordStore();
+        store.addAll(Arrays.asList(words));
+        store.loadFinished();
+        return store;
+    }
+
+    private static List<String> sorted(List<String> words) {
+        List<String> copy = new ArrayList<>(words);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    @Test
+    void testLooksUpAndWalksTheGraph() {
+        DawgWordStore store = load("tab", "bat", "cat", "act", "tac", "cats", "scat", "at", "evil", "live", "vile",
+            "bat");
+        assertEquals(11, store.size());
+        assertEquals(5, store.groupCount());
+        assertTrue(store.contains("cats"));
+        assertFalse(store.contains("ca"));
+        assertFalse(store.contains("catss"));
+
+        assertEquals(Arrays.asList("act", "cat", "tac"), sorted(store.anagramsOf(LetterSignature.of("cta"))));
+        assertEquals(Arrays.asList("cat", "cats"), store.wordsWithPrefix("ca", 10));
+        assertEquals(Arrays.asList("cat"), store.wordsWithPrefix("ca", 1));
+        assertEquals(Arrays.asList("bat", "cat"), store.wordsMatching("?at", '?'));
+        assertEquals(Arrays.asList("cats", "evil", "live", "scat", "vile"), sorted(store.wordsOfLength(4)));
+        assertEquals(Arrays.asList("act", "at", "cat", "tac"), sorted(store.wordsSpelledFrom("tcax")));
+        assertEquals(Arrays.asList("cats", "scat"), sorted(store.anagramsWithBlanks("ts", 2)));
+        assertEquals(5, store.anagramGroups().size());
+    }
+
+    @Test
+    void testChangesAfterLoadingAreOverlaid() {
+        DawgWordStore store = load("tab", "bat", "cat");
+        assertEquals(2, store.groupCount());
+        assertTrue(store.remove("bat"));
+        assertFalse(store.remove("bat"));
+        assertEquals(2, store.groupCount());
+        assertTrue(store.add("abt"));
+        assertFalse(store.add("abt"));
+        assertEquals(2, store.groupCount());
+        assertEquals(Arrays.asList("abt", "tab"), sorted(store.anagramsOf(LetterSignature.of("bat"))));
+        assertEquals(Arrays.asList("abt", "cat"), sorted(store.wordsMatching("??t", '?')));
+        assertEquals(Arrays.asList("abt", "cat", "tab"), store.wordsWithPrefix("", 5));
+        assertFalse(store.contains("bat"));
+        assertTrue(store.add("bat"));
+        assertTrue(store.contains("bat"));
+        assertEquals(4, store.size());
+        assertEquals(2, store.groupCount());
+
+        assertTrue(store.remove("cat"));
+        assertEquals(1, store.groupCount());
+        assertTrue(store.add("act"));
+        assertTrue(store.add("cat"));
+        assertEquals(2, store.groupCount());
+        assertTrue(store.add("dog"));
+        assertTrue(store.add("god"));
+        assertEquals(3, store.groupCount());
+        assertTrue(store.remove("dog"));
+        assertTrue(store.remove("god"));
+        assertEquals(2, store.groupCount());
+        assertTrue(store.remove("tab"));
+        assertTrue(store.remove("bat"));
+        assertTrue(store.remove("abt"));
+        assertEquals(1, store.groupCount());
+        assertEquals(store.anagramGroups().size(), store.groupCount());
+    }
+
+    @Test
+    void testAgreesWithHeapStoreOnRandomWords() {
+        Random random = new Random(7);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 1 + random.nextInt(7);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(6)));
+            }
+            words.add(word.toString());
+        }
+        DawgWordStore dawg = new DawgWordStore();
+        dawg.addAll(words);
+        dawg.loadFinished();
+        HeapWordStore heap = new HeapWordStore();
+        heap.addAll(words);
+
+        assertEquals(heap.size(), dawg.size());
+        assertEquals(heap.groupCount(), dawg.groupCount());
+        for (String word : words.subList(0, 200)) {
+            assertTrue(dawg.contains(word));
+            assertEquals(sorted(heap.anagramsOf(LetterSignature.of(word))),
+                sorted(dawg.anagramsOf(LetterSignature.of(word))), word);
+            assertEquals(sorted(heap.wordsSpelledFrom(word)), sorted(dawg.wordsSpelledFrom(word)), word);
+            assertEquals(sorted(heap.anagramsWithBlanks(word.substring(1), 1)),
+                sorted(dawg.anagramsWithBlanks(word.substring(1), 1)), word);
+            String prefix = word.substring(0, 1);
+            assertEquals(heap.wordsWithPrefix(prefix, 20), dawg.wordsWithPrefix(prefix, 20));
+        }
+        assertEquals(sorted(heap.wordsMatching("a?c?", '?')), dawg.wordsMatching("a?c?", '?'));
+
+        for (String word : words.subList(0, 300)) {
+            heap.remove(word);
+            dawg.remove(word);
+            heap.add(word + "f");
+            dawg.add(word + "f");
+        }
+        assertEquals(heap.groupCount(), dawg.groupCount());
+        for (String word : words.subList(300, 500)) {
+            String letters = word.substring(1);
+            for (String after : Arrays.asList("", word, letters)) {
+                assertEquals(heap.anagramsWithBlanks(letters, 1, after, 3),
+                    dawg.anagramsWithBlanks(letters, 1, after, 3), word + " after " + after);
+                assertEquals(heap.anagramsWithBlanks(letters, 2, after, 1000),
+                    sorted(dawg.anagramsWithBlanks(letters, 2)).stream().filter(found -> found.compareTo(after) > 0)
+                        .collect(Collectors.toList()), word + " after " + after);
+            }
+        }
+    }
+}
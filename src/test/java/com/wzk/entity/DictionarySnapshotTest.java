@@ -0,0 +1,94 @@
+package com.wzk.entity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DictionarySnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Dictionary openSnapshotOfTestWords() throws IOException {
+        InputStream fileStream = DictionarySnapshotTest.class.getClassLoader()
+            .getResourceAsStream("test-word-file.txt");
+        Dictionary loaded = new Dictionary(fileStream, true);
+        Path snapshotFile = tempDir.resolve("words.snapshot");
+        DictionarySnapshot.write(loaded, snapshotFile);
+        return new Dictionary(snapshotFile);
+    }
+
+    @Test
+    void testSnapshotHasTheSameWordsAsTheLoadedDictionary() throws IOException {
+        InputStream fileStream = DictionarySnapshotTest.class.getClassLoader()
+            .getResourceAsStream("test-word-file.txt");
+        Dictionary loaded = new Dictionary(fileStream, true);
+        Dictionary snapshot = openSnapshotOfTestWords();
+
+        assertEquals(loaded.getSize(), snapshot.getSize());
+        assertTrue(snapshot.isIgnoreCase());
+        for (int length = 0; length < 10; length++) {
+            List<String> expected = loaded.getWordsOfLength(length);
+            List<String> actual = snapshot.getWordsOfLength(length);
+            Collections.sort(expected);
+            Collections.sort(actual);
+            assertEquals(expected, actual);
+        }
+        assertEquals(loaded.getAnagramGroups().size(), snapshot.getAnagramGroups().size());
+    }
+
+    @Test
+    void testSnapshotFindsWordsAndAnagramGroups() throws IOException {
+        Dictionary snapshot = openSnapshotOfTestWords();
+
+        assertTrue(snapshot.containsWord("Evil"));
+        assertFalse(snapshot.containsWord("vile"));
+        List<String> group = snapshot.getAnagramGroup("tna");
+        Collections.sort(group);
+        assertEquals(Arrays.asList("ant", "tan"), group);
+        assertTrue(snapshot.getAnagramGroup("xyz").isEmpty());
+    }
+
+    @Test
+    void testChangesToASnapshotDictionaryAreKeptAlongsideIt() throws IOException {
+        Dictionary snapshot = openSnapshotOfTestWords();
+        int size = snapshot.getSize();
+
+        assertTrue(snapshot.addWord("nat"));
+        assertTrue(snapshot.removeWord("tan"));
+        assertFalse(snapshot.removeWord("tan"));
+        assertEquals(size, snapshot.getSize());
+        List<String> group = snapshot.getAnagramGroup("ant");
+        Collections.sort(group);
+        assertEquals(Arrays.asList("ant", "nat"), group);
+        assertFalse(snapshot.getWordsOfLength(3).contains("tan"));
+
+        assertTrue(snapshot.addWord("tan"));
+        assertTrue(snapshot.containsWord("tan"));
+        assertEquals(size + 1, snapshot.getSize());
+
+        List<String> groupedWords = new ArrayList<>();
+        snapshot.getAnagramGroups().forEach(anagramGroup -> groupedWords.addAll(anagramGroup.getWords()));
+        assertEquals(snapshot.getSize(), groupedWords.size());
+    }
+
+    @Test
+    void testOpeningAFileThatIsNotASnapshotFails() throws IOException {
+        Path notASnapshot = tempDir.resolve("words.txt");
+        Files.write(notASnapshot, Arrays.asList("ant", "tan", "bat", "tab", "cat", "tac", "evil", "live"));
+        assertThrows(IOException.class, () -> new Dictionary(notASnapshot));
+    }
+}
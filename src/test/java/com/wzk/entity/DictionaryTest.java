@@ -5,9 +5,17 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class DictionaryTest {
 
@@ -87,4 +95,94 @@ class DictionaryTest {
         assertEquals(3, caseSensitiveDict.getSize());
         assertFalse(caseSensitiveDict.containsWord("matE"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetWordsOfLengthOnlyReturnsThatLength() {
+        InputStream fileStream = DictionaryTest.class.getClassLoader().getResourceAsStream("test-word-file.txt");
+        Dictionary dictionary = new Dictionary(fileStream, true);
+        List<String> fourLetterWords = dictionary.getWordsOfLength(4);
+        Collections.sort(fourLetterWords);
+        assertEquals(Arrays.asList("9_-.", "_-9.", "evil", "live"), fourLetterWords);
+        assertEquals(Collections.emptyList(), dictionary.getWordsOfLength(42));
+    }
+
+    @Test
+    void testGetWordsOfLengthReflectsAddAndRemove() {
+        Dictionary dictionary = new Dictionary(null, true);
+        dictionary.addWord("Word");
+        dictionary.addWord("ward");
+        assertEquals(2, dictionary.getWordsOfLength(4).size());
+        dictionary.removeWord("WORD");
+        assertEquals(Arrays.asList("ward"), dictionary.getWordsOfLength(4));
+        assertEquals(1, dictionary.getSize());
+    }
+
+    @Test
+    void testLargeWordFileIsLoadedInChunks(@TempDir Path tempDir) throws IOException {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            contents.append("Word").append(i).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        contents.append("word0\n\nw\u00f6rd\n");
+        Path wordFile = tempDir.resolve("words.txt");
+        Files.write(wordFile, contents.toString().getBytes(StandardCharsets.UTF_8));
+
+        Dictionary dictionary = Dictionary.fromWordFile(wordFile, true);
+        assertEquals(200_001, dictionary.getSize());
+        assertTrue(dictionary.containsWord("word199999"));
+        assertTrue(dictionary.containsWord("w\u00f6rd"));
+        assertFalse(dictionary.containsWord(""));
+    }
+
+    @Test
+    void testSnapshotIsolatedDictionaryLoadsAndChanges() {
+        InputStream fileStream = DictionaryTest.class.getClassLoader().getResourceAsStream("test-word-file.txt");
+        Dictionary dictionary = new Dictionary(fileStream, true, true);
+        Dictionary heapDictionary = new Dictionary(
+            DictionaryTest.class.getClassLoader().getResourceAsStream("test-word-file.txt"), true);
+        assertEquals(heapDictionary.getSize(), dictionary.getSize());
+        assertEquals(heapDictionary.getAnagramGroups().size(), dictionary.getAnagramGroups().size());
+        assertTrue(dictionary.containsWord("LIVE"));
+        assertTrue(dictionary.addWord("vile"));
+        assertEquals(3, dictionary.getAnagramGroup("evil").size());
+        assertTrue(dictionary.removeWord("vile"));
+        assertFalse(dictionary.containsWord("vile"));
+    }
+
+    @Test
+    void testOffHeapDictionaryLoadsAndChanges() {
+        InputStream fileStream = DictionaryTest.class.getClassLoader().getResourceAsStream("test-word-file.txt");
+        Dictionary dictionary = new Dictionary(fileStream, true, Dictionary.Storage.OFF_HEAP);
+        Dictionary heapDictionary = new Dictionary(
+            DictionaryTest.class.getClassLoader().getResourceAsStream("test-word-file.txt"), true);
+        assertEquals(heapDictionary.getSize(), dictionary.getSize());
+        assertEquals(heapDictionary.getAnagramGroups().size(), dictionary.getAnagramGroups().size());
+        assertTrue(dictionary.getOffHeapBytes() > 0);
+        assertEquals(0, heapDictionary.getOffHeapBytes());
+        assertTrue(dictionary.containsWord("LIVE"));
+        assertTrue(dictionary.addWord("vile"));
+        assertEquals(3, dictionary.getAnagramGroup("evil").size());
+        assertTrue(dictionary.removeWord("vile"));
+        assertFalse(dictionary.containsWord("vile"));
+    }
+
+    @Test
+    void testDawgDictionaryAnswersPrefixAndPatternQueries() {
+        InputStream fileStream = DictionaryTest.class.getClassLoader().getResourceAsStream("test-word-file.txt");
+        Dictionary dictionary = new Dictionary(fileStream, true, Dictionary.Storage.DAWG);
+        Dictionary heapDictionary = new Dictionary(
+            DictionaryTest.class.getClassLoader().getResourceAsStream("test-word-file.txt"), true);
+        assertEquals(heapDictionary.getSize(), dictionary.getSize());
+        assertTrue(dictionary.containsWord("LIVE"));
+        List<String> batAnagrams = dictionary.getAnagramGroup("bat");
+        Collections.sort(batAnagrams);
+        assertEquals(Arrays.asList("bat", "tab"), batAnagrams);
+        assertEquals(Arrays.asList("car", "cat"), dictionary.getWordsWithPrefix("CA", 10));
+        assertEquals(heapDictionary.getWordsWithPrefix("ca", 10), dictionary.getWordsWithPrefix("ca", 10));
+        assertEquals(Arrays.asList("bat", "car", "cat", "tab", "tac", "tan"), dictionary.getWordsMatching("?a?"));
+        assertTrue(dictionary.addWord("vile"));
+        assertEquals(3, dictionary.getAnagramGroup("evil").size());
+        assertTrue(dictionary.removeWord("vile"));
+        assertFalse(dictionary.containsWord("vile"));
+    }
+}
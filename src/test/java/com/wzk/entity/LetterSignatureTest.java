@@ -0,0 +1,87 @@
+package com.wzk.entity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.Test;
+
+class LetterSignatureTest {
+
+    private static String sorted(String word) {
+        char[] charArray = word.toCharArray();
+        Arrays.sort(charArray);
+        return String.valueOf(charArray);
+    }
+
+    private static void assertAgreesWithSortedStrings(List<String> words) {
+        for (String first : words) {
+            LetterSignature signature = LetterSignature.of(first);
+            for (String second : words) {
+                boolean expected = sorted(first).equals(sorted(second));
+                LetterSignature other = LetterSignature.of(second);
+                assertEquals(expected, signature.equals(other), first + " vs " + second);
+                assertEquals(expected, signature.matches(second), first + " matches " + second);
+                if (expected) {
+                    assertEquals(signature.hashCode(), other.hashCode());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSignaturesMatchSortedStringsForTestWordFile() {
+        InputStream fileStream = LetterSignatureTest.class.getClassLoader().getResourceAsStream("test-word-file.txt");
+        List<String> words = new ArrayList<>();
+        try (Scanner scanner = new Scanner(fileStream)) {
+            while (scanner.hasNextLine()) {
+                words.add(scanner.nextLine());
+            }
+        }
+        assertAgreesWithSortedStrings(words);
+    }
+
+    @Test
+    void testSignaturesMatchSortedStringsForRandomWords() {
+        Random random = new Random(42);
+        List<String> words = new ArrayList<>();
+        String alphabet = "abcdeABC-z";
+        for (int i = 0; i < 400; i++) {
+            char[] letters = new char[1 + random.nextInt(6)];
+            for (int j = 0; j < letters.length; j++) {
+                letters[j] = alphabet.charAt(random.nextInt(alphabet.length()));
+            }
+            words.add(String.valueOf(letters));
+        }
+        assertAgreesWithSortedStrings(words);
+    }
+
+    @Test
+    void testLongWordsFallBackWhenTheProductOverflows() {
+        String longWord = "zzzzzzzzzzzzzzzz";
+        assertEquals(LetterSignature.NOT_ENCODABLE, LetterSignature.primeProduct(longWord));
+        assertAgreesWithSortedStrings(Arrays.asList(longWord, "zzzzzzzzzzzzzzzy", "yzzzzzzzzzzzzzzz",
+            "uncharacteristically", "characteristicallyun", "uncharacteristicallz"));
+    }
+
+    @Test
+    void testEmptyWordHasASignature() {
+        assertEquals(LetterSignature.of(""), LetterSignature.of(""));
+        assertNotEquals(LetterSignature.of(""), LetterSignature.of("a"));
+    }
+
+    @Test
+    void testSortedCharactersAreRecoveredFromEitherEncoding() {
+        List<String> words = Arrays.asList("", "a", "evil", "mississippi", "zyzzyva", "Evil!", "90.,",
+            "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaz");
+        for (String word : words) {
+            assertEquals(sorted(word), LetterSignature.of(word).getSortedCharacters(), word);
+        }
+    }
+}
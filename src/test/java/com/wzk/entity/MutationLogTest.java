@@ -0,0 +1,136 @@
+package com.wzk.entity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MutationLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testLoggedChangesAreReplayedIntoANewDictionary() throws IOException {
+        Path walFile = tempDir.resolve("dictionary.wal");
+        Dictionary dictionary = new Dictionary(null, true);
+        try (MutationLog mutationLog = MutationLog.open(walFile, MutationLog.Durability.SYNC, 100)) {
+            dictionary.setMutationLog(mutationLog);
+            dictionary.addWord("Listen");
+            dictionary.addWord("silent");
+            dictionary.addWord("enlist");
+            dictionary.removeWord("silent");
+            assertFalse(dictionary.addWord("listen"));
+        }
+
+        Dictionary restarted = new Dictionary(null, true);
+        assertEquals(4, MutationLog.replay(walFile, restarted));
+        assertEquals(2, restarted.getSize());
+        assertTrue(restarted.containsWord("listen"));
+        assertFalse(restarted.containsWord("silent"));
+    }
+
+    @Test
+    void testChangeTheLogRefusesIsNotApplied() throws IOException {
+        Dictionary dictionary = new Dictionary(null, true);
+        List<String> announced = new ArrayList<>();
+        dictionary.addMutationListener((word, added) -> announced.add(word));
+        MutationLog mutationLog = MutationLog.open(tempDir.resolve("dictionary.wal"), MutationLog.Durability.SYNC, 100);
+        dictionary.setMutationLog(mutationLog);
+        assertTrue(dictionary.addWord("ant"));
+        mutationLog.close();
+
+        assertThrows(UncheckedIOException.class, () -> dictionary.addWord("tan"));
+        assertThrows(UncheckedIOException.class, () -> dictionary.removeWord("ant"));
+        assertFalse(dictionary.containsWord("tan"));
+        assertTrue(dictionary.containsWord("ant"));
+        assertEquals(Arrays.asList("ant"), announced);
+    }
+
+    @Test
+    void testTornRecordIsCutOffOnReplay() throws IOException {
+        Path walFile = tempDir.resolve("dictionary.wal");
+        Dictionary dictionary = new Dictionary(null, true);
+        try (MutationLog mutationLog = MutationLog.open(walFile, MutationLog.Durability.SYNC, 100)) {
+            dictionary.setMutationLog(mutationLog);
+            dictionary.addWord("ant");
+            dictionary.addWord("tan");
+        }
+        try (FileChannel channel = FileChannel.open(walFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+
+        Dictionary restarted = new Dictionary(null, true);
+        assertEquals(1, MutationLog.replay(walFile, restarted));
+        assertTrue(restarted.containsWord("ant"));
+        assertFalse(restarted.containsWord("tan"));
+        try (MutationLog mutationLog = MutationLog.open(walFile, MutationLog.Durability.SYNC, 100)) {
+            restarted.setMutationLog(mutationLog);
+            restarted.addWord("nat");
+        }
+        Dictionary restartedAgain = new Dictionary(null, true);
+        assertEquals(2, MutationLog.replay(walFile, restartedAgain));
+        assertTrue(restartedAgain.containsWord("nat"));
+    }
+
+    @Test
+    void testCheckpointCompactsTheLogIntoASnapshot() throws IOException {
+        Path walFile = tempDir.resolve("dictionary.wal");
+        Path snapshotFile = tempDir.resolve("dictionary.snapshot");
+        Dictionary dictionary = new Dictionary(null, true);
+        try (MutationLog mutationLog = MutationLog.open(walFile, MutationLog.Durability.GROUP, 100)) {
+            dictionary.setMutationLog(mutationLog);
+            dictionary.addWord("evil");
+            dictionary.addWord("live");
+            dictionary.checkpoint(snapshotFile);
+            assertEquals(0, Files.size(walFile));
+            assertFalse(Files.exists(MutationLog.compactingFileOf(walFile)));
+            dictionary.removeWord("evil");
+        }
+
+        Dictionary restarted = new Dictionary(snapshotFile);
+        assertEquals(1, MutationLog.replay(walFile, restarted));
+        assertEquals(1, restarted.getSize());
+        assertTrue(restarted.containsWord("live"));
+    }
+
+    @Test
+    void testConcurrentChangesShareGroupCommits() throws Exception {
+        Path walFile = tempDir.resolve("dictionary.wal");
+        Dictionary dictionary = new Dictionary(null, true);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (MutationLog mutationLog = MutationLog.open(walFile, MutationLog.Durability.GROUP, 100)) {
+            dictionary.setMutationLog(mutationLog);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String word = "word" + i;
+                results.add(executor.submit(() -> dictionary.addWord(word)));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Dictionary restarted = new Dictionary(null, true);
+        assertEquals(200, MutationLog.replay(walFile, restarted));
+        assertEquals(200, restarted.getSize());
+    }
+}
@@ -0,0 +1,78 @@
+package com.wzk.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class OffHeapWordStoreTest {
+
+    @Test
+    void testAddRemoveAndLookUp() {
+        OffHeapWordStore store = new OffHeapWordStore();
+        assertTrue(store.add("evil"));
+        assertTrue(store.add("live"));
+        assertTrue(store.add("vile"));
+        assertTrue(store.add("tab"));
+        assertTrue(store.add("na\u00efve"));
+        assertFalse(store.add("live"));
+        assertEquals(5, store.size());
+        assertEquals(3, store.groupCount());
+        assertTrue(store.contains("evil"));
+        assertTrue(store.contains("na\u00efve"));
+        assertFalse(store.contains("naive"));
+
+        List<String> anagrams = store.anagramsOf(LetterSignature.of("veil"));
+        anagrams.sort(null);
+        assertEquals(Arrays.asList("evil", "live", "vile"), anagrams);
+        assertEquals(Arrays.asList("tab"), store.wordsOfLength(3));
+        assertEquals(Arrays.asList("na\u00efve"), store.wordsOfLength(5));
+
+        assertTrue(store.remove("live"));
+        assertFalse(store.remove("live"));
+        anagrams = store.anagramsOf(LetterSignature.of("veil"));
+        anagrams.sort(null);
+        assertEquals(Arrays.asList("evil", "vile"), anagrams);
+        assertTrue(store.remove("vile"));
+        assertTrue(store.remove("evil"));
+        assertFalse(store.contains("evil"));
+        assertEquals(Arrays.asList(), store.anagramsOf(LetterSignature.of("veil")));
+        assertEquals(2, store.size());
+        assertEquals(2, store.groupCount());
+        assertTrue(store.deadBytes() > 0);
+        assertTrue(store.add("evil"));
+        assertEquals(Arrays.asList("evil"), store.anagramsOf(LetterSignature.of("veil")));
+    }
+
+    @Test
+    void testGrowsAndReportsMemory() {
+        OffHeapWordStore store = new OffHeapWordStore();
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            words.add("word" + i);
+        }
+        store.addAll(words);
+        for (int i = 0; i < 100_000; i += 2) {
+            assertTrue(store.remove("word" + i));
+        }
+        assertEquals(50_000, store.size());
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i % 2 == 1, store.contains("word" + i));
+        }
+        int wordsInGroups = 0;
+        for (AnagramGroup group : store.anagramGroups()) {
+            wordsInGroups += group.size();
+        }
+        assertEquals(50_000, wordsInGroups);
+        assertTrue(store.offHeapBytes() >= 100_000 * 9);
+        assertTrue(store.estimatedHeapBytes() < 50_000 * 48);
+    }
+
+    @Test
+    void testConcurrentChangesAndLookUpsMatchAModel() throws Exception {
+        WordStoreModelCheck.check(new OffHeapWordStore(), 23);
+    }
+}
@@ -0,0 +1,126 @@
+package com.wzk.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs threads adding, removing and looking up the same words of a {@link WordStore} at once and checks the store
+ * against a {@link HashSet} model. The words are the anagrams of a thousand letter sets, so every thread changes
+ * the same groups, removed slots are reused by later adds and the tables grow while words are being removed. Changes
+ * to one word are serialized by a lock striped over the words, so the model can check every change's result, while
+ * changes to different words of a group run at once.
+ */
+final class WordStoreModelCheck {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 40_000;
+    private static final int LOCK_STRIPES = 64;
+
+    private WordStoreModelCheck() {
+    }
+
+    static void check(WordStore store, long seed) throws Exception {
+        List<String> words = anagramsOfLetterSets(new Random(seed));
+        Set<String> model = new HashSet<>();
+        Object[] locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            Random random = new Random(seed + thread + 1);
+            futures.add(threads.submit(() -> {
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    String word = words.get(random.nextInt(words.size()));
+                    int operation = random.nextInt(10);
+                    if (operation < 2) {
+                        LetterSignature signature = LetterSignature.of(word);
+                        for (String anagram : store.anagramsOf(signature)) {
+                            assertTrue(signature.matches(anagram), anagram);
+                        }
+                        continue;
+                    }
+                    synchronized (locks[Math.floorMod(word.hashCode(), LOCK_STRIPES)]) {
+                        if (operation < 7) {
+                            boolean expected;
+                            synchronized (model) {
+                                expected = model.add(word);
+                            }
+                            assertEquals(expected, store.add(word), word);
+                        } else {
+                            boolean expected;
+                            synchronized (model) {
+                                expected = model.remove(word);
+                            }
+                            assertEquals(expected, store.remove(word), word);
+                        }
+                        assertEquals(operation < 7, store.contains(word), word);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(model.size(), store.size());
+        Map<LetterSignature, List<String>> modelGroups = new HashMap<>();
+        for (String word : words) {
+            assertEquals(model.contains(word), store.contains(word), word);
+            if (model.contains(word)) {
+                modelGroups.computeIfAbsent(LetterSignature.of(word), signature -> new ArrayList<>()).add(word);
+            }
+        }
+        for (Map.Entry<LetterSignature, List<String>> group : modelGroups.entrySet()) {
+            List<String> anagrams = store.anagramsOf(group.getKey());
+            Collections.sort(anagrams);
+            Collections.sort(group.getValue());
+            assertEquals(group.getValue(), anagrams);
+        }
+        assertEquals(modelGroups.size(), store.groupCount());
+        int wordsInGroups = 0;
+        for (AnagramGroup group : store.anagramGroups()) {
+            wordsInGroups += group.size();
+        }
+        assertEquals(model.size(), wordsInGroups);
+    }
+
+    /**
+     * @return up to a dozen distinct anagrams of each of a thousand random letter sets
+     */
+    private static List<String> anagramsOfLetterSets(Random random) {
+        Set<String> words = new HashSet<>();
+        for (int set = 0; set < 1000; set++) {
+            char[] letters = new char[4 + random.nextInt(4)];
+            for (int i = 0; i < letters.length; i++) {
+                letters[i] = (char) ('a' + random.nextInt(10));
+            }
+            for (int anagram = 0; anagram < 12; anagram++) {
+                for (int i = letters.length - 1; i > 0; i--) {
+                    int other = random.nextInt(i + 1);
+                    char letter = letters[i];
+                    letters[i] = letters[other];
+                    letters[other] = letter;
+                }
+                words.add(new String(letters));
+            }
+        }
+        List<String> sorted = new ArrayList<>(words);
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
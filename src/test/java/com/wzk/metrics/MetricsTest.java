@@ -0,0 +1,57 @@
+package com.wzk.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+class MetricsTest {
+
+    @Test
+    void testTimerRecordsPercentilesInMicros() {
+        LatencyTimer timer = Metrics.timer("test.percentiles");
+        for (int i = 1; i <= 1000; i++) {
+            timer.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        assertEquals(1000, timer.getCount());
+        assertEquals(500, timer.getP50Micros(), 1);
+        assertEquals(990, timer.getP99Micros(), 1);
+        assertEquals(1000, timer.getMaxMicros(), 1);
+        assertSame(timer, Metrics.timer("test.percentiles"));
+    }
+
+    @Test
+    void testReportListsEveryMetric() {
+        Metrics.timer("test.report").record(TimeUnit.MILLISECONDS.toNanos(2));
+        Counter counter = Metrics.counter("test.report.counter");
+        counter.increment();
+        counter.increment();
+        Metrics.gauge("test.report.gauge", () -> 42);
+
+        String report = Metrics.report();
+        assertTrue(report.contains("test.report count=1 mean=2000"));
+        assertTrue(report.contains("test.report.counter 2\n"));
+        assertTrue(report.contains("test.report.gauge 42\n"));
+    }
+
+    @Test
+    void testMetricsAreReadableOverJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Metrics.counter("test.jmx.counter").increment();
+        AtomicLong value = new AtomicLong(7);
+        Metrics.gauge("test.jmx.gauge", value::get);
+
+        assertEquals(1L, server.getAttribute(
+            new ObjectName("com.wzk.anagram:type=Counter,name=\"test.jmx.counter\""), "Count"));
+        ObjectName gauge = new ObjectName("com.wzk.anagram:type=Gauge,name=\"test.jmx.gauge\"");
+        assertEquals(7L, server.getAttribute(gauge, "Value"));
+        value.set(8);
+        assertEquals(8L, server.getAttribute(gauge, "Value"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.wzk.network;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.wzk.metrics.Metrics;
+
+class AccessLogTest {
+
+    @Test
+    void testEntriesAreWrittenOnClose() throws IOException {
+        StringWriter output = new StringWriter();
+        AccessLog accessLog = AccessLog.to(output, 16);
+        accessLog.record("127.0.0.1:1234", "p", TimeUnit.MICROSECONDS.toNanos(42));
+        accessLog.record("127.0.0.1:1234", "evil", TimeUnit.MICROSECONDS.toNanos(7));
+        accessLog.close();
+
+        String[] lines = output.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].endsWith(" 127.0.0.1:1234 42us p"));
+        assertTrue(lines[1].endsWith(" 127.0.0.1:1234 7us evil"));
+    }
+
+    @Test
+    void testEntriesAreDroppedRatherThanBlockingWhenTheQueueIsFull() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Writer stalledDisk = new StringWriter() {
+            @Override
+            public void write(String entry) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(entry);
+            }
+        };
+        AccessLog accessLog = AccessLog.to(stalledDisk, 2);
+        long droppedBefore = Metrics.counter("accesslog.dropped").getCount();
+        accessLog.record("client", "first", 0);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            accessLog.record("client", "request " + i, 0);
+        }
+        assertEquals(8, Metrics.counter("accesslog.dropped").getCount() - droppedBefore);
+        release.countDown();
+        accessLog.close();
+    }
+}
@@ -0,0 +1,171 @@
+package com.wzk.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.wzk.entity.Dictionary;
+import com.wzk.network.BinaryProtocol.Frame;
+import com.wzk.service.AnagramFinder;
+
+class BinarySocketClientTest {
+
+    private static Dictionary loadDictionary() {
+        InputStream fileStream = BinarySocketClientTest.class.getClassLoader()
+            .getResourceAsStream("test-word-file.txt");
+        return new Dictionary(fileStream, true);
+    }
+
+    private static void assertServesBinaryRequests(int port) throws Exception {
+        try (BinarySocketClient client = new BinarySocketClient("localhost", port)) {
+            client.connect();
+            List<CompletableFuture<List<String>>> pipelined = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                pipelined.add(client.findAnagrams(i % 2 == 0 ? "bat" : "evil"));
+            }
+            for (int i = 0; i < pipelined.size(); i++) {
+                assertEquals(Collections.singletonList(i % 2 == 0 ? "tab" : "live"), pipelined.get(i).get());
+            }
+
+            assertTrue(client.addWord("Stab").get());
+            assertFalse(client.addWord("stab").get());
+            assertTrue(client.containsWord("STAB").get());
+            assertTrue(client.removeWord("stab").get());
+            assertFalse(client.containsWord("stab").get());
+
+            Map<String, List<String>> batch = client.findAnagramsBatch(Arrays.asList("ant", "refuge")).get();
+            List<String> antAnagrams = batch.get("ant");
+            Collections.sort(antAnagrams);
+            assertEquals(Arrays.asList("tan"), antAnagrams);
+            assertEquals(Collections.emptyList(), batch.get("refuge"));
+
+            assertEquals(Collections.singletonList("evil"), client.findAnagramsPage("vile", "", 1).get());
+            assertEquals(Collections.singletonList("live"), client.findAnagramsPage("vile", "evil", 1).get());
+            assertEquals(Collections.emptyList(), client.findAnagramsPage("vile", "live", 1).get());
+
+            String stats = client.stats().get();
+            assertTrue(stats.contains("find count="));
+            assertTrue(stats.contains("connections.accepted "));
+        }
+    }
+
+    @Test
+    void testBinaryProtocolOnSocketServer() throws Exception {
+        Dictionary dictionary = loadDictionary();
+        SocketServer server = new SocketServer(new AnagramFinder(dictionary), dictionary, 0);
+        server.startServer();
+        try {
+            assertServesBinaryRequests(server.getLocalPort());
+        } finally {
+            server.stopServer();
+        }
+    }
+
+    @Test
+    void testBinaryProtocolOnNioSocketServer() throws Exception {
+        Dictionary dictionary = loadDictionary();
+        NioSocketServer server = new NioSocketServer(new AnagramFinder(dictionary), dictionary, 0, 1);
+        server.startServer();
+        try {
+            assertServesBinaryRequests(server.getLocalPort());
+        } finally {
+            server.stopServer();
+        }
+    }
+
+    @Test
+    void testFramesPipelinedWithTheUpgradeRequestAreServed() throws Exception {
+        Dictionary dictionary = loadDictionary();
+        SocketServer server = new SocketServer(new AnagramFinder(dictionary), dictionary, 0);
+        server.startServer();
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            socket.setSoTimeout(10000);
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            request.write((BinaryProtocol.UPGRADE_REQUEST + "\n").getBytes(Charset.defaultCharset()));
+            DataOutputStream frames = new DataOutputStream(request);
+            BinaryProtocol.writeFrame(frames, new Frame(BinaryProtocol.FIND, 1, BinaryProtocol.encodeWord("bat")));
+            BinaryProtocol.writeFrame(frames, new Frame(BinaryProtocol.FIND, 2, BinaryProtocol.encodeWord("evil")));
+            socket.getOutputStream().write(request.toByteArray());
+            socket.getOutputStream().flush();
+
+            DataInputStream input = new DataInputStream(socket.getInputStream());
+            int sentinels = 0;
+            while (sentinels < 2) {
+                // skip the menu and the acknowledgement, each ends with a sentinel line
+                StringBuilder line = new StringBuilder();
+                int value;
+                while ((value = input.read()) != '\n') {
+                    line.append((char) value);
+                }
+                if (line.toString().trim().equals(QueryProtocol.MSG_SENTINEL)) {
+                    sentinels++;
+                }
+            }
+            Frame first = BinaryProtocol.readFrame(input);
+            assertEquals(1, first.requestId);
+            assertEquals(Collections.singletonList("tab"), BinaryProtocol.decodeWords(first.payload));
+            Frame second = BinaryProtocol.readFrame(input);
+            assertEquals(2, second.requestId);
+            assertEquals(Collections.singletonList("live"), BinaryProtocol.decodeWords(second.payload));
+        } finally {
+            server.stopServer();
+        }
+    }
+
+    @Test
+    void testRequestsFailOnceTheConnectionHasEnded() throws Exception {
+        BinarySocketClient unconnected = new BinarySocketClient("localhost", 1);
+        ExecutionException notConnected = assertThrows(ExecutionException.class,
+            () -> unconnected.findAnagrams("bat").get(10, TimeUnit.SECONDS));
+        assertTrue(notConnected.getCause() instanceof IOException);
+
+        Dictionary dictionary = loadDictionary();
+        NioSocketServer server = new NioSocketServer(new AnagramFinder(dictionary), dictionary, 0, 1);
+        server.startServer();
+        try (BinarySocketClient client = new BinarySocketClient("localhost", server.getLocalPort())) {
+            client.connect();
+            assertTrue(client.isConnected());
+            assertEquals(Collections.singletonList("tab"), client.findAnagrams("bat").get());
+            server.stopServer();
+            for (int i = 0; i < 1000 && client.isConnected(); i++) {
+                Thread.sleep(10);
+            }
+            assertFalse(client.isConnected());
+            ExecutionException closed = assertThrows(ExecutionException.class,
+                () -> client.findAnagrams("bat").get(10, TimeUnit.SECONDS));
+            assertTrue(closed.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    void testMalformedWordLengthsAreRejectedBeforeAllocating() {
+        byte[] hugeLength = ByteBuffer.allocate(12).putInt(1).putInt(Integer.MAX_VALUE - 8).putInt(0).array();
+        assertThrows(IllegalArgumentException.class, () -> BinaryProtocol.decodeWords(hugeLength));
+        byte[] negativeLength = ByteBuffer.allocate(12).putInt(1).putInt(-1).putInt(0).array();
+        assertThrows(IllegalArgumentException.class, () -> BinaryProtocol.decodeWords(negativeLength));
+        byte[] hugeCount = ByteBuffer.allocate(8).putInt(Integer.MAX_VALUE).putInt(0).array();
+        assertThrows(IllegalArgumentException.class, () -> BinaryProtocol.decodeWords(hugeCount));
+        assertEquals(Arrays.asList("bat", ""), BinaryProtocol.decodeWords(BinaryProtocol.encodeWords(
+            Arrays.asList("bat", ""))));
+    }
+}
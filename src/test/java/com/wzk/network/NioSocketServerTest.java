@@ -0,0 +1,183 @@
+package com.wzk.network;
+
+import static com.wzk.network.QueryProtocol.MSG_SENTINEL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.wzk.entity.Dictionary;
+import com.wzk.entity.MutationLog;
+import com.wzk.service.AnagramFinder;
+import com.wzk.service.DictionaryRegistry;
+
+class NioSocketServerTest {
+
+    private static NioSocketServer server;
+
+    @BeforeAll
+    static void initAll() {
+        InputStream fileStream = NioSocketServerTest.class.getClassLoader().getResourceAsStream("test-word-file.txt");
+        Dictionary dictionary = new Dictionary(fileStream, true);
+        server = new NioSocketServer(new AnagramFinder(dictionary), dictionary, 0, 2);
+        server.startServer();
+    }
+
+    @AfterAll
+    static void tearDownAll() {
+        server.stopServer();
+    }
+
+    private static List<String> readResponse(BufferedReader input) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String line;
+        while (!MSG_SENTINEL.equals(line = input.readLine())) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    @Test
+    void testSpeaksTheMenuProtocol() throws IOException {
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            PrintWriter output = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            assertTrue(readResponse(input).contains("[P] Print Anagrams"));
+
+            output.println("p");
+            assertTrue(readResponse(input).get(0).startsWith("Enter a word to find its anagrams"));
+            output.print("bat\r\n");
+            output.flush();
+            List<String> anagrams = readResponse(input);
+            assertEquals("Found 1 anagrams for word bat", anagrams.get(0));
+            assertEquals("tab", anagrams.get(1));
+
+            output.println("<<");
+            assertTrue(readResponse(input).contains("[A] Add a word"));
+        }
+    }
+
+    @Test
+    void testServesSeveralClientsAtOnce() throws IOException {
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < 5; i++) {
+                sockets.add(new Socket("localhost", server.getLocalPort()));
+            }
+            for (Socket socket : sockets) {
+                PrintWriter output = new PrintWriter(socket.getOutputStream(), true);
+                BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                readResponse(input);
+                output.println("x");
+                assertTrue(readResponse(input).get(0).startsWith("Invalid request [x]"));
+            }
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    void testFailedRequestIsAnsweredWithoutStoppingTheLoop(@TempDir Path tempDir) throws IOException {
+        Dictionary dictionary = new Dictionary(null, true);
+        MutationLog mutationLog = MutationLog.open(tempDir.resolve("dictionary.wal"), MutationLog.Durability.SYNC, 100);
+        dictionary.setMutationLog(mutationLog);
+        mutationLog.close();
+        NioSocketServer failingServer = new NioSocketServer(new AnagramFinder(dictionary), dictionary, 0, 1);
+        failingServer.startServer();
+        try (Socket failing = new Socket("localhost", failingServer.getLocalPort());
+             Socket other = new Socket("localhost", failingServer.getLocalPort())) {
+            PrintWriter output = new PrintWriter(failing.getOutputStream(), true);
+            BufferedReader input = new BufferedReader(new InputStreamReader(failing.getInputStream()));
+            readResponse(input);
+            output.println("a");
+            readResponse(input);
+            output.println("word");
+            assertTrue(readResponse(input).get(0).startsWith("Failed to handle request"));
+            output.println("<<");
+            assertTrue(readResponse(input).contains("[A] Add a word"));
+
+            PrintWriter otherOutput = new PrintWriter(other.getOutputStream(), true);
+            BufferedReader otherInput = new BufferedReader(new InputStreamReader(other.getInputStream()));
+            readResponse(otherInput);
+            otherOutput.println("x");
+            assertTrue(readResponse(otherInput).get(0).startsWith("Invalid request [x]"));
+        } finally {
+            failingServer.stopServer();
+        }
+    }
+
+    @Test
+    void testLoadingDictionaryDoesNotHoldUpTheEventLoop() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch finishLoad = new CountDownLatch(1);
+        Dictionary slowDictionary = new Dictionary(null, true);
+        slowDictionary.addWord("tab");
+        DictionaryRegistry dictionaries = DictionaryRegistry.of(new Dictionary(null, true), null);
+        dictionaries.register("slow", () -> {
+            loadStarted.countDown();
+            try {
+                finishLoad.await();
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            return slowDictionary;
+        });
+        NioSocketServer singleLoopServer = new NioSocketServer(dictionaries, 0, 1);
+        singleLoopServer.startServer();
+        try (Socket loading = new Socket("localhost", singleLoopServer.getLocalPort());
+             Socket other = new Socket("localhost", singleLoopServer.getLocalPort())) {
+            // a loop held up by the load would leave the other client unanswered, fail rather than hang
+            other.setSoTimeout(10000);
+            PrintWriter output = new PrintWriter(loading.getOutputStream(), true);
+            BufferedReader input = new BufferedReader(new InputStreamReader(loading.getInputStream()));
+            readResponse(input);
+            output.println("l");
+            readResponse(input);
+            output.println("slow");
+            readResponse(input);
+            output.println("<<");
+            readResponse(input);
+            output.println("p");
+            readResponse(input);
+            // the find and the line after it are read together, the second is answered once the first has been
+            output.print("bat" + System.lineSeparator() + "<<" + System.lineSeparator());
+            output.flush();
+            loadStarted.await();
+
+            PrintWriter otherOutput = new PrintWriter(other.getOutputStream(), true);
+            BufferedReader otherInput = new BufferedReader(new InputStreamReader(other.getInputStream()));
+            readResponse(otherInput);
+            otherOutput.println("x");
+            assertTrue(readResponse(otherInput).get(0).startsWith("Invalid request [x]"));
+            assertFalse(input.ready());
+
+            finishLoad.countDown();
+            assertTrue(readResponse(input).stream().anyMatch(line -> line.contains("tab")));
+            assertTrue(readResponse(input).contains("[A] Add a word"));
+            output.println("p");
+            readResponse(input);
+            output.println("bat");
+            assertTrue(readResponse(input).stream().anyMatch(line -> line.contains("tab")));
+        } finally {
+            finishLoad.countDown();
+            singleLoopServer.stopServer();
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package com.wzk.network;
 
 import static com.wzk.network.QueryProtocol.ADD_WORD;
+import static com.wzk.network.QueryProtocol.BATCH_ANAGRAM;
 import static com.wzk.network.QueryProtocol.REMOVE_WORD;
 import static com.wzk.network.QueryProtocol.FIND_ANAGRAM;
 import static com.wzk.network.QueryProtocol.MENU;
 import static com.wzk.network.QueryProtocol.MSG_SENTINEL;
+import static com.wzk.network.QueryProtocol.SELECT_DICTIONARY;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
@@ -138,4 +145,79 @@ class QueryProtocolTest {
         assertTrue(invalidResponse.endsWith(MSG_SENTINEL));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void testChoosingBatchAnagramChangesCurrentState() {
+        QueryProtocol qp = new QueryProtocol("client-id-1");
+        String batchResponse = qp.deriveMenuResponse("b");
+        assertEquals(BATCH_ANAGRAM, qp.getCurrentState());
+        assertTrue(batchResponse.contains("Enter words separated by spaces"));
+    }
+
+    @Test
+    void testBatchAnagramResponseListsEachWord() {
+        QueryProtocol qp = new QueryProtocol("client-id-1");
+        qp.deriveMenuResponse("b");
+        Map<String, List<String>> anagramsByWord = new LinkedHashMap<>();
+        anagramsByWord.put("word", Arrays.asList("rowd", "drow"));
+        anagramsByWord.put("xyz", Collections.emptyList());
+        String batchResponse = qp.deriveBatchAnagramResponse(anagramsByWord);
+        assertTrue(batchResponse.contains("word: rowd,drow\n"));
+        assertTrue(batchResponse.contains("xyz: \n"));
+        assertTrue(batchResponse.endsWith(MSG_SENTINEL));
+    }
+
+    @Test
+    void testChoosingADictionaryIsRememberedOnlyIfItExists() {
+        QueryProtocol qp = new QueryProtocol("client-id-1");
+        qp.deriveMenuResponse("l");
+        assertEquals(SELECT_DICTIONARY, qp.getCurrentState());
+        assertNull(qp.getDictionaryName());
+
+        String failed = qp.deriveSelectDictionaryResponse("klingon", false, Arrays.asList("default", "fr"));
+        assertTrue(failed.contains("default, fr"));
+        assertNull(qp.getDictionaryName());
+
+        String succeeded = qp.deriveSelectDictionaryResponse("fr", true, Arrays.asList("default", "fr"));
+        assertTrue(succeeded.endsWith(MSG_SENTINEL));
+        assertEquals("fr", qp.getDictionaryName());
+    }
+
+    @Test
+    void testStatsResponseKeepsClientAtMenu() {
+        QueryProtocol qp = new QueryProtocol("client-id-1");
+        String statsResponse = qp.deriveStatsResponse("requests 3\n");
+        assertEquals("requests 3\n" + MSG_SENTINEL, statsResponse);
+        assertEquals(MENU, qp.getCurrentState());
+    }
+
+    @Test
+    void testLargeFindResponsesArePaged() throws Exception {
+        QueryProtocol qp = new QueryProtocol("client-id-1");
+        qp.deriveMenuResponse("p");
+        List<String> anagrams = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            anagrams.add("w" + i);
+        }
+        StringBuilder firstPage = new StringBuilder();
+        qp.writeFindAnagramResponse("w", anagrams, firstPage);
+        assertTrue(firstPage.toString().startsWith("Found 1200 anagrams for word w\n"));
+        assertTrue(firstPage.toString().contains("Showing 1-500 of 1200"));
+        assertEquals(1 + 500 / QueryProtocol.WORDS_PER_LINE + 3, firstPage.toString().split("\n").length);
+
+        StringBuilder secondPage = new StringBuilder();
+        qp.writeNextPage(secondPage);
+        assertTrue(secondPage.toString().startsWith("w500,w501,"));
+        assertTrue(secondPage.toString().contains("Showing 501-1000 of 1200"));
+
+        StringBuilder lastPage = new StringBuilder();
+        qp.writeNextPage(lastPage);
+        assertTrue(lastPage.toString().contains("w1199\n"));
+        assertFalse(lastPage.toString().contains("Showing"));
+        assertTrue(lastPage.toString().endsWith(MSG_SENTINEL));
+
+        StringBuilder exhausted = new StringBuilder();
+        qp.writeNextPage(exhausted);
+        assertTrue(exhausted.toString().startsWith("There are no more results."));
+    }
+}
@@ -0,0 +1,90 @@
+package com.wzk.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.wzk.entity.Dictionary;
+import com.wzk.service.AnagramCache;
+import com.wzk.service.AnagramFinder;
+
+class ReplicationPublisherTest {
+
+    private static Dictionary loadDictionary() {
+        InputStream fileStream = ReplicationPublisherTest.class.getClassLoader()
+            .getResourceAsStream("test-word-file.txt");
+        return new Dictionary(fileStream, true);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the replica");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void testReplicaCopiesAndFollowsPrimary() throws Exception {
+        Dictionary primary = loadDictionary();
+        ReplicationPublisher publisher = new ReplicationPublisher(primary, 0, ReplicationPublisher.DEFAULT_BACKLOG);
+        publisher.startServer();
+        assertTrue(primary.addWord("stab"));
+
+        Dictionary replica = new Dictionary(null, true);
+        AnagramFinder replicaFinder = new AnagramFinder(replica, true, ForkJoinPool.commonPool(),
+            new AnagramCache(replica, 100));
+        assertEquals(Collections.emptyList(), replicaFinder.findAnagrams("bats"));
+        ReplicaFollower follower = new ReplicaFollower(replica, "localhost", publisher.getLocalPort());
+        follower.start();
+        try {
+            awaitTrue(follower::isCaughtUp);
+            assertEquals(primary.getSize(), replica.getSize());
+            assertEquals(Arrays.asList("stab"), replicaFinder.findAnagrams("bats"));
+
+            assertTrue(primary.addWord("tabs"));
+            assertTrue(primary.removeWord("stab"));
+            assertTrue(primary.removeWord("evil"));
+            awaitTrue(() -> follower.getAppliedSequence() == publisher.getPublishedSequence());
+            assertEquals(4, follower.getAppliedSequence());
+            assertEquals(Arrays.asList("tabs"), replicaFinder.findAnagrams("bats"));
+            assertFalse(replica.containsWord("evil"));
+            assertEquals(primary.getSize(), replica.getSize());
+            awaitTrue(() -> follower.getLag() == 0);
+        } finally {
+            follower.stopFollowing();
+            publisher.stopServer();
+        }
+    }
+
+    @Test
+    void testReplicaDropsWordsTheCopyNoLongerHas() throws Exception {
+        Dictionary primary = loadDictionary();
+        ReplicationPublisher publisher = new ReplicationPublisher(primary, 0, ReplicationPublisher.DEFAULT_BACKLOG);
+        publisher.startServer();
+        Dictionary replica = loadDictionary();
+        replica.addWord("stale");
+        primary.removeWord("figure");
+        ReplicaFollower follower = new ReplicaFollower(replica, "localhost", publisher.getLocalPort());
+        follower.start();
+        try {
+            awaitTrue(follower::isCaughtUp);
+            assertFalse(replica.containsWord("stale"));
+            assertFalse(replica.containsWord("figure"));
+            assertTrue(replica.containsWord("refuge"));
+            assertEquals(primary.getSize(), replica.getSize());
+        } finally {
+            follower.stopFollowing();
+            publisher.stopServer();
+        }
+    }
+}
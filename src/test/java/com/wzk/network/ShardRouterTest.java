@@ -0,0 +1,212 @@
+package com.wzk.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.wzk.entity.Dictionary;
+import com.wzk.service.AnagramFinder;
+
+class ShardRouterTest {
+    private static final int SHARDS = 3;
+
+    private static List<String> loadWords() throws IOException, URISyntaxException {
+        return Files.readAllLines(Paths.get(ShardRouterTest.class.getClassLoader()
+            .getResource("test-word-file.txt").toURI()), Charset.defaultCharset());
+    }
+
+    private static Dictionary dictionaryOf(List<String> words) {
+        InputStream fileStream = new ByteArrayInputStream(String.join("\n", words).getBytes(Charset.defaultCharset()));
+        return new Dictionary(fileStream, true);
+    }
+
+    private static List<String> sorted(List<String> words) {
+        List<String> copy = new ArrayList<>(words);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    @Test
+    void testShardOfIsInRangeAndSharedByAnagrams() {
+        for (String word : Arrays.asList("ant", "bat", "evil", "figure", "a", "")) {
+            for (int shardCount = 1; shardCount <= 8; shardCount++) {
+                int shard = ShardRouter.shardOf(word, shardCount);
+                assertTrue(shard >= 0 && shard < shardCount);
+            }
+        }
+        assertEquals(ShardRouter.shardOf("evil", 5), ShardRouter.shardOf("Live", 5));
+        assertEquals(ShardRouter.shardOf("ant", 7), ShardRouter.shardOf("tan", 7));
+    }
+
+    @Test
+    void testRoutesToShards() throws Exception {
+        List<String> words = loadWords();
+        AnagramFinder unsharded = new AnagramFinder(dictionaryOf(words));
+        List<SocketServer> servers = new ArrayList<>();
+        List<BinarySocketClient> shards = new ArrayList<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            int owner = shard;
+            Dictionary dictionary = dictionaryOf(words.stream()
+                .filter(word -> ShardRouter.shardOf(word, SHARDS) == owner).collect(Collectors.toList()));
+            SocketServer server = new SocketServer(new AnagramFinder(dictionary), dictionary, 0);
+            server.startServer();
+            servers.add(server);
+            shards.add(new BinarySocketClient("localhost", server.getLocalPort()));
+        }
+        ShardRouter router = new ShardRouter(shards, 0, ConnectionExecutors.bounded(
+            ConnectionExecutors.DEFAULT_MAX_CONNECTIONS, ConnectionExecutors.DEFAULT_QUEUE_CAPACITY));
+        router.startServer();
+        try (BinarySocketClient client = new BinarySocketClient("localhost", router.getLocalPort())) {
+            client.connect();
+            for (String word : Arrays.asList("bat", "vile", "refuge", "?at", "??", "nothing")) {
+                assertEquals(sorted(unsharded.findAnagrams(word)), sorted(client.findAnagrams(word).get()), word);
+            }
+
+            List<String> batchWords = Arrays.asList("ant", "?at", "evil", "refuge");
+            Map<String, List<String>> batch = client.findAnagramsBatch(batchWords).get();
+            assertEquals(batchWords, new ArrayList<>(batch.keySet()));
+            for (String word : batchWords) {
+                assertEquals(sorted(unsharded.findAnagrams(word)), sorted(batch.get(word)), word);
+            }
+
+            assertTrue(client.addWord("Stab").get());
+            assertTrue(client.containsWord("stab").get());
+            assertEquals(Collections.singletonList("stab"), client.findAnagrams("bast").get());
+            assertTrue(client.removeWord("STAB").get());
+            assertFalse(client.containsWord("stab").get());
+
+            List<String> wildcardAnagrams = sorted(unsharded.findAnagrams("?at"));
+            List<String> paged = new ArrayList<>();
+            List<String> page;
+            String after = "";
+            while (!(page = client.findAnagramsPage("?at", after, 2).get()).isEmpty()) {
+                paged.addAll(page);
+                after = page.get(page.size() - 1);
+            }
+            assertEquals(wildcardAnagrams, paged);
+
+            String stats = client.stats().get();
+            assertTrue(stats.contains("router.requests "));
+            assertTrue(stats.contains("shard " + (SHARDS - 1)));
+        } finally {
+            router.stopServer();
+            servers.forEach(SocketServer::stopServer);
+        }
+    }
+
+    @Test
+    void testStoppedShardIsAnsweredWithAnErrorUntilItReturns() throws Exception {
+        List<String> words = Arrays.asList("bat", "tab", "evil", "live", "vile", "ant", "tan");
+        List<NioSocketServer> servers = new ArrayList<>();
+        List<BinarySocketClient> shards = new ArrayList<>();
+        for (int shard = 0; shard < 2; shard++) {
+            int owner = shard;
+            Dictionary dictionary = dictionaryOf(words.stream()
+                .filter(word -> ShardRouter.shardOf(word, 2) == owner).collect(Collectors.toList()));
+            NioSocketServer server = new NioSocketServer(new AnagramFinder(dictionary), dictionary, 0, 1);
+            server.startServer();
+            servers.add(server);
+            shards.add(new BinarySocketClient("localhost", server.getLocalPort()));
+        }
+        String stoppedWord = words.stream().filter(word -> ShardRouter.shardOf(word, 2) == 1).findFirst().get();
+        String liveWord = words.stream().filter(word -> ShardRouter.shardOf(word, 2) == 0).findFirst().get();
+        ShardRouter router = new ShardRouter(shards, 0, ConnectionExecutors.bounded(
+            ConnectionExecutors.DEFAULT_MAX_CONNECTIONS, ConnectionExecutors.DEFAULT_QUEUE_CAPACITY), 5000);
+        router.startServer();
+        try (BinarySocketClient client = new BinarySocketClient("localhost", router.getLocalPort())) {
+            client.connect();
+            assertTrue(client.containsWord(stoppedWord).get());
+            int stoppedPort = servers.get(1).getLocalPort();
+            servers.get(1).stopServer();
+            for (int i = 0; i < 1000 && shards.get(1).isConnected(); i++) {
+                Thread.sleep(10);
+            }
+
+            ExecutionException failed = assertThrows(ExecutionException.class,
+                () -> client.containsWord(stoppedWord).get(10, TimeUnit.SECONDS));
+            assertTrue(failed.getCause().getMessage().contains("Shard 1"), failed.getCause().getMessage());
+            assertThrows(ExecutionException.class, () -> client.findAnagrams("?at").get(10, TimeUnit.SECONDS));
+            assertTrue(client.containsWord(liveWord).get(10, TimeUnit.SECONDS));
+
+            Dictionary dictionary = dictionaryOf(Collections.singletonList(stoppedWord));
+            NioSocketServer restarted = new NioSocketServer(new AnagramFinder(dictionary), dictionary, stoppedPort, 1);
+            restarted.startServer();
+            servers.set(1, restarted);
+            boolean reconnected = false;
+            for (int i = 0; i < 100 && !reconnected; i++) {
+                try {
+                    reconnected = client.containsWord(stoppedWord).get(10, TimeUnit.SECONDS);
+                } catch (ExecutionException ex) {
+                    Thread.sleep(100);
+                }
+            }
+            assertTrue(reconnected);
+        } finally {
+            router.stopServer();
+            servers.forEach(NioSocketServer::stopServer);
+        }
+    }
+
+    @Test
+    void testShardThatDoesNotAnswerTimesOut() throws Exception {
+        try (ServerSocket silentShard = new ServerSocket(0)) {
+            Thread acceptor = new Thread(() -> {
+                // accepts the switch to the binary protocol, then never answers a request
+                try (Socket socket = silentShard.accept()) {
+                    OutputStream output = socket.getOutputStream();
+                    output.write(("menu\n" + QueryProtocol.MSG_SENTINEL + "\n").getBytes(Charset.defaultCharset()));
+                    InputStream input = socket.getInputStream();
+                    int value;
+                    while ((value = input.read()) >= 0 && value != '\n') {
+                        continue;
+                    }
+                    output.write((BinaryProtocol.UPGRADE_ACCEPTED + "\n" + QueryProtocol.MSG_SENTINEL + "\n")
+                        .getBytes(Charset.defaultCharset()));
+                    while (input.read() >= 0) {
+                        continue;
+                    }
+                } catch (IOException ex) {
+                    // the router has gone
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+            ShardRouter router = new ShardRouter(
+                Collections.singletonList(new BinarySocketClient("localhost", silentShard.getLocalPort())), 0,
+                ConnectionExecutors.bounded(ConnectionExecutors.DEFAULT_MAX_CONNECTIONS,
+                    ConnectionExecutors.DEFAULT_QUEUE_CAPACITY), 200);
+            router.startServer();
+            try (BinarySocketClient client = new BinarySocketClient("localhost", router.getLocalPort())) {
+                client.connect();
+                ExecutionException timedOut = assertThrows(ExecutionException.class,
+                    () -> client.findAnagrams("bat").get(10, TimeUnit.SECONDS));
+                assertTrue(timedOut.getCause().getMessage().contains("did not respond"),
+                    timedOut.getCause().getMessage());
+            } finally {
+                router.stopServer();
+            }
+        }
+    }
+}
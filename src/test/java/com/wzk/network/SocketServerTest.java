@@ -0,0 +1,159 @@
+package com.wzk.network;
+
+import static com.wzk.network.QueryProtocol.MSG_SENTINEL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+import com.wzk.entity.Dictionary;
+import com.wzk.service.AnagramFinder;
+import com.wzk.service.DictionaryRegistry;
+
+class SocketServerTest {
+
+    private static BufferedReader readerFor(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream()));
+    }
+
+    @Test
+    void testClientsBeyondTheConnectionLimitAreToldTheServerIsBusy() throws IOException {
+        Dictionary dictionary = new Dictionary(null, true);
+        SocketServer server = new SocketServer(new AnagramFinder(dictionary), dictionary, 0,
+            ConnectionExecutors.bounded(1, 1));
+        server.startServer();
+        try (Socket served = new Socket("localhost", server.getLocalPort());
+             Socket queued = new Socket("localhost", server.getLocalPort())) {
+            BufferedReader servedInput = readerFor(served);
+            assertTrue(servedInput.readLine().startsWith("Welcome"));
+            try (Socket rejected = new Socket("localhost", server.getLocalPort())) {
+                BufferedReader rejectedInput = readerFor(rejected);
+                assertEquals(ClientConnection.SERVER_BUSY, rejectedInput.readLine());
+                assertEquals(MSG_SENTINEL, rejectedInput.readLine());
+                assertNull(rejectedInput.readLine());
+            }
+            assertEquals(1, server.getRejectedConnections());
+            assertEquals(1, server.getActiveConnections());
+            assertEquals(1, server.getQueuedConnections());
+            assertTrue(queued.isConnected());
+        } finally {
+            server.stopServer();
+        }
+    }
+
+    @Test
+    void testLargeResultsArePagedOverTheSocket() throws IOException {
+        StringBuilder words = new StringBuilder();
+        for (char first = 'a'; first <= 'z'; first++) {
+            for (char second = 'a'; second <= 'z'; second++) {
+                words.append(first).append(second).append('\n');
+            }
+        }
+        Dictionary dictionary = new Dictionary(new ByteArrayInputStream(words.toString().getBytes()), true);
+        SocketServer server = new SocketServer(new AnagramFinder(dictionary), dictionary, 0);
+        server.startServer();
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            BufferedReader input = readerFor(socket);
+            PrintWriter output = new PrintWriter(socket.getOutputStream(), true);
+            readResponse(input);
+            output.println("p");
+            readResponse(input);
+            output.println("??");
+            String firstPage = readResponse(input);
+            assertTrue(firstPage.startsWith("Found 676 anagrams"));
+            assertTrue(firstPage.contains("Showing 1-500 of 676"));
+            output.println(QueryProtocol.NEXT_PAGE);
+            String secondPage = readResponse(input);
+            String[] lines = secondPage.split("\n");
+            int wordCount = 0;
+            for (int i = 0; i < lines.length - 1; i++) {
+                wordCount += lines[i].split(",").length;
+            }
+            assertEquals(176, wordCount);
+            assertEquals(4, lines.length - 1);
+            assertTrue(lines[lines.length - 1].startsWith("Find another?"));
+        } finally {
+            server.stopServer();
+        }
+    }
+
+    @Test
+    void testReadOnlyServerRefusesChanges() throws Exception {
+        Dictionary dictionary = new Dictionary(null, true);
+        dictionary.addWord("stab");
+        DictionaryRegistry registry = DictionaryRegistry.of(dictionary, new AnagramFinder(dictionary));
+        registry.setReadOnly(true);
+        SocketServer server = new SocketServer(registry, 0, ConnectionExecutors.bounded(4, 4));
+        server.startServer();
+        try (Socket socket = new Socket("localhost", server.getLocalPort());
+             BinarySocketClient client = new BinarySocketClient("localhost", server.getLocalPort())) {
+            BufferedReader input = readerFor(socket);
+            PrintWriter output = new PrintWriter(socket.getOutputStream(), true);
+            readResponse(input);
+            output.println("a");
+            readResponse(input);
+            output.println("tabs");
+            assertTrue(readResponse(input).contains("read only replica"));
+            assertFalse(dictionary.containsWord("tabs"));
+
+            client.connect();
+            assertThrows(ExecutionException.class, () -> client.removeWord("stab").get());
+            assertTrue(client.containsWord("stab").get());
+        } finally {
+            server.stopServer();
+        }
+    }
+
+    @Test
+    void testLinesEndLikeTheNioServersAndAreCapped() throws IOException {
+        Dictionary dictionary = new Dictionary(null, true);
+        dictionary.addWord("tab");
+        SocketServer server = new SocketServer(new AnagramFinder(dictionary), dictionary, 0);
+        server.startServer();
+        try (Socket socket = new Socket("localhost", server.getLocalPort())) {
+            BufferedReader input = readerFor(socket);
+            PrintWriter output = new PrintWriter(socket.getOutputStream(), true);
+            readResponse(input);
+            // a lone carriage return is answered without waiting for a line feed
+            output.print("p\r");
+            output.flush();
+            assertTrue(readResponse(input).startsWith("Enter a word to find its anagrams"));
+            output.print("\nbat\r\n");
+            output.flush();
+            assertTrue(readResponse(input).startsWith("Found 1 anagrams for word bat"));
+
+            char[] longLine = new char[NioSocketServer.MAX_LINE_LENGTH + 1];
+            Arrays.fill(longLine, 'a');
+            output.println(longLine);
+            try {
+                assertNull(input.readLine());
+            } catch (SocketException reset) {
+                // the server may close the connection before it has read the rest of the line
+            }
+        } finally {
+            server.stopServer();
+        }
+    }
+
+    private static String readResponse(BufferedReader input) throws IOException {
+        StringBuilder response = new StringBuilder();
+        String line;
+        while (!MSG_SENTINEL.equals(line = input.readLine())) {
+            response.append(line).append('\n');
+        }
+        return response.toString();
+    }
+}
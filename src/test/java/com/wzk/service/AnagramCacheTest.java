@@ -0,0 +1,49 @@
+package com.wzk.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import com.wzk.entity.Dictionary;
+
+class AnagramCacheTest {
+
+    private final InputStream fileStream = AnagramCacheTest.class.getClassLoader()
+        .getResourceAsStream("test-word-file.txt");
+    private final Dictionary dictionary = new Dictionary(fileStream, true);
+    private final AnagramCache cache = new AnagramCache(dictionary, 1000);
+    private final AnagramFinder anagramFinder = new AnagramFinder(dictionary, true, ForkJoinPool.commonPool(), cache);
+
+    @Test
+    void testRepeatedLookupsAreServedFromTheCache() {
+        assertEquals(Arrays.asList("tan"), anagramFinder.findAnagrams("ant"));
+        assertEquals(Arrays.asList("ant"), anagramFinder.findAnagrams("TAN"));
+        assertEquals(Arrays.asList("ant"), anagramFinder.findAnagrams("tan"));
+        assertEquals(1, cache.getStats().missCount());
+        assertEquals(2, cache.getStats().hitCount());
+    }
+
+    @Test
+    void testChangingAWordEvictsOnlyItsSignature() {
+        anagramFinder.findAnagrams("ant");
+        anagramFinder.findAnagrams("evil");
+        assertEquals(2, cache.size());
+
+        dictionary.addWord("nat");
+        assertEquals(1, cache.size());
+        List<String> anagrams = anagramFinder.findAnagrams("ant");
+        Collections.sort(anagrams);
+        assertEquals(Arrays.asList("nat", "tan"), anagrams);
+
+        dictionary.removeWord("nat");
+        assertEquals(Arrays.asList("tan"), anagramFinder.findAnagrams("ant"));
+        anagramFinder.findAnagrams("live");
+        assertEquals(1, cache.getStats().hitCount());
+    }
+}
@@ -4,9 +4,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -72,4 +75,91 @@ class AnagramFinderTest {
         assertEquals(1, actualAnagrams.size());
         assertEquals(expectedAnagrams, actualAnagrams);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testScanAndIndexFindTheSameAnagrams() {
+        AnagramFinder scanningFinder = new AnagramFinder(testDictionary, false);
+        for (String word : Arrays.asList("bat", "evil", "refuge", ",.90.", "_-9.", "<>:{]", "missing", "?Ab", "t??",
+            "fi??re", "evil?")) {
+            List<String> indexed = anagramFinder.findAnagrams(word);
+            List<String> scanned = scanningFinder.findAnagrams(word);
+            Collections.sort(indexed);
+            Collections.sort(scanned);
+            assertEquals(scanned, indexed);
+        }
+    }
+
+    @Test
+    void testIndexReflectsAddedAndRemovedWords() {
+        Dictionary dictionary = new Dictionary(null, true);
+        AnagramFinder finder = new AnagramFinder(dictionary);
+        dictionary.addWord("listen");
+        dictionary.addWord("Silent");
+        assertEquals(Arrays.asList("silent"), finder.findAnagrams("listen"));
+        dictionary.removeWord("silent");
+        assertEquals(Collections.emptyList(), finder.findAnagrams("listen"));
+    }
+
+    @Test
+    void testFindWildcardAnagrams() {
+        List<String> actualAnagrams = anagramFinder.findAnagrams("?Ab");
+        Collections.sort(actualAnagrams);
+        assertEquals(Arrays.asList("bat", "tab"), actualAnagrams);
+
+        List<String> twoBlanks = anagramFinder.findAnagrams("t??");
+        Collections.sort(twoBlanks);
+        assertEquals(Arrays.asList("ant", "bat", "cat", "tab", "tac", "tan"), twoBlanks);
+    }
+
+    @Test
+    void testWildcardDoesNotMatchOtherLengths() {
+        assertEquals(Collections.emptyList(), anagramFinder.findAnagrams("evil?"));
+        assertEquals(Arrays.asList("figure"), anagramFinder.findAnagrams("fi??re"));
+    }
+
+    @Test
+    void testFindNearAnagrams() {
+        assertEquals(Arrays.asList("tab"), anagramFinder.findNearAnagrams("bat", 0));
+        assertEquals(Arrays.asList("ant", "cat", "tab", "tac", "tan"), anagramFinder.findNearAnagrams("BAT", 1));
+        assertEquals(Arrays.asList("figure", "refuge"), anagramFinder.findNearAnagrams("figura", 2));
+    }
+
+    @Test
+    void testPagesMatchSortedFindAnagrams() {
+        InputStream fileStream = AnagramFinderTest.class.getClassLoader().getResourceAsStream("test-word-file.txt");
+        Dictionary dawgDictionary = new Dictionary(fileStream, true, Dictionary.Storage.DAWG);
+        List<AnagramFinder> finders = Arrays.asList(anagramFinder, new AnagramFinder(testDictionary, false),
+            new AnagramFinder(testDictionary, true, ForkJoinPool.commonPool(), new AnagramCache(testDictionary, 100)),
+            new AnagramFinder(dawgDictionary));
+        for (AnagramFinder finder : finders) {
+            for (String word : Arrays.asList("t??", "EVIL", "?at", "??", "bat", "missing", "t???")) {
+                List<String> expected = finder.findAnagrams(word);
+                Collections.sort(expected);
+                List<String> paged = new ArrayList<>();
+                List<String> page;
+                String after = "";
+                while ((page = finder.findAnagramsPage(word, after, 2)).size() == 2) {
+                    paged.addAll(page);
+                    after = page.get(1);
+                }
+                paged.addAll(page);
+                assertEquals(expected, paged, word);
+            }
+        }
+    }
+
+    @Test
+    void testFindAnagramsBatchMatchesSingleLookups() {
+        List<String> words = Arrays.asList("bat", "TAB", "evil", "refuge", "bat", ",.90.", "t??", "missing");
+        Map<String, List<String>> anagramsByWord = anagramFinder.findAnagramsBatch(words);
+        assertEquals(Arrays.asList("bat", "TAB", "evil", "refuge", ",.90.", "t??", "missing"),
+            Arrays.asList(anagramsByWord.keySet().toArray()));
+        for (String word : words) {
+            List<String> expected = anagramFinder.findAnagrams(word);
+            List<String> actual = anagramsByWord.get(word);
+            Collections.sort(expected);
+            Collections.sort(actual);
+            assertEquals(expected, actual, word);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.wzk.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import com.wzk.entity.Dictionary;
+
+class CountVectorScannerTest {
+
+    private static Dictionary randomDictionary(Random random, int wordCount) {
+        TreeSet<String> words = new TreeSet<>();
+        while (words.size() < wordCount) {
+            int length = 1 + random.nextInt(8);
+            StringBuilder word = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                word.append((char) ('a' + random.nextInt(8)));
+            }
+            if (random.nextInt(50) == 0) {
+                word.append(random.nextInt(10));
+            }
+            words.add(word.toString());
+        }
+        byte[] contents = String.join("\n", words).getBytes(StandardCharsets.UTF_8);
+        return new Dictionary(new ByteArrayInputStream(contents), true);
+    }
+
+    /**
+     * The scan's answer found the slow way, by counting the characters of every word. The words and letters are
+     * ASCII, the counts a word uses up are given back before the next word.
+     */
+    private static List<String> expected(Dictionary dictionary, String letters, int blanks, int minLength,
+                                         int maxLength) {
+        int[] left = new int[128];
+        letters.chars().forEach(character -> left[character]++);
+        List<String> words = new ArrayList<>();
+        dictionary.getAnagramGroups().forEach(group -> group.getWords().forEach(word -> {
+            long missing = word.chars().filter(character -> left[character]-- <= 0).count();
+            word.chars().forEach(character -> left[character]++);
+            if (word.length() >= minLength && word.length() <= maxLength && missing <= blanks) {
+                words.add(word);
+            }
+        }));
+        words.sort(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()));
+        return words;
+    }
+
+    @Test
+    void testParallelScanMatchesCountingEveryWord() {
+        Random random = new Random(25);
+        Dictionary dictionary = randomDictionary(random, 30000);
+        CountVectorScanner scanner = new CountVectorScanner(dictionary, ForkJoinPool.commonPool());
+        assertTrue(scanner.getColumnRows() < dictionary.getSize());
+        for (String letters : Arrays.asList("abcdefg", "aabbhh3", "hgfe", "")) {
+            for (int blanks = 0; blanks <= 2; blanks++) {
+                assertEquals(expected(dictionary, letters, blanks, 1, 8), scanner.scan(letters, blanks, 1, 8));
+                assertEquals(expected(dictionary, letters, blanks, 5, 5), scanner.scan(letters, blanks, 5, 5));
+            }
+        }
+    }
+
+    @Test
+    void testPagesMatchTheWholeScan() {
+        Dictionary dictionary = randomDictionary(new Random(19), 20000);
+        CountVectorScanner scanner = new CountVectorScanner(dictionary, ForkJoinPool.commonPool());
+        for (String letters : Arrays.asList("abcde", "aabh3", "hg")) {
+            for (int blanks = 1; blanks <= 3; blanks++) {
+                int length = letters.length() + blanks;
+                List<String> expected = scanner.scan(letters, blanks, length, length);
+                List<String> paged = new ArrayList<>();
+                List<String> page;
+                String after = "";
+                while (!(page = scanner.scanPage(letters, blanks, length, after, 50)).isEmpty()) {
+                    paged.addAll(page);
+                    after = page.get(page.size() - 1);
+                }
+                assertEquals(expected, paged, letters + " with " + blanks + " blanks");
+            }
+        }
+    }
+
+    @Test
+    void testScanSeesChangesToTheDictionary() {
+        Dictionary dictionary = new Dictionary(null, true);
+        dictionary.addWord("stare");
+        CountVectorScanner scanner = new CountVectorScanner(dictionary, ForkJoinPool.commonPool());
+        assertEquals(Arrays.asList("stare"), scanner.scan("tears", 0, 5, 5));
+
+        dictionary.addWord("rates");
+        dictionary.addWord("st4re");
+        assertEquals(Arrays.asList("rates", "st4re", "stare"), scanner.scan("tears", 1, 5, 5));
+        dictionary.removeWord("stare");
+        assertEquals(Arrays.asList("rates"), scanner.scan("tears", 0, 1, Integer.MAX_VALUE));
+        assertFalse(scanner.scan("tears", 1, 5, 5).contains("stare"));
+    }
+
+    @Test
+    void testWordsLongerThanTheColumnsAreScannedAside() {
+        StringBuilder longWord = new StringBuilder("b");
+        for (int i = 0; i < 129; i++) {
+            longWord.append('a');
+        }
+        Dictionary dictionary = new Dictionary(null, true);
+        dictionary.addWord("tab");
+        dictionary.addWord(longWord.toString());
+        CountVectorScanner scanner = new CountVectorScanner(dictionary, ForkJoinPool.commonPool());
+        String query = longWord.toString().replace('b', 'c');
+        assertEquals(Arrays.asList(longWord.toString()), scanner.scan(query, 1, query.length(), query.length()));
+        assertEquals(Arrays.asList(), scanner.scan(query, 0, query.length(), query.length()));
+        assertEquals(Arrays.asList("tab", longWord.toString()), scanner.scan(query + "t", 2, 1, 200));
+        assertEquals(Arrays.asList(), scanner.scan("tab", 0, 4, 3));
+        assertEquals(Arrays.asList(longWord.toString()),
+            new AnagramFinder(dictionary).findNearAnagrams(query.toUpperCase(), 1));
+    }
+}
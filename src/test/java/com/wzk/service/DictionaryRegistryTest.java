@@ -0,0 +1,72 @@
+package com.wzk.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.wzk.entity.Dictionary;
+
+class DictionaryRegistryTest {
+
+    private static Dictionary dictionaryOf(String... words) {
+        Dictionary dictionary = new Dictionary(null, true);
+        for (String word : words) {
+            dictionary.addWord(word);
+        }
+        return dictionary;
+    }
+
+    @Test
+    void testDictionariesAreLoadedWhenFirstUsed() {
+        Dictionary defaultDictionary = dictionaryOf("ant", "tan");
+        DictionaryRegistry registry = new DictionaryRegistry(defaultDictionary, new AnagramFinder(defaultDictionary),
+            AnagramFinder::new, 1024 * 1024);
+        AtomicInteger loads = new AtomicInteger();
+        registry.register("fr", () -> {
+            loads.incrementAndGet();
+            return dictionaryOf("chien", "niche");
+        });
+
+        assertEquals(new HashSet<>(Arrays.asList("default", "fr")), registry.getNames());
+        assertEquals(0, loads.get());
+        assertSame(defaultDictionary, registry.get(null).getDictionary());
+        assertEquals(Arrays.asList("niche"), registry.get("fr").getAnagramFinder().findAnagrams("chien"));
+        registry.get("fr");
+        assertEquals(1, loads.get());
+        assertTrue(registry.getLoadedBytes() > 0);
+        assertThrows(IllegalArgumentException.class, () -> registry.get("klingon"));
+    }
+
+    @Test
+    void testDictionariesOverTheBudgetAreEvictedButTheDefaultStays() {
+        Dictionary defaultDictionary = dictionaryOf("ant", "tan");
+        DictionaryRegistry registry = new DictionaryRegistry(defaultDictionary, new AnagramFinder(defaultDictionary),
+            AnagramFinder::new, 2048);
+        AtomicInteger loads = new AtomicInteger();
+        String[] words = new String[20];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "word" + i;
+        }
+        registry.register("first", () -> {
+            loads.incrementAndGet();
+            return dictionaryOf(words);
+        });
+        registry.register("second", () -> {
+            loads.incrementAndGet();
+            return dictionaryOf(words);
+        });
+
+        registry.get("first");
+        registry.get("second");
+        registry.get("first");
+        assertEquals(3, loads.get());
+        assertSame(defaultDictionary, registry.get("default").getDictionary());
+    }
+}
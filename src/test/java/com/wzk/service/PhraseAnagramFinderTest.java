@@ -0,0 +1,71 @@
+package com.wzk.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.Sets;
+import com.wzk.entity.Dictionary;
+
+class PhraseAnagramFinderTest {
+
+    private static PhraseAnagramFinder phraseFinder;
+
+    @BeforeAll
+    static void initAll() {
+        Dictionary dictionary = new Dictionary(null, true);
+        List<String> words = Arrays.asList("dormitory", "dirty", "room", "moor", "dry", "riot", "tom", "my", "door",
+            "a", "i", "rot", "dim", "tory");
+        words.forEach(dictionary::addWord);
+        phraseFinder = new PhraseAnagramFinder(dictionary);
+    }
+
+    private static Set<String> search(String phrase, PhraseSearchOptions options) {
+        Set<String> results = Sets.newConcurrentHashSet();
+        long count = phraseFinder.findPhraseAnagrams(phrase, options, results::add);
+        assertEquals(count, results.size());
+        return results;
+    }
+
+    @Test
+    void testFindsTwoWordPhrase() {
+        Set<String> results = search("dormitory", PhraseSearchOptions.builder().maxWords(2).build());
+        assertTrue(results.contains("dirty room") || results.contains("room dirty"));
+        assertTrue(results.contains("dirty moor") || results.contains("moor dirty"));
+        assertFalse(results.contains("dormitory"));
+    }
+
+    @Test
+    void testEveryPhraseUsesExactlyTheLetters() {
+        Set<String> results = search("dirty room", PhraseSearchOptions.builder().maxWords(4).minWordLength(1).build());
+        assertTrue(results.contains("dormitory"));
+        for (String phrase : results) {
+            char[] letters = phrase.replace(" ", "").toCharArray();
+            Arrays.sort(letters);
+            assertEquals("dimoorrty", String.valueOf(letters));
+            assertTrue(phrase.split(" ").length <= 4);
+        }
+    }
+
+    @Test
+    void testMinimumWordLengthAndResultCapAreRespected() {
+        Set<String> results = search("dormitory", PhraseSearchOptions.builder().maxWords(4).minWordLength(3).build());
+        results.forEach(phrase -> Arrays.stream(phrase.split(" ")).forEach(word -> assertTrue(word.length() >= 3)));
+
+        Set<String> capped = search("dormitory", PhraseSearchOptions.builder().maxWords(4).minWordLength(1)
+            .maxResults(2).build());
+        assertEquals(2, capped.size());
+    }
+
+    @Test
+    void testNoPhrasesWhenLettersCanNotBeUsedUp() {
+        assertTrue(search("zebra", PhraseSearchOptions.defaults()).isEmpty());
+    }
+}
@@ -0,0 +1,55 @@
+package com.wzk.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.wzk.entity.Dictionary;
+
+class SubAnagramFinderTest {
+
+    private static SubAnagramFinder subAnagramFinder;
+
+    @BeforeAll
+    static void initAll() {
+        InputStream fileStream = SubAnagramFinderTest.class.getClassLoader().getResourceAsStream("test-word-file.txt");
+        Dictionary testDictionary = new Dictionary(fileStream, true);
+        subAnagramFinder = new SubAnagramFinder(testDictionary);
+    }
+
+    @Test
+    void testFindsWordsSpelledFromLetters() {
+        SortedMap<Integer, List<String>> words = subAnagramFinder.findSubAnagrams("BatnC");
+        assertEquals(Arrays.asList(3), Arrays.asList(words.keySet().toArray()));
+        assertEquals(Arrays.asList("ant", "bat", "cat", "tab", "tac", "tan"), words.get(3));
+    }
+
+    @Test
+    void testLettersAreNotReused() {
+        SortedMap<Integer, List<String>> words = subAnagramFinder.findSubAnagrams("evlir");
+        assertEquals(Arrays.asList("evil", "live"), words.get(4));
+        assertTrue(subAnagramFinder.findSubAnagrams("figre").isEmpty());
+    }
+
+    @Test
+    void testResultsAreGroupedLongestFirstAndLimited() {
+        SortedMap<Integer, List<String>> words = subAnagramFinder.findSubAnagrams("figurevilcat", 3);
+        assertEquals(Integer.valueOf(6), words.firstKey());
+        assertEquals(Arrays.asList("figure"), words.get(6));
+        assertEquals(Arrays.asList("evil", "live"), words.get(4));
+        assertEquals(2, words.size());
+    }
+
+    @Test
+    void testSymbolsAreMatched() {
+        SortedMap<Integer, List<String>> words = subAnagramFinder.findSubAnagrams("9._-,");
+        assertEquals(Arrays.asList("9_-.", "_-9."), words.get(4));
+    }
+}